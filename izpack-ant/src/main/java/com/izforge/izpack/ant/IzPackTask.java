@@ -94,6 +94,12 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private Boolean inheritAll = false;
 
+    /**
+     * Holds value of property profileFile, the JSON file to write the profile of the compilation
+     * into
+     */
+    private String profileFile;
+
     /**
      * Creates new IZPackTask
      */
@@ -204,7 +210,7 @@ public class IzPackTask extends Task implements PackagerListener
             ClassLoader loader = new URLClassLoader(getUrlsForClassloader());
             Class runableClass = loader.loadClass("com.izforge.izpack.ant.IzpackAntRunnable");
             Constructor constructor = runableClass.getConstructors()[0];
-            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir);
+            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, profileFile);
             final Thread thread = new Thread((Runnable) instance);
             thread.setContextClassLoader(loader);
             thread.start();
@@ -323,6 +329,16 @@ public class IzPackTask extends Task implements PackagerListener
         inheritAll = value;
     }
 
+    /**
+     * Setter for property profileFile.
+     *
+     * @param profileFile The JSON file to write the profile of the compilation into.
+     */
+    public void setProfileFile(String profileFile)
+    {
+        this.profileFile = profileFile;
+    }
+
     /**
      * Setter for property compression.
      *
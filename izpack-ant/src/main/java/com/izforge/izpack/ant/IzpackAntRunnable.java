@@ -6,6 +6,8 @@ import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import org.apache.tools.ant.BuildException;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Properties;
@@ -20,14 +22,16 @@ public class IzpackAntRunnable implements Runnable
     private final Properties properties;
     private final Boolean inheritAll;
     private Hashtable projectProps;
+    private final String profileFile;
 
-    public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir, String output, int compressionLevel, Properties properties, Boolean inheritAll, Hashtable antProjectProperties, String izPackDir)
+    public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir, String output, int compressionLevel, Properties properties, Boolean inheritAll, Hashtable antProjectProperties, String izPackDir, String profileFile)
     {
         this.compilerData = new CompilerData(compression, kind, input, configText, basedir, output, compressionLevel);
         this.input = input;
         this.properties = properties;
         this.inheritAll = inheritAll;
         this.projectProps = antProjectProperties;
+        this.profileFile = profileFile;
         CompilerData.setIzpackHome(izPackDir);
     }
 
@@ -76,6 +80,18 @@ public class IzpackAntRunnable implements Runnable
             throw new BuildException(e);
         }
 
+        if (profileFile != null)
+        {
+            try
+            {
+                compilerData.getProfile().write(new File(profileFile));
+            }
+            catch (IOException e)
+            {
+                throw new BuildException("Failed to write the build profile " + profileFile, e);
+            }
+        }
+
     }
 
     private static String fixPathString(String path)
@@ -416,6 +416,11 @@ public abstract class AutomatedInstallData implements Serializable
         return panels;
     }
 
+    public void setPanels(List panels)
+    {
+        this.panels = panels;
+    }
+
     public List<Panel> getPanelsOrder()
     {
         return panelsOrder;
@@ -0,0 +1,293 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A langpack pre-compiled into a binary string table.
+ * <p/>
+ * The table holds the UTF-8 encoded keys and values of the langpack in a single byte array, the
+ * keys sorted by their encoded bytes. Strings are looked up with a binary search and only decoded
+ * when they are requested, so reading a langpack doesn't create an object per entry.
+ * <p/>
+ * The format is a magic number, the entry count, the offsets of the keys and values, and the
+ * string data. The compiler writes langpacks in this format, {@link LocaleDatabase} reads them
+ * as well as the XML format.
+ */
+public class CompiledLangpack
+{
+    /**
+     * The magic number starting a compiled langpack.
+     */
+    static final int MAGIC = 0x495a4c31;
+
+    /**
+     * The extension of compiled langpack resources, which are stored next to the <tt>.xml</tt>
+     * resources of XML langpacks.
+     */
+    public static final String EXTENSION = ".bin";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Comparator<byte[]> BYTE_ORDER = new Comparator<byte[]>()
+    {
+        public int compare(byte[] first, byte[] second)
+        {
+            return CompiledLangpack.compare(first, second, 0, second.length);
+        }
+    };
+
+    /**
+     * The offsets of the entries. Entry <tt>i</tt> has its key at <tt>offsets[2 * i]</tt> and its
+     * value at <tt>offsets[2 * i + 1]</tt>, each string ending where the next one starts.
+     */
+    private final int[] offsets;
+
+    private final byte[] data;
+
+    /**
+     * The values decoded so far.
+     */
+    private final String[] values;
+
+    private CompiledLangpack(int[] offsets, byte[] data)
+    {
+        this.offsets = offsets;
+        this.data = data;
+        this.values = new String[offsets.length / 2];
+    }
+
+    /**
+     * Determines if the stream starts with a compiled langpack. The stream is reset to where it
+     * was.
+     *
+     * @param in a stream supporting mark and reset
+     * @return <tt>true</tt> if it is a compiled langpack, <tt>false</tt> if it is something else
+     * @throws IOException if the stream can't be read
+     */
+    public static boolean isCompiled(InputStream in) throws IOException
+    {
+        in.mark(4);
+        try
+        {
+            int magic = 0;
+            for (int i = 0; i < 4; i++)
+            {
+                int b = in.read();
+                if (b == -1)
+                {
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        }
+        finally
+        {
+            in.reset();
+        }
+    }
+
+    /**
+     * Reads a compiled langpack.
+     *
+     * @param in the stream to read from
+     * @return the langpack
+     * @throws IOException if the stream can't be read or holds no compiled langpack
+     */
+    public static CompiledLangpack read(InputStream in) throws IOException
+    {
+        DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC)
+        {
+            throw new IOException("Not a compiled langpack");
+        }
+        int count = dataIn.readInt();
+        int[] offsets = new int[2 * count + 1];
+        for (int i = 0; i < offsets.length; i++)
+        {
+            offsets[i] = dataIn.readInt();
+        }
+        byte[] data = new byte[offsets[2 * count]];
+        dataIn.readFully(data);
+        return new CompiledLangpack(offsets, data);
+    }
+
+    /**
+     * Writes the entries as a compiled langpack. Entries without a value are left out.
+     *
+     * @param entries the langpack entries
+     * @param out     the stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    public static void write(Map<String, String> entries, OutputStream out) throws IOException
+    {
+        List<byte[]> keys = new ArrayList<byte[]>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet())
+        {
+            if (entry.getKey() != null && entry.getValue() != null)
+            {
+                keys.add(entry.getKey().getBytes(UTF8));
+            }
+        }
+        Collections.sort(keys, BYTE_ORDER);
+
+        List<byte[]> strings = new ArrayList<byte[]>(2 * keys.size());
+        int offset = 0;
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(keys.size());
+        for (byte[] key : keys)
+        {
+            byte[] value = entries.get(new String(key, UTF8)).getBytes(UTF8);
+            dataOut.writeInt(offset);
+            offset += key.length;
+            dataOut.writeInt(offset);
+            offset += value.length;
+            strings.add(key);
+            strings.add(value);
+        }
+        dataOut.writeInt(offset);
+        for (byte[] string : strings)
+        {
+            dataOut.write(string);
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return values.length;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or <tt>null</tt> if the key isn't defined
+     */
+    public String get(String key)
+    {
+        int index = indexOf(key.getBytes(UTF8));
+        return (index < 0) ? null : getValue(index);
+    }
+
+    /**
+     * Determines if a key is defined.
+     *
+     * @param key the key
+     * @return <tt>true</tt> if the key is defined
+     */
+    public boolean containsKey(String key)
+    {
+        return indexOf(key.getBytes(UTF8)) >= 0;
+    }
+
+    /**
+     * Copies all entries into a map.
+     *
+     * @param map the map to copy to
+     */
+    public void copyTo(Map<String, String> map)
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            map.put(decode(2 * i), getValue(i));
+        }
+    }
+
+    private int indexOf(byte[] key)
+    {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int start = offsets[2 * mid];
+            int result = compare(key, data, start, offsets[2 * mid + 1] - start);
+            if (result > 0)
+            {
+                low = mid + 1;
+            }
+            else if (result < 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String getValue(int index)
+    {
+        String value = values[index];
+        if (value == null)
+        {
+            value = decode(2 * index + 1);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private String decode(int offsetIndex)
+    {
+        int start = offsets[offsetIndex];
+        return new String(data, start, offsets[offsetIndex + 1] - start, UTF8);
+    }
+
+    /**
+     * Compares bytes in unsigned byte order.
+     *
+     * @return a negative value, zero or a positive value if <tt>first</tt> is less than, equal to
+     *         or greater than <tt>length</tt> bytes of <tt>second</tt> starting at <tt>start</tt>
+     */
+    private static int compare(byte[] first, byte[] second, int start, int length)
+    {
+        int common = Math.min(first.length, length);
+        for (int i = 0; i < common; i++)
+        {
+            int diff = (first[i] & 0xff) - (second[start + i] & 0xff);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return first.length - length;
+    }
+}
@@ -24,14 +24,23 @@ import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.exception.IzPackException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
  * Represents a database of a locale.
+ * <p/>
+ * Langpacks compiled into a {@link CompiledLangpack} are looked up in their table as long as only
+ * {@link #get(Object)} and {@link #containsKey(Object)} are used. Any other access copies their
+ * entries into the map first.
  *
  * @author Julien Ponge
  * @author J. Chris Folsom <jchrisfolsom@gmail.com>
@@ -61,6 +70,12 @@ public class LocaleDatabase extends TreeMap<String, String>
 
     static final long serialVersionUID = 4941525634108401848L;
 
+    /**
+     * The compiled langpack whose entries aren't copied into the map yet. Entries of the map take
+     * precedence.
+     */
+    private transient volatile CompiledLangpack compiled;
+
     /**
      * The constructor.
      *
@@ -76,13 +91,30 @@ public class LocaleDatabase extends TreeMap<String, String>
 
     /**
      * Adds the contents of the given stream to the data base. The stream have to contain key value
-     * pairs as declared by the DTD langpack.dtd.
+     * pairs as declared by the DTD langpack.dtd, or a {@link CompiledLangpack}.
      *
      * @param in an InputStream to read the translation from.
      * @throws Exception
      */
     public void add(InputStream in)
     {
+        if (!in.markSupported())
+        {
+            in = new BufferedInputStream(in);
+        }
+        try
+        {
+            if (CompiledLangpack.isCompiled(in))
+            {
+                add(CompiledLangpack.read(in));
+                return;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IzPackException("Failed to read langpack", e);
+        }
+
         // Initialises the parser
         IXMLParser parser = new XMLParser();
         // We get the data
@@ -111,6 +143,172 @@ public class LocaleDatabase extends TreeMap<String, String>
 
     }
 
+    /**
+     * Adds the entries of a compiled langpack, overriding existing entries.
+     *
+     * @param langpack the compiled langpack
+     */
+    private void add(CompiledLangpack langpack)
+    {
+        if (compiled == null && super.isEmpty())
+        {
+            compiled = langpack;
+        }
+        else
+        {
+            materialize();
+            langpack.copyTo(this);
+        }
+    }
+
+    /**
+     * Copies the entries of the compiled langpack into the map.
+     * <p/>
+     * The compiled langpack is dropped only once all its entries are in the map, so that
+     * unsynchronized readers find each entry in either of them meanwhile.
+     */
+    private synchronized void materialize()
+    {
+        CompiledLangpack langpack = compiled;
+        if (langpack != null)
+        {
+            Map<String, String> entries = new HashMap<String, String>();
+            langpack.copyTo(entries);
+            for (Map.Entry<String, String> entry : entries.entrySet())
+            {
+                if (!super.containsKey(entry.getKey()))
+                {
+                    super.put(entry.getKey(), entry.getValue());
+                }
+            }
+            compiled = null;
+        }
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        String value = super.get(key);
+        CompiledLangpack langpack = compiled;
+        if (value == null && langpack != null && key instanceof String)
+        {
+            value = langpack.get((String) key);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        CompiledLangpack langpack = compiled;
+        return super.containsKey(key) || (langpack != null && key instanceof String
+                && langpack.containsKey((String) key));
+    }
+
+    @Override
+    public String remove(Object key)
+    {
+        materialize();
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        compiled = null;
+        super.clear();
+    }
+
+    @Override
+    public int size()
+    {
+        materialize();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        CompiledLangpack langpack = compiled;
+        return (langpack == null || langpack.size() == 0) && super.isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<String> values()
+    {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public String firstKey()
+    {
+        materialize();
+        return super.firstKey();
+    }
+
+    @Override
+    public String lastKey()
+    {
+        materialize();
+        return super.lastKey();
+    }
+
+    @Override
+    public SortedMap<String, String> headMap(String toKey)
+    {
+        materialize();
+        return super.headMap(toKey);
+    }
+
+    @Override
+    public SortedMap<String, String> tailMap(String fromKey)
+    {
+        materialize();
+        return super.tailMap(fromKey);
+    }
+
+    @Override
+    public SortedMap<String, String> subMap(String fromKey, String toKey)
+    {
+        materialize();
+        return super.subMap(fromKey, toKey);
+    }
+
+    @Override
+    public Object clone()
+    {
+        materialize();
+        return super.clone();
+    }
+
+    private Object writeReplace()
+    {
+        materialize();
+        return this;
+    }
+
     /**
      * Convenience method to retrieve an element.
      *
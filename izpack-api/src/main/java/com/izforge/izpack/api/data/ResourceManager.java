@@ -26,14 +26,22 @@ import com.izforge.izpack.api.exception.ResourceNotFoundException;
 
 import javax.swing.*;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * With this ResourceManager you are able to get resources from the jar file.
@@ -78,6 +86,24 @@ public class ResourceManager
      */
     private String bundleName = null;
 
+    /**
+     * The located resources by path. Resources which don't exist are mapped to <tt>null</tt>.
+     */
+    private final Map<String, URL> resources = new HashMap<String, URL>();
+
+    /**
+     * The entries below {@link #INDEX_PREFIX} of the installer jar, if the installer jar is the only
+     * element of the class path. <tt>null</tt> if not available.
+     */
+    private Set<String> index;
+
+    private boolean indexed = false;
+
+    /**
+     * The prefix of the indexed jar entries.
+     */
+    private static final String INDEX_PREFIX = "resources/";
+
     /**
      * The instance of this class.
      */
@@ -188,13 +214,120 @@ public class ResourceManager
 
     private boolean resourceExists(String resourcePath)
     {
-        boolean result = true;
-        InputStream in = ResourceManager.class.getResourceAsStream(resourcePath);
-        if (in == null)
+        return findResource(resourcePath) != null;
+    }
+
+    /**
+     * Locates a resource on the system class path. The result is cached, whether the resource
+     * exists or not. Paths below {@link #INDEX_PREFIX}, with or without a leading slash, are
+     * looked up in the index of the installer jar if there is one, so that missing resources
+     * are answered without asking the class loader.
+     *
+     * @param resourcePath the resource path
+     * @return the resource URL, or <tt>null</tt> if the resource doesn't exist
+     */
+    private URL findResource(String resourcePath)
+    {
+        synchronized (resources)
         {
-            result = false;
+            if (resources.containsKey(resourcePath))
+            {
+                return resources.get(resourcePath);
+            }
+            URL url = null;
+            String name = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
+            Set<String> index = getIndex();
+            if (index == null || !name.startsWith(INDEX_PREFIX))
+            {
+                url = getSystemResource(resourcePath);
+            }
+            else if (index.contains(name))
+            {
+                url = getSystemResource(name);
+            }
+            resources.put(resourcePath, url);
+            return url;
         }
-        return result;
+    }
+
+    /**
+     * Asks the system class loader for a resource.
+     *
+     * @param resourcePath the resource path
+     * @return the resource URL, or <tt>null</tt> if the resource doesn't exist
+     */
+    URL getSystemResource(String resourcePath)
+    {
+        return ClassLoader.getSystemResource(resourcePath);
+    }
+
+    /**
+     * Opens a resource located by {@link #findResource(String)}.
+     *
+     * @param resourcePath the resource path
+     * @return the resource stream, or <tt>null</tt> if the resource doesn't exist
+     */
+    private InputStream openResource(String resourcePath)
+    {
+        URL url = findResource(resourcePath);
+        if (url == null)
+        {
+            return null;
+        }
+        try
+        {
+            return url.openStream();
+        }
+        catch (IOException e)
+        {
+            LOGGER.warning("Failed to open resource " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the installer jar. The index is only built if the installer jar is the
+     * only element of the class path, as otherwise a resource may also be found elsewhere.
+     *
+     * @return the resource entry names, or <tt>null</tt> if not available
+     */
+    private Set<String> getIndex()
+    {
+        if (!indexed)
+        {
+            indexed = true;
+            String classPath = System.getProperty("java.class.path");
+            if (classPath != null && classPath.indexOf(File.pathSeparatorChar) < 0 && new File(classPath).isFile())
+            {
+                try
+                {
+                    ZipFile jar = new ZipFile(classPath);
+                    try
+                    {
+                        Set<String> names = new HashSet<String>();
+                        Enumeration<? extends ZipEntry> entries = jar.entries();
+                        while (entries.hasMoreElements())
+                        {
+                            String name = entries.nextElement().getName();
+                            if (name.startsWith(INDEX_PREFIX))
+                            {
+                                names.add(name);
+                            }
+                        }
+                        index = names;
+                    }
+                    finally
+                    {
+                        jar.close();
+                    }
+                }
+                catch (IOException e)
+                {
+                    LOGGER.warning("Failed to index " + classPath + ": " + e.getMessage());
+                }
+            }
+        }
+        return index;
     }
 
     /**
@@ -207,19 +340,15 @@ public class ResourceManager
      */
     private String getAbsoluteLanguageResourceString(String resource)
     {
-        InputStream in;
-
         String resourcePath = resource + "_" + this.locale;
-        in = ClassLoader.getSystemResourceAsStream(resourcePath);
-        if (in != null)
+        if (resourceExists(resourcePath))
         {
             return resourcePath;
         }
         else
         {
             // if there's no language dependent resource found
-            in = ClassLoader.getSystemResourceAsStream(resource);
-            if (in != null)
+            if (resourceExists(resource))
             {
                 return resource;
             }
@@ -254,7 +383,7 @@ public class ResourceManager
     public InputStream getInputStream(String resource) throws ResourceNotFoundException
     {
         String resourcepath = this.getLanguageResourceString(resource);
-        return ClassLoader.getSystemResourceAsStream(resourcepath);
+        return openResource(resourcepath);
     }
 
     /**
@@ -271,7 +400,7 @@ public class ResourceManager
         {
             return defaultValue;
         }
-        return ClassLoader.getSystemResourceAsStream(resourcepath);
+        return openResource(resourcepath);
     }
 
     /**
@@ -283,7 +412,7 @@ public class ResourceManager
      */
     public URL getLocalizedURL(String resource)
     {
-        return ClassLoader.getSystemResource(this.getLanguageResourceString(resource));
+        return findResource(this.getLanguageResourceString(resource));
     }
 
 
@@ -316,9 +445,16 @@ public class ResourceManager
         ByteArrayOutputStream infoData = new ByteArrayOutputStream();
         byte[] buffer = new byte[5120];
         int bytesInBuffer;
-        while ((bytesInBuffer = in.read(buffer)) != -1)
+        try
+        {
+            while ((bytesInBuffer = in.read(buffer)) != -1)
+            {
+                infoData.write(buffer, 0, bytesInBuffer);
+            }
+        }
+        finally
         {
-            infoData.write(buffer, 0, bytesInBuffer);
+            in.close();
         }
 
         if (encoding != null)
@@ -408,15 +544,24 @@ public class ResourceManager
     }
 
     /**
-     * Get langpack of the given locale
+     * Get langpack of the given locale. The {@link CompiledLangpack} is preferred to the XML
+     * langpack.
      *
      * @param localeISO3 langpack to get
-     * @return InputStream on the xml
+     * @return InputStream on the langpack
+     * @throws ResourceNotFoundException if the langpack doesn't exist
      */
     public InputStream getLangPack(String localeISO3)
     {
-        return ClassLoader.getSystemResourceAsStream(getResourceBasePath() + "/langpacks/"
-                + localeISO3 + ".xml");
+        String langpack = "langpacks/" + localeISO3;
+        try
+        {
+            return getInputStream(langpack + CompiledLangpack.EXTENSION);
+        }
+        catch (ResourceNotFoundException e)
+        {
+            return getInputStream(langpack + ".xml");
+        }
     }
 
     /**
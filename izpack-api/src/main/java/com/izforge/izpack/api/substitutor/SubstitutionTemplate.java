@@ -0,0 +1,43 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.substitutor;
+
+/**
+ * A string which has been parsed once into literal text and variable references by
+ * {@link VariableSubstitutor#compile(String, SubstitutionType)}. Substituting a template only
+ * concatenates the literal text with the current values of the variables, so it is cheap to
+ * substitute the same string many times while the variables change.
+ */
+public interface SubstitutionTemplate
+{
+    /**
+     * Substitutes the current variable values into the template.
+     *
+     * @return the string with substituted variables
+     */
+    String substitute();
+
+    /**
+     * Returns whether the template references any variables.
+     *
+     * @return <tt>true</tt> if substituting the template may yield different results over time
+     */
+    boolean hasVariables();
+}
@@ -45,6 +45,17 @@ public interface VariableSubstitutor extends Serializable
      */
     String substitute(String str, SubstitutionType type);
 
+    /**
+     * Parses the specified string into a template which can be substituted repeatedly without
+     * parsing the string again. The template uses the variable values at the time it is
+     * substituted, and the brace requirement at the time it was compiled.
+     *
+     * @param str  the string to check for variables
+     * @param type the escaping type or null for plain
+     * @return the compiled template
+     */
+    SubstitutionTemplate compile(String str, SubstitutionType type);
+
     /**
      * Substitutes the variables found in the specified input stream. Escapes special characters
      * using file type specific escaping if necessary.
@@ -21,6 +21,9 @@ package com.izforge.izpack.api.data;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
 public class LocaleDatabaseTest extends TestCase
 {
 
@@ -53,4 +56,31 @@ public class LocaleDatabaseTest extends TestCase
                 "string.with.quoted.arguments", new String[]{"one", null}));
     }
 
+    public void testCompiledLangpack() throws Exception
+    {
+        _db.put("umlaut.\u00e4", "\u00fcber");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledLangpack.write(_db, out);
+
+        LocaleDatabase compiled = new LocaleDatabase(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("String Text", compiled.getString("string"));
+        assertEquals("\u00fcber", compiled.getString("umlaut.\u00e4"));
+        assertEquals("none", compiled.getString("none"));
+        assertTrue(compiled.containsKey("string.with.arguments"));
+        assertFalse(compiled.containsKey("none"));
+        assertEquals(_db, compiled);
+    }
+
+    public void testAddToCompiledLangpack() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledLangpack.write(_db, out);
+        LocaleDatabase compiled = new LocaleDatabase(new ByteArrayInputStream(out.toByteArray()));
+
+        compiled.put("string", "Custom Text");
+        assertEquals("Custom Text", compiled.getString("string"));
+        assertEquals(3, compiled.size());
+        assertEquals("Custom Text", compiled.getString("string"));
+    }
+
 }
@@ -0,0 +1,108 @@
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the resource manager
+ */
+public class ResourceManagerTest
+{
+    private ResourceManager resourceManager;
+
+    @Before
+    public void setUp()
+    {
+        resourceManager = new ResourceManager(new Properties());
+    }
+
+    @Test
+    public void shouldFallBackToDefaultResource() throws Exception
+    {
+        resourceManager.setLocale("fra");
+        assertThat(resourceManager.getTextResource("ResourceManagerTest.txt"), Is.is("default text"));
+    }
+
+    @Test
+    public void shouldPreferLocalizedResource() throws Exception
+    {
+        resourceManager.setLocale("deu");
+        assertThat(resourceManager.getTextResource("ResourceManagerTest.txt"), Is.is("deutscher Text"));
+        resourceManager.setLocale("eng");
+        assertThat(resourceManager.getTextResource("ResourceManagerTest.txt"), Is.is("default text"));
+    }
+
+    @Test
+    public void shouldFailRepeatedlyForMissingResource() throws Exception
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                resourceManager.getInputStream("ResourceManagerTest.missing");
+                throw new AssertionError("Missing resource found");
+            }
+            catch (ResourceNotFoundException expected)
+            {
+            }
+        }
+    }
+
+    @Test
+    public void shouldAnswerMissingResourceFromInstallerJarIndex() throws Exception
+    {
+        // an installer jar holding the default resource only
+        File jar = File.createTempFile("installer", ".jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        out.putNextEntry(new ZipEntry("resources/ResourceManagerTest.txt"));
+        out.closeEntry();
+        out.close();
+        String classPath = System.getProperty("java.class.path");
+        System.setProperty("java.class.path", jar.getPath());
+        try
+        {
+            final List<String> lookups = new ArrayList<String>();
+            resourceManager = new ResourceManager(new Properties())
+            {
+                @Override
+                URL getSystemResource(String resourcePath)
+                {
+                    lookups.add(resourcePath);
+                    return super.getSystemResource(resourcePath);
+                }
+            };
+            // the localized resource is on the class path, but not in the index
+            resourceManager.setLocale("deu");
+            assertThat(resourceManager.getTextResource("ResourceManagerTest.txt"), Is.is("default text"));
+            try
+            {
+                resourceManager.getInputStream("ResourceManagerTest.missing");
+                throw new AssertionError("Missing resource found");
+            }
+            catch (ResourceNotFoundException expected)
+            {
+            }
+            // only the indexed resource is looked up by the class loader
+            assertThat(lookups.size(), Is.is(1));
+            assertThat(lookups.get(0), Is.is("resources/ResourceManagerTest.txt"));
+        }
+        finally
+        {
+            System.setProperty("java.class.path", classPath);
+            jar.delete();
+        }
+    }
+}
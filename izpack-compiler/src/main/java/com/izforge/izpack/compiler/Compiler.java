@@ -25,8 +25,6 @@
 
 package com.izforge.izpack.compiler;
 
-import com.izforge.izpack.api.data.Pack;
-import com.izforge.izpack.api.data.PackColor;
 import com.izforge.izpack.api.data.binding.OsModel;
 import com.izforge.izpack.api.exception.CompilerException;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
@@ -34,6 +32,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.CompilerHelper;
+import com.izforge.izpack.compiler.helper.PackGraphChecker;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.PackInfo;
@@ -42,10 +41,7 @@ import com.izforge.izpack.util.Debug;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.jar.JarInputStream;
 import java.util.zip.ZipEntry;
 
@@ -173,106 +169,37 @@ public class Compiler extends Thread
      */
     public void checkExcludes(List<PackInfo> packs) throws CompilerException
     {
-        for (int q = 0; q < packs.size(); q++)
-        {
-            PackInfo packinfo1 = packs.get(q);
-            Pack pack1 = packinfo1.getPack();
-            for (int w = 0; w < q; w++)
-            {
-
-                PackInfo packinfo2 = packs.get(w);
-                Pack pack2 = packinfo2.getPack();
-                if (pack1.excludeGroup != null && pack2.excludeGroup != null)
-                {
-                    if (pack1.excludeGroup.equals(pack2.excludeGroup))
-                    {
-                        if (pack1.preselected && pack2.preselected)
-                        {
-                            parseError("Packs " + pack1.name + " and " + pack2.name +
-                                    " belong to the same excludeGroup " + pack1.excludeGroup +
-                                    " and are both preselected. This is not allowed.");
-                        }
-                    }
-                }
-            }
-
-        }
+        reportProblems(new PackGraphChecker().checkExcludes(packs));
     }
 
     /**
      * Checks whether the dependencies among the given Packs. Specifically it
      * checks that no pack point to a non existent pack and also that there are no circular
-     * dependencies in the packs.
+     * dependencies in the packs. All missing dependencies and cycles are reported at once.
      *
      * @param packs - List<Pack> representing the packs in the installation
      * @throws CompilerException
      */
     public void checkDependencies(List<PackInfo> packs) throws CompilerException
     {
-        // Because we use package names in the configuration file we assosiate
-        // the names with the objects
-        Map<String, PackInfo> names = new HashMap<String, PackInfo>();
-        for (PackInfo pack : packs)
-        {
-            names.put(pack.getPack().name, pack);
-        }
-        int result = dfs(packs, names);
-        // @todo More informative messages to include the source of the error
-        if (result == -2)
-        {
-            parseError("Circular dependency detected");
-        }
-        else if (result == -1)
-        {
-            parseError("A dependency doesn't exist");
-        }
+        reportProblems(new PackGraphChecker().checkDependencies(packs));
     }
 
-    /**
-     * We use the dfs graph search algorithm to check whether the graph is acyclic as described in:
-     * Thomas H. Cormen, Charles Leiserson, Ronald Rivest and Clifford Stein. Introduction to
-     * algorithms 2nd Edition 540-549,MIT Press, 2001
-     *
-     * @param packs The graph
-     * @param names The name map
-     * @return -2 if back edges exist, else 0
-     */
-    private int dfs(List<PackInfo> packs, Map<String, PackInfo> names)
+    private void reportProblems(List<String> problems) throws CompilerException
     {
-        Map<Edge, PackColor> edges = new HashMap<Edge, PackColor>();
-        for (PackInfo pack : packs)
+        if (!problems.isEmpty())
         {
-            if (pack.colour == PackColor.WHITE)
+            StringBuilder message = new StringBuilder();
+            for (String problem : problems)
             {
-                if (dfsVisit(pack, names, edges) != 0)
+                if (message.length() > 0)
                 {
-                    return -1;
+                    message.append('\n');
                 }
+                message.append(problem);
             }
-
+            parseError(message.toString());
         }
-        return checkBackEdges(edges);
-    }
-
-    /**
-     * This function checks for the existence of back edges.
-     *
-     * @param edges map to be checked
-     * @return -2 if back edges exist, else 0
-     */
-    private int checkBackEdges(Map<Edge, PackColor> edges)
-    {
-        Set<Edge> keys = edges.keySet();
-        for (final Edge key : keys)
-        {
-            PackColor color = edges.get(key);
-            if (color == PackColor.GREY)
-            {
-                return -2;
-            }
-        }
-        return 0;
-
     }
 
     public static void parseWarn(String message)
@@ -280,58 +207,6 @@ public class Compiler extends Thread
         System.out.println("Warning: " + message);
     }
 
-    /**
-     * This class is used for the classification of the edges
-     */
-    private class Edge
-    {
-
-        PackInfo u;
-
-        PackInfo v;
-
-        Edge(PackInfo u, PackInfo v)
-        {
-            this.u = u;
-            this.v = v;
-        }
-    }
-
-    private int dfsVisit(PackInfo u, Map<String, PackInfo> names, Map<Edge, PackColor> edges)
-    {
-        u.colour = PackColor.GREY;
-        List<String> deps = u.getDependencies();
-        if (deps != null)
-        {
-            for (String name : deps)
-            {
-                PackInfo v = names.get(name);
-                if (v == null)
-                {
-                    System.out.println("Failed to find dependency: " + name);
-                    return -1;
-                }
-                Edge edge = new Edge(u, v);
-                if (edges.get(edge) == null)
-                {
-                    edges.put(edge, v.colour);
-                }
-
-                if (v.colour == PackColor.WHITE)
-                {
-
-                    final int result = dfsVisit(v, names, edges);
-                    if (result != 0)
-                    {
-                        return result;
-                    }
-                }
-            }
-        }
-        u.colour = PackColor.BLACK;
-        return 0;
-    }
-
     public URL findIzPackResource(String path, String desc) throws CompilerException
     {
         return findIzPackResource(path, desc, false);
@@ -47,6 +47,7 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.data.BuildProfile;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
@@ -55,6 +56,7 @@ import com.izforge.izpack.compiler.helper.TargetFileSet;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
 import com.izforge.izpack.compiler.listener.CompilerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
+import com.izforge.izpack.compiler.resource.DescriptorParser;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
 import com.izforge.izpack.core.data.DynamicInstallerRequirementValidatorImpl;
 import com.izforge.izpack.core.data.DynamicVariableImpl;
@@ -70,8 +72,16 @@ import com.izforge.izpack.util.file.FileUtils;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.*;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -124,6 +134,26 @@ public class CompilerConfig extends Thread
      * @see #mergePacksLangFiles()
      */
     private Map<String, List<URL>> packsLangUrlMap = new HashMap<String, List<URL>>();
+
+    /**
+     * The number of threads parsing refpacks and resolving pack files.
+     */
+    private static final int PACK_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of packs being resolved at the same time.
+     */
+    private static final int MAX_PENDING_PACKS = 2 * PACK_THREADS;
+
+    /**
+     * The executor parsing refpacks and resolving the files of packs while the packs are added.
+     */
+    private ExecutorService packExecutor;
+
+    /**
+     * The packs being resolved, in declaration order.
+     */
+    private final LinkedList<Future<PackInfo>> pendingPacks = new LinkedList<Future<PackInfo>>();
     private String unpackerClassname = "com.izforge.izpack.installer.unpacker.Unpacker";
     private String packagerClassname = "com.izforge.izpack.compiler.packager.impl.Packager";
     private PathResolver pathResolver;
@@ -242,15 +272,24 @@ public class CompilerConfig extends Thread
         addInfo(data);
         addGUIPrefs(data);
         addLangpacks(data);
+        BuildProfile profile = compilerData.getProfile();
+        BuildProfile.Timer timer = profile.startPhase();
         addResources(data);
+        profile.endPhase("addResources", timer);
         addNativeLibraries(data);
         addJars(data);
+        timer = profile.startPhase();
         addPanels(data);
+        profile.endPhase("addPanels", timer);
+        timer = profile.startPhase();
         addPacks(data);
+        profile.endPhase("addPacks", timer);
         addInstallerRequirement(data);
 
         // merge multiple packlang.xml files
+        timer = profile.startPhase();
         mergePacksLangFiles();
+        profile.endPhase("mergePacksLangFiles", timer);
 
         // We ask the packager to create the installer
         compiler.createInstaller();
@@ -509,9 +548,28 @@ public class CompilerConfig extends Thread
     {
         notifyCompilerListener("addPacks", CompilerListener.BEGIN, data);
 
-        // the actual adding is delegated to addPacksSingle to enable recursive
-        // parsing of refpack package definitions
-        addPacksSingle(data);
+        packExecutor = Executors.newFixedThreadPool(PACK_THREADS, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack-packs");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            // the actual adding is delegated to addPacksSingle to enable recursive
+            // parsing of refpack package definitions
+            addPacksSingle(data);
+            addPendingPacks();
+        }
+        finally
+        {
+            packExecutor.shutdownNow();
+            packExecutor = null;
+            pendingPacks.clear();
+        }
 
         compiler.checkDependencies();
         compiler.checkExcludes();
@@ -522,6 +580,8 @@ public class CompilerConfig extends Thread
     /**
      * Add packs and their contents to the installer without checking the dependencies and includes.
      * <p/> Helper method to recursively add more packs from refpack XML packs definitions
+     * <p/> The packs of an installation file are parsed one at a time, so the listeners notified
+     * with <tt>data</tt> only see <tt>&lt;pack&gt;</tt> elements holding their attributes.
      *
      * @param data The XML data
      * @throws CompilerException
@@ -541,105 +601,31 @@ public class CompilerConfig extends Thread
             assertionHelper.parseError(root, "<packs> requires a <pack>, <refpack> or <refpackset>");
         }
 
-        File baseDir = new File(compilerData.getBasedir());
+        final File baseDir = new File(compilerData.getBasedir());
 
-        for (IXMLElement packElement : packElements)
+        URL deferredPacks = DescriptorParser.getDeferredPacks(root);
+        if (deferredPacks != null)
         {
-
-            // Trivial initialisations
-            String name = xmlCompilerHelper.requireAttribute(packElement, "name");
-            String id = packElement.getAttribute("id");
-            String packImgId = packElement.getAttribute("packImgId");
-
-            boolean loose = "true".equalsIgnoreCase(packElement.getAttribute("loose", "false"));
-            String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
-            boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
-            String group = packElement.getAttribute("group");
-            String installGroups = packElement.getAttribute("installGroups");
-            String excludeGroup = packElement.getAttribute("excludeGroup");
-            boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
-            String parent = packElement.getAttribute("parent");
-            boolean hidden = "true".equalsIgnoreCase(packElement.getAttribute("hidden", "false"));
-
-            String conditionid = packElement.getAttribute("condition");
-
-            if (required && excludeGroup != null)
-            {
-                assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.", new Exception(
-                        "Pack, which has excludeGroup can not be required."));
-            }
-
-            PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
-                    uninstall);
-            pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
-            pack.setParent(parent);
-            pack.setCondition(conditionid);
-            pack.setHidden(hidden);
-
-            // unverified
-            // if the pack belongs to an excludeGroup it's not preselected by default
-            if (excludeGroup == null)
-            {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
-            }
-            else
+            // the content of the packs is read one pack at a time
+            new DescriptorParser().parsePacks(deferredPacks, new DescriptorParser.PackHandler()
             {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
-            }
-
-            // Set the pack group if specified
-            if (group != null)
-            {
-                pack.setGroup(group);
-            }
-            // Set the pack install groups if specified
-            if (installGroups != null)
-            {
-                StringTokenizer st = new StringTokenizer(installGroups, ",");
-                while (st.hasMoreTokens())
+                public void handlePack(IXMLElement packElement) throws CompilerException
                 {
-                    String igroup = st.nextToken();
-                    pack.addInstallGroup(igroup);
+                    substituteAllProperties(packElement);
+                    addPack(baseDir, packElement);
                 }
-            }
-
-            // Set the packImgId if specified
-            if (packImgId != null)
-            {
-                pack.setPackImgId(packImgId);
-            }
-
-            List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
-            processParsableChildren(pack, parsableChildren);
-
-            List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
-            processExecutableChildren(pack, executableChildren);
-
-            processFileChildren(baseDir, packElement, pack);
-
-            processSingleFileChildren(baseDir, packElement, pack);
-
-            processFileSetChildren(baseDir, packElement, pack);
-
-            processUpdateCheckChildren(packElement, pack);
-
-            // We get the dependencies
-            for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
-            {
-                String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
-                pack.addDependency(depName);
-
-            }
-
-            for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
+            });
+        }
+        else
+        {
+            for (IXMLElement packElement : packElements)
             {
-                pack.addValidator(xmlCompilerHelper.requireContent(validatorNode));
+                addPack(baseDir, packElement);
             }
-
-            // We add the pack
-            packager.addPack(pack);
         }
 
+        // the refpacks are parsed in parallel, and added in declaration order
+        List<URL> refPackURLs = new ArrayList<URL>();
         for (IXMLElement refPackElement : refPackElements)
         {
 
@@ -648,12 +634,7 @@ public class CompilerConfig extends Thread
             String selfcontained = refPackElement.getAttribute("selfcontained");
             boolean isselfcontained = Boolean.valueOf(selfcontained);
 
-            // parsing ref-pack-set file
-            IXMLElement refXMLData = this.readRefPackData(refFileName, isselfcontained);
-
-            Debug.log("Reading refpack from " + refFileName);
-            // Recursively call myself to add all packs and refpacks from the reference XML
-            addPacksSingle(refXMLData);
+            refPackURLs.add(getRefPackURL(refFileName, isselfcontained));
         }
 
         for (IXMLElement refPackSet : refPackSets)
@@ -692,12 +673,7 @@ public class CompilerConfig extends Thread
                 for (String file : files)
                 {
                     String refFileName = new File(dir, file).toString();
-
-                    // parsing ref-pack-set file
-                    IXMLElement refXMLData = this.readRefPackData(refFileName, false);
-
-                    // Recursively call myself to add all packs and refpacks from the reference XML
-                    addPacksSingle(refXMLData);
+                    refPackURLs.add(getRefPackURL(refFileName, false));
                 }
             }
             catch (Exception e)
@@ -706,9 +682,240 @@ public class CompilerConfig extends Thread
             }
         }
 
+        List<Future<IXMLElement>> refPacks = new ArrayList<Future<IXMLElement>>();
+        for (final URL refPackURL : refPackURLs)
+        {
+            refPacks.add(submit(new Callable<IXMLElement>()
+            {
+                public IXMLElement call()
+                {
+                    return new DescriptorParser().parse(refPackURL);
+                }
+            }));
+        }
+        for (int i = 0; i < refPackURLs.size(); i++)
+        {
+            Debug.log("Reading refpack from " + refPackURLs.get(i));
+            // parsing ref-pack file
+            IXMLElement refXMLData = readRefPackData(getResult(refPacks.get(i)));
+
+            // Recursively call myself to add all packs and refpacks from the reference XML
+            addPacksSingle(refXMLData);
+        }
+
         notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
     }
 
+    /**
+     * Adds a pack and its contents to the installer.
+     * <p/>
+     * The files of the pack are resolved by the pack executor, unless there are compiler listeners
+     * which are not prepared to be called concurrently. The pack is added to the packager in
+     * declaration order by {@link #addPendingPacks()}.
+     *
+     * @param baseDir     the base directory of the pack files
+     * @param packElement the <tt>&lt;pack&gt;</tt> element, with all properties substituted
+     * @throws CompilerException if the pack is invalid
+     */
+    private void addPack(final File baseDir, final IXMLElement packElement) throws CompilerException
+    {
+        Callable<PackInfo> task = new Callable<PackInfo>()
+        {
+            public PackInfo call() throws CompilerException
+            {
+                return createPack(baseDir, packElement);
+            }
+        };
+        if (compilerListeners.isEmpty())
+        {
+            pendingPacks.add(submit(task));
+        }
+        else
+        {
+            FutureTask<PackInfo> future = new FutureTask<PackInfo>(task);
+            future.run();
+            pendingPacks.add(future);
+        }
+        // limit the packs held in memory
+        while (pendingPacks.size() > MAX_PENDING_PACKS)
+        {
+            packager.addPack(getResult(pendingPacks.removeFirst()));
+        }
+    }
+
+    /**
+     * Adds the packs being resolved to the packager, waiting for them if needed.
+     *
+     * @throws CompilerException if a pack is invalid
+     */
+    private void addPendingPacks() throws CompilerException
+    {
+        while (!pendingPacks.isEmpty())
+        {
+            packager.addPack(getResult(pendingPacks.removeFirst()));
+        }
+    }
+
+    /**
+     * Submits a task to the pack executor, or runs it directly if there is none.
+     *
+     * @param task the task
+     * @return the result of the task
+     */
+    private <T> Future<T> submit(Callable<T> task)
+    {
+        FutureTask<T> future = new FutureTask<T>(task);
+        if (packExecutor != null)
+        {
+            packExecutor.execute(future);
+        }
+        else
+        {
+            future.run();
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the result of a task of the pack executor.
+     *
+     * @param future the result of the task
+     * @return the result
+     * @throws CompilerException if the task failed
+     */
+    private static <T> T getResult(Future<T> future) throws CompilerException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CompilerException("Interrupted while adding the packs", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompilerException)
+            {
+                throw (CompilerException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new CompilerException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Creates a pack with its contents.
+     *
+     * @param baseDir     the base directory of the pack files
+     * @param packElement the <tt>&lt;pack&gt;</tt> element
+     * @return the pack
+     * @throws CompilerException if the pack is invalid
+     */
+    private PackInfo createPack(File baseDir, IXMLElement packElement) throws CompilerException
+    {
+        // Trivial initialisations
+        String name = xmlCompilerHelper.requireAttribute(packElement, "name");
+        String id = packElement.getAttribute("id");
+        String packImgId = packElement.getAttribute("packImgId");
+
+        boolean loose = "true".equalsIgnoreCase(packElement.getAttribute("loose", "false"));
+        String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
+        boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
+        String group = packElement.getAttribute("group");
+        String installGroups = packElement.getAttribute("installGroups");
+        String excludeGroup = packElement.getAttribute("excludeGroup");
+        boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
+        String parent = packElement.getAttribute("parent");
+        boolean hidden = "true".equalsIgnoreCase(packElement.getAttribute("hidden", "false"));
+
+        String conditionid = packElement.getAttribute("condition");
+
+        if (required && excludeGroup != null)
+        {
+            assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.", new Exception(
+                    "Pack, which has excludeGroup can not be required."));
+        }
+
+        PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
+                uninstall);
+        pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
+        pack.setParent(parent);
+        pack.setCondition(conditionid);
+        pack.setHidden(hidden);
+
+        // unverified
+        // if the pack belongs to an excludeGroup it's not preselected by default
+        if (excludeGroup == null)
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
+        }
+        else
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
+        }
+
+        // Set the pack group if specified
+        if (group != null)
+        {
+            pack.setGroup(group);
+        }
+        // Set the pack install groups if specified
+        if (installGroups != null)
+        {
+            StringTokenizer st = new StringTokenizer(installGroups, ",");
+            while (st.hasMoreTokens())
+            {
+                String igroup = st.nextToken();
+                pack.addInstallGroup(igroup);
+            }
+        }
+
+        // Set the packImgId if specified
+        if (packImgId != null)
+        {
+            pack.setPackImgId(packImgId);
+        }
+
+        List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
+        processParsableChildren(pack, parsableChildren);
+
+        List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
+        processExecutableChildren(pack, executableChildren);
+
+        processFileChildren(baseDir, packElement, pack);
+
+        processSingleFileChildren(baseDir, packElement, pack);
+
+        processFileSetChildren(baseDir, packElement, pack);
+
+        processUpdateCheckChildren(packElement, pack);
+
+        // We get the dependencies
+        for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
+        {
+            String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
+            pack.addDependency(depName);
+
+        }
+
+        for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
+        {
+            pack.addValidator(xmlCompilerHelper.requireContent(validatorNode));
+        }
+
+        return pack;
+    }
+
     private void processUpdateCheckChildren(IXMLElement packElement, PackInfo pack) throws CompilerException
     {
         for (IXMLElement updateNode : packElement.getChildrenNamed("updatecheck"))
@@ -1140,8 +1347,15 @@ public class CompilerConfig extends Thread
         return includedFiles.toArray(new String[]{});
     }
 
-    private IXMLElement readRefPackData(String refFileName, boolean isselfcontained)
-            throws CompilerException
+    /**
+     * Returns the URL of the descriptor of a refpack.
+     *
+     * @param refFileName     the refpack file
+     * @param isselfcontained whether the descriptor is <tt>META-INF/izpack.xml</tt> in a zip file
+     * @return the URL of the descriptor
+     * @throws CompilerException if the refpack file is invalid
+     */
+    private URL getRefPackURL(String refFileName, boolean isselfcontained) throws CompilerException
     {
         File refXMLFile = new File(refFileName);
         if (!refXMLFile.isAbsolute())
@@ -1153,8 +1367,7 @@ public class CompilerConfig extends Thread
             throw new CompilerException("Invalid file: " + refXMLFile);
         }
 
-        InputStream specin;
-
+        URL refXMLURL;
         if (isselfcontained)
         {
             if (!refXMLFile.getAbsolutePath().endsWith(".zip"))
@@ -1163,12 +1376,21 @@ public class CompilerConfig extends Thread
                         "Invalid file: " + refXMLFile
                                 + ". Selfcontained files can only be of type zip.");
             }
-            ZipFile zip;
             try
             {
-                zip = new ZipFile(refXMLFile, ZipFile.OPEN_READ);
-                ZipEntry specentry = zip.getEntry("META-INF/izpack.xml");
-                specin = zip.getInputStream(specentry);
+                ZipFile zip = new ZipFile(refXMLFile, ZipFile.OPEN_READ);
+                try
+                {
+                    if (zip.getEntry("META-INF/izpack.xml") == null)
+                    {
+                        throw new CompilerException("Error reading META-INF/izpack.xml in " + refXMLFile);
+                    }
+                }
+                finally
+                {
+                    zip.close();
+                }
+                refXMLURL = new URL("jar:" + refXMLFile.toURI().toURL() + "!/META-INF/izpack.xml");
             }
             catch (IOException e)
             {
@@ -1179,19 +1401,26 @@ public class CompilerConfig extends Thread
         {
             try
             {
-                specin = new FileInputStream(refXMLFile.getAbsolutePath());
+                refXMLURL = refXMLFile.getAbsoluteFile().toURI().toURL();
             }
-            catch (FileNotFoundException e)
+            catch (MalformedURLException e)
             {
-                throw new CompilerException(
-                        "FileNotFoundException exception while reading refXMLFile");
+                throw new CompilerException("Invalid file: " + refXMLFile, e);
             }
         }
 
-        IXMLParser refXMLParser = new XMLParser();
-        // We get it
-        IXMLElement refXMLData = refXMLParser.parse(specin, refXMLFile.getAbsolutePath());
+        return refXMLURL;
+    }
 
+    /**
+     * Checks a parsed refpack descriptor, substitutes its properties and adds its resources.
+     *
+     * @param refXMLData the refpack descriptor, without the content of the packs
+     * @return the refpack descriptor
+     * @throws CompilerException if the descriptor is invalid
+     */
+    private IXMLElement readRefPackData(IXMLElement refXMLData) throws CompilerException
+    {
         // Now checked the loaded XML file for basic syntax
         // We check it
         if (!"installation".equalsIgnoreCase(refXMLData.getName()))
@@ -1203,22 +1432,18 @@ public class CompilerConfig extends Thread
             assertionHelper.parseError(refXMLData, "the file version is different from the compiler version");
         }
 
+        // packs being resolved must not see the properties of later refpacks
+        if (refXMLData.getFirstChildNamed("properties") != null)
+        {
+            addPendingPacks();
+        }
+
         // Read the properties and perform replacement on the rest of the tree
         substituteProperties(refXMLData);
 
         // call addResources to add the referenced XML resources to this installation
         addResources(refXMLData);
 
-        try
-        {
-            specin.close();
-        }
-        catch (IOException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
         return refXMLData;
     }
 
@@ -2136,6 +2361,19 @@ public class CompilerConfig extends Thread
                     {
                         stderr = Boolean.parseBoolean(boolval);
                     }
+                    long timeout = 0;
+                    String timeoutval = var.getAttribute("timeout");
+                    if (timeoutval != null)
+                    {
+                        try
+                        {
+                            timeout = Long.parseLong(timeoutval);
+                        }
+                        catch (NumberFormatException e)
+                        {
+                            assertionHelper.parseError("Bad timeout " + timeoutval + " given for dynamic variable " + name);
+                        }
+                    }
 
                     if (value.length() <= 0)
                     {
@@ -2168,6 +2406,10 @@ public class CompilerConfig extends Thread
                     {
                         assertionHelper.parseError("Bad execution type " + exectype + " given for dynamic variable " + name);
                     }
+                    if (dynamicVariable.getValue() instanceof ExecValue)
+                    {
+                        ((ExecValue) dynamicVariable.getValue()).setTimeout(timeout);
+                    }
                     try
                     {
                         dynamicVariable.validate();
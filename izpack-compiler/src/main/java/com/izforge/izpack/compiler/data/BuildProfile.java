@@ -0,0 +1,374 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Profile of an installer compilation: the wall-clock and CPU time of each phase, the bytes read
+ * and written for each pack, and the largest and slowest files packed.
+ * <p/>
+ * The CPU time is the one of the compiling thread, so it doesn't include the packs gathered
+ * concurrently by other threads.
+ */
+public class BuildProfile
+{
+    /**
+     * The default number of largest and slowest files kept.
+     */
+    public static final int DEFAULT_TOP_FILES = 10;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int topFiles;
+
+    /**
+     * The phases, in the order they ended: {count, wall nanos, cpu nanos}.
+     */
+    private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+
+    /**
+     * The packs, in the order they were written: {bytes in, bytes out, files}.
+     */
+    private final Map<String, long[]> packs = new LinkedHashMap<String, long[]>();
+
+    private final PriorityQueue<FileRecord> largest;
+
+    private final PriorityQueue<FileRecord> slowest;
+
+    /**
+     * Constructs a profile keeping the default number of files.
+     */
+    public BuildProfile()
+    {
+        this(DEFAULT_TOP_FILES);
+    }
+
+    /**
+     * Constructs a profile.
+     *
+     * @param topFiles the number of largest and slowest files kept
+     */
+    public BuildProfile(int topFiles)
+    {
+        this.topFiles = topFiles;
+        largest = new PriorityQueue<FileRecord>(topFiles + 1, BY_SIZE);
+        slowest = new PriorityQueue<FileRecord>(topFiles + 1, BY_TIME);
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return the start of the phase, to pass to {@link #endPhase}
+     */
+    public Timer startPhase()
+    {
+        return new Timer();
+    }
+
+    /**
+     * Ends a phase. A phase run several times accumulates its times.
+     *
+     * @param name  the name of the phase
+     * @param timer the start of the phase
+     */
+    public synchronized void endPhase(String name, Timer timer)
+    {
+        long wall = System.nanoTime() - timer.wall;
+        long cpu = (timer.cpu < 0) ? -1 : cpuTime() - timer.cpu;
+        long[] phase = phases.get(name);
+        if (phase == null)
+        {
+            phase = new long[3];
+            phases.put(name, phase);
+        }
+        phase[0]++;
+        phase[1] += wall;
+        phase[2] = (cpu < 0 || phase[2] < 0) ? -1 : phase[2] + cpu;
+    }
+
+    /**
+     * Records the bytes of a pack.
+     *
+     * @param name     the name of the pack
+     * @param bytesIn  the bytes of the files read
+     * @param bytesOut the bytes of the pack written
+     * @param files    the number of files of the pack
+     */
+    public synchronized void addPack(String name, long bytesIn, long bytesOut, int files)
+    {
+        packs.put(name, new long[]{bytesIn, bytesOut, files});
+    }
+
+    /**
+     * Records a packed file.
+     *
+     * @param path  the path of the file
+     * @param size  the size of the file
+     * @param nanos the time spent packing the file
+     */
+    public synchronized void addFile(String path, long size, long nanos)
+    {
+        FileRecord record = new FileRecord(path, size, nanos);
+        keep(largest, record);
+        keep(slowest, record);
+    }
+
+    /**
+     * Returns the largest files, largest first.
+     *
+     * @return the paths of the largest files
+     */
+    public synchronized List<String> getLargestFiles()
+    {
+        List<String> result = new ArrayList<String>();
+        for (FileRecord record : sorted(largest, BY_SIZE))
+        {
+            result.add(record.path);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slowest files, slowest first.
+     *
+     * @return the paths of the slowest files
+     */
+    public synchronized List<String> getSlowestFiles()
+    {
+        List<String> result = new ArrayList<String>();
+        for (FileRecord record : sorted(slowest, BY_TIME))
+        {
+            result.add(record.path);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a human readable summary of the profile, one line per phase and per pack.
+     *
+     * @return the lines of the summary
+     */
+    public synchronized List<String> getSummary()
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, long[]> entry : phases.entrySet())
+        {
+            long[] phase = entry.getValue();
+            lines.add(String.format("Phase %s: %d ms wall, %s cpu", entry.getKey(), phase[1] / 1000000,
+                                    (phase[2] < 0) ? "n/a" : (phase[2] / 1000000 + " ms")));
+        }
+        for (Map.Entry<String, long[]> entry : packs.entrySet())
+        {
+            long[] pack = entry.getValue();
+            lines.add(String.format("Pack %s: %d files, %d bytes in, %d bytes out", entry.getKey(), pack[2],
+                                    pack[0], pack[1]));
+        }
+        for (FileRecord record : sorted(slowest, BY_TIME))
+        {
+            lines.add(String.format("Slow file %s: %d ms, %d bytes", record.path, record.nanos / 1000000,
+                                    record.size));
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the profile as a JSON object.
+     *
+     * @return the profile
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"phases\":{");
+        String separator = "";
+        for (Map.Entry<String, long[]> entry : phases.entrySet())
+        {
+            long[] phase = entry.getValue();
+            json.append(separator);
+            quote(json, entry.getKey());
+            json.append(":{\"count\":").append(phase[0]);
+            json.append(",\"wallMillis\":").append(phase[1] / 1000000);
+            json.append(",\"cpuMillis\":").append((phase[2] < 0) ? -1 : phase[2] / 1000000);
+            json.append('}');
+            separator = ",";
+        }
+        json.append("},\"packs\":{");
+        separator = "";
+        for (Map.Entry<String, long[]> entry : packs.entrySet())
+        {
+            long[] pack = entry.getValue();
+            json.append(separator);
+            quote(json, entry.getKey());
+            json.append(":{\"files\":").append(pack[2]);
+            json.append(",\"bytesIn\":").append(pack[0]);
+            json.append(",\"bytesOut\":").append(pack[1]);
+            json.append('}');
+            separator = ",";
+        }
+        json.append("},\"largestFiles\":");
+        appendFiles(json, sorted(largest, BY_SIZE));
+        json.append(",\"slowestFiles\":");
+        appendFiles(json, sorted(slowest, BY_TIME));
+        json.append('}');
+        return json.toString();
+    }
+
+    /**
+     * Writes the profile as a JSON file.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(File file) throws IOException
+    {
+        String json = toJson();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            writer.write(json);
+            writer.write('\n');
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * The start of a phase.
+     */
+    public static class Timer
+    {
+        private final long wall = System.nanoTime();
+
+        private final long cpu = cpuTime();
+    }
+
+    private static long cpuTime()
+    {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private void keep(PriorityQueue<FileRecord> top, FileRecord record)
+    {
+        top.add(record);
+        if (top.size() > topFiles)
+        {
+            // drop the smallest
+            top.poll();
+        }
+    }
+
+    private static List<FileRecord> sorted(PriorityQueue<FileRecord> top, Comparator<FileRecord> order)
+    {
+        List<FileRecord> result = new ArrayList<FileRecord>(top);
+        Collections.sort(result, Collections.reverseOrder(order));
+        return result;
+    }
+
+    private static void appendFiles(StringBuilder json, List<FileRecord> files)
+    {
+        json.append('[');
+        String separator = "";
+        for (FileRecord record : files)
+        {
+            json.append(separator).append("{\"path\":");
+            quote(json, record.path);
+            json.append(",\"bytes\":").append(record.size);
+            json.append(",\"millis\":").append(record.nanos / 1000000);
+            json.append('}');
+            separator = ",";
+        }
+        json.append(']');
+    }
+
+    private static void quote(StringBuilder json, String value)
+    {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static class FileRecord
+    {
+        private final String path;
+
+        private final long size;
+
+        private final long nanos;
+
+        FileRecord(String path, long size, long nanos)
+        {
+            this.path = path;
+            this.size = size;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final Comparator<FileRecord> BY_SIZE = new Comparator<FileRecord>()
+    {
+        public int compare(FileRecord a, FileRecord b)
+        {
+            return (a.size < b.size) ? -1 : ((a.size == b.size) ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<FileRecord> BY_TIME = new Comparator<FileRecord>()
+    {
+        public int compare(FileRecord a, FileRecord b)
+        {
+            return (a.nanos < b.nanos) ? -1 : ((a.nanos == b.nanos) ? 0 : 1);
+        }
+    };
+}
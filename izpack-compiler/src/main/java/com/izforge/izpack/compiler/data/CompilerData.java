@@ -70,6 +70,11 @@ public class CompilerData
      */
     Info externalInfo = new Info();
 
+    /**
+     * The profile of the compilation
+     */
+    private final BuildProfile profile = new BuildProfile();
+
     /**
      * The IzPack version.
      */
@@ -120,6 +125,16 @@ public class CompilerData
         this.externalInfo = externalInfo;
     }
 
+    /**
+     * Access the profile of the compilation.
+     *
+     * @return the profile of the compilation
+     */
+    public BuildProfile getProfile()
+    {
+        return profile;
+    }
+
     /**
      * Set the IzPack home directory
      *
@@ -0,0 +1,190 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.helper;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.data.PackInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the dependencies and exclude groups of packs.
+ * <p/>
+ * Packs are referred to by their index, dependencies are kept in adjacency arrays and the
+ * dependency graph is walked iteratively, so that large generated pack graphs are checked in
+ * linear time and without deep recursion. All problems are reported at once.
+ */
+public class PackGraphChecker
+{
+    private static final byte WHITE = 0;
+
+    private static final byte GREY = 1;
+
+    private static final byte BLACK = 2;
+
+    /**
+     * Checks that all dependencies exist and that there are no circular dependencies.
+     *
+     * @param packs the packs of the installation
+     * @return the problems found, empty if the dependencies are correct
+     */
+    public List<String> checkDependencies(List<PackInfo> packs)
+    {
+        List<String> problems = new ArrayList<String>();
+        int count = packs.size();
+        Map<String, Integer> indexes = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++)
+        {
+            indexes.put(packs.get(i).getPack().name, i);
+        }
+
+        // dependencies as adjacency arrays
+        int[][] dependencies = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            List<String> names = packs.get(i).getDependencies();
+            int size = (names == null) ? 0 : names.size();
+            int[] targets = new int[size];
+            int resolved = 0;
+            for (int j = 0; j < size; j++)
+            {
+                Integer target = indexes.get(names.get(j));
+                if (target == null)
+                {
+                    problems.add("A dependency doesn't exist: pack " + packs.get(i).getPack().name
+                            + " depends on " + names.get(j));
+                }
+                else
+                {
+                    targets[resolved++] = target;
+                }
+            }
+            if (resolved < size)
+            {
+                int[] copy = new int[resolved];
+                System.arraycopy(targets, 0, copy, 0, resolved);
+                targets = copy;
+            }
+            dependencies[i] = targets;
+        }
+
+        // depth first search, each edge to a pack on the current path closes a cycle
+        byte[] colours = new byte[count];
+        int[] path = new int[count];
+        int[] positions = new int[count];
+        int[] next = new int[count];
+        for (int root = 0; root < count; root++)
+        {
+            if (colours[root] != WHITE)
+            {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            positions[root] = 0;
+            next[0] = 0;
+            colours[root] = GREY;
+            while (depth >= 0)
+            {
+                int pack = path[depth];
+                if (next[depth] < dependencies[pack].length)
+                {
+                    int target = dependencies[pack][next[depth]++];
+                    if (colours[target] == WHITE)
+                    {
+                        depth++;
+                        path[depth] = target;
+                        positions[target] = depth;
+                        next[depth] = 0;
+                        colours[target] = GREY;
+                    }
+                    else if (colours[target] == GREY)
+                    {
+                        StringBuilder cycle = new StringBuilder("Circular dependency detected: ");
+                        for (int i = positions[target]; i <= depth; i++)
+                        {
+                            cycle.append(packs.get(path[i]).getPack().name).append(" -> ");
+                        }
+                        cycle.append(packs.get(target).getPack().name);
+                        problems.add(cycle.toString());
+                    }
+                }
+                else
+                {
+                    colours[pack] = BLACK;
+                    depth--;
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Checks that there is at most one preselected pack per exclude group.
+     *
+     * @param packs the packs of the installation
+     * @return the problems found, empty if the exclude groups are correct
+     */
+    public List<String> checkExcludes(List<PackInfo> packs)
+    {
+        Map<String, List<String>> preselected = new LinkedHashMap<String, List<String>>();
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+            if (pack.excludeGroup != null && pack.preselected)
+            {
+                List<String> names = preselected.get(pack.excludeGroup);
+                if (names == null)
+                {
+                    names = new ArrayList<String>(2);
+                    preselected.put(pack.excludeGroup, names);
+                }
+                names.add(pack.name);
+            }
+        }
+
+        List<String> problems = new ArrayList<String>();
+        for (Map.Entry<String, List<String>> group : preselected.entrySet())
+        {
+            List<String> names = group.getValue();
+            if (names.size() > 1)
+            {
+                StringBuilder message = new StringBuilder("Packs ");
+                for (int i = 0; i < names.size(); i++)
+                {
+                    if (i > 0)
+                    {
+                        message.append((i == names.size() - 1) ? " and " : ", ");
+                    }
+                    message.append(names.get(i));
+                }
+                message.append(" belong to the same excludeGroup ").append(group.getKey())
+                        .append((names.size() == 2) ? " and are both preselected." : " and are all preselected.")
+                        .append(" This is not allowed.");
+                problems.add(message.toString());
+            }
+        }
+        return problems;
+    }
+}
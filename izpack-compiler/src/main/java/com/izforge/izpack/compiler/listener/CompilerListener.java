@@ -61,6 +61,11 @@ public interface CompilerListener
 
     /**
      * This method will be called from each step of packaging.
+     * <p/>
+     * The <tt>&lt;pack&gt;</tt> elements of an installation file only hold their attributes
+     * when "addPacks" and "addPacksSingle" are notified: their content is read one pack at a
+     * time while the packs are added, and is passed to {@link #reviseAdditionalDataMap} for each
+     * file related element.
      *
      * @param position name of the calling method, e.g. "addVariables"
      * @param state    BEGIN or END
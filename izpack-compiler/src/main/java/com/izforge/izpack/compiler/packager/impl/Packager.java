@@ -26,8 +26,10 @@ import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.binding.IzpackProjectInstaller;
 import com.izforge.izpack.api.exception.CompilerException;
+import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.data.BuildProfile;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
@@ -52,6 +54,7 @@ import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -71,6 +74,24 @@ import java.util.zip.ZipInputStream;
  */
 public class Packager extends PackagerBase
 {
+    /**
+     * The IzPack runtime packages merged into every installer.
+     */
+    private static final String[] SKELETON_PATHS = {
+            "com/izforge/izpack/installer/",
+            "org/picocontainer/",
+            "img/",
+            "bin/",
+            "com/izforge/izpack/api/",
+            "com/izforge/izpack/event/",
+            "com/izforge/izpack/core/",
+            "com/izforge/izpack/data/",
+            "com/izforge/izpack/gui/",
+            "com/izforge/izpack/merge/",
+            "com/izforge/izpack/util/",
+            "org/apache/regexp/",
+            "com/coi/tools/",
+            "org/apache/tools/zip/"};
 
     /**
      * Executable zipped output stream. First to open, last to close.
@@ -86,6 +107,9 @@ public class Packager extends PackagerBase
      */
     private OutputStream outputStream;
     private MergeManager mergeManager;
+    private PathResolver pathResolver;
+    private MergeableResolver mergeableResolver;
+    private SkeletonCache skeletonCache;
     private ResourceFinder resourceFinder;
 
     /**
@@ -98,11 +122,15 @@ public class Packager extends PackagerBase
     {
         super(properties, compilerContainer, listener, mergeManager, pathResolver, izpackInstallModel, mergeableResolver);
         this.compilerData = compilerData;
+        this.profile = compilerData.getProfile();
         this.primaryJarStream = jarOutputStream;
         this.resourceFinder = resourceFinder;
         this.compressor = packCompressor;
         this.outputStream = outputStream;
         this.mergeManager = mergeManager;
+        this.pathResolver = pathResolver;
+        this.mergeableResolver = mergeableResolver;
+        this.skeletonCache = new SkeletonCache(pathResolver);
     }
 
     /* (non-Javadoc)
@@ -129,6 +157,10 @@ public class Packager extends PackagerBase
         // which close method will be blocked.
         primaryJarStream.closeAlways();
 
+        for (String line : profile.getSummary())
+        {
+            sendMsg(line, PackagerListener.MSG_VERBOSE);
+        }
         sendStop();
     }
 
@@ -143,20 +175,24 @@ public class Packager extends PackagerBase
     protected void writeSkeletonInstaller() throws IOException
     {
         sendMsg("Copying the skeleton installer", PackagerListener.MSG_VERBOSE);
-        mergeManager.addResourceToMerge("com/izforge/izpack/installer/");
-        mergeManager.addResourceToMerge("org/picocontainer/");
-        mergeManager.addResourceToMerge("img/");
-        mergeManager.addResourceToMerge("bin/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/api/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/event/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/core/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/data/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/gui/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/merge/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/util/");
-        mergeManager.addResourceToMerge("org/apache/regexp/");
-        mergeManager.addResourceToMerge("com/coi/tools/");
-        mergeManager.addResourceToMerge("org/apache/tools/zip/");
+        List<Mergeable> skeleton = new ArrayList<Mergeable>();
+        for (String path : SKELETON_PATHS)
+        {
+            skeleton.addAll(pathResolver.getMergeableFromPath(path));
+        }
+        File cachedSkeleton = skeletonCache.getSkeleton(skeleton);
+        if (cachedSkeleton != null)
+        {
+            sendMsg("Using cached skeleton installer " + cachedSkeleton, PackagerListener.MSG_VERBOSE);
+            mergeManager.addResourceToMerge(mergeableResolver.getMergeableFromURL(cachedSkeleton.toURI().toURL()));
+        }
+        else
+        {
+            for (Mergeable mergeable : skeleton)
+            {
+                mergeManager.addResourceToMerge(mergeable);
+            }
+        }
         mergeManager.merge(primaryJarStream);
     }
 
@@ -294,6 +330,7 @@ public class Packager extends PackagerBase
 
             // We write the actual pack files
             objOut.writeInt(packInfo.getPackFiles().size());
+            long bytesIn = 0;
 
             for (PackFile packFile : packInfo.getPackFiles())
             {
@@ -338,6 +375,7 @@ public class Packager extends PackagerBase
                     }
                     else
                     {
+                        long start = System.nanoTime();
                         FileInputStream inStream = new FileInputStream(file);
                         long bytesWritten = IoHelper.copyStream(inStream, objOut);
                         inStream.close();
@@ -345,6 +383,8 @@ public class Packager extends PackagerBase
                         {
                             throw new IOException("File size mismatch when reading " + file);
                         }
+                        profile.addFile(file.getPath(), bytesWritten, System.nanoTime() - start);
+                        bytesIn += bytesWritten;
                     }
 
                     storedFiles.put(file, new Object[]{pack.id, pos});
@@ -378,6 +418,7 @@ public class Packager extends PackagerBase
 
             // Cleanup
             objOut.flush();
+            profile.addPack(pack.name, bytesIn, dos.getByteCount(), packInfo.getPackFiles().size());
             if (!compressor.useStandardCompression())
             {
                 outputStream.close();
@@ -416,16 +457,20 @@ public class Packager extends PackagerBase
         primaryJarStream.closeEntry();
 
         // Pack200 files
+        BuildProfile.Timer timer = profile.startPhase();
         Pack200.Packer packer = createAgressivePack200Packer();
         for (Integer key : pack200Map.keySet())
         {
             File file = pack200Map.get(key);
+            long start = System.nanoTime();
             primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
             JarFile jar = new JarFile(file);
             packer.pack(jar, primaryJarStream);
             jar.close();
             primaryJarStream.closeEntry();
+            profile.addFile(file.getPath(), file.length(), System.nanoTime() - start);
         }
+        profile.endPhase("pack200", timer);
     }
 
     private Pack200.Packer createAgressivePack200Packer()
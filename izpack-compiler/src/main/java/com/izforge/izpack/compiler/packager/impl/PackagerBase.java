@@ -27,6 +27,7 @@ import com.izforge.izpack.api.data.binding.IzpackProjectInstaller;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.data.BuildProfile;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.data.CustomData;
@@ -35,9 +36,15 @@ import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.panel.PanelMerge;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.merge.resolve.PathResolver;
+import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.*;
 
@@ -63,6 +70,11 @@ public abstract class PackagerBase implements IPackager
     private IzpackProjectInstaller izpackInstallModel;
     private MergeableResolver mergeableResolver;
 
+    /**
+     * The temporary files to delete once the installer resources are written.
+     */
+    private final List<File> temporaryFiles = new ArrayList<File>();
+
 
     public PackagerBase(Properties properties, CompilerContainer compilerContainer, PackagerListener listener, MergeManager mergeManager, PathResolver pathResolver, IzpackProjectInstaller izpackInstallModel, MergeableResolver mergeableResolver)
     {
@@ -139,6 +151,11 @@ public abstract class PackagerBase implements IPackager
      * The listeners.
      */
     protected PackagerListener listener;
+
+    /**
+     * The profile of the compilation.
+     */
+    protected BuildProfile profile = new BuildProfile();
     private MergeManager mergeManager;
 
     /**
@@ -229,7 +246,52 @@ public abstract class PackagerBase implements IPackager
         // names
         langpackNameList.add(iso3);
         addResource("flag." + iso3, flagURL);
-        installerResourceURLMap.put("langpacks/" + iso3 + ".xml", xmlURL);
+        URL compiled = compileLangPack(iso3, xmlURL);
+        if (compiled != null)
+        {
+            installerResourceURLMap.put("langpacks/" + iso3 + CompiledLangpack.EXTENSION, compiled);
+        }
+        else
+        {
+            installerResourceURLMap.put("langpacks/" + iso3 + ".xml", xmlURL);
+        }
+    }
+
+    /**
+     * Compiles a langpack into a {@link CompiledLangpack}, so that the installer doesn't have to
+     * parse it. The temporary file is deleted once the installer resources are written.
+     *
+     * @param iso3   the langpack locale
+     * @param xmlURL the XML langpack
+     * @return the compiled langpack, or <tt>null</tt> if it can't be compiled
+     */
+    private URL compileLangPack(String iso3, URL xmlURL)
+    {
+        InputStream in = null;
+        OutputStream out = null;
+        try
+        {
+            in = xmlURL.openStream();
+            LocaleDatabase langpack = new LocaleDatabase(in);
+            File compiled = File.createTempFile("izpack-langpack-" + iso3, CompiledLangpack.EXTENSION);
+            temporaryFiles.add(compiled);
+            out = new BufferedOutputStream(new FileOutputStream(compiled));
+            CompiledLangpack.write(langpack, out);
+            out.close();
+            out = null;
+            return compiled.toURI().toURL();
+        }
+        catch (Exception e)
+        {
+            sendMsg("Failed to compile langpack " + iso3 + ", adding it as XML: " + e.getMessage(),
+                    PackagerListener.MSG_WARN);
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+        }
     }
 
     /* (non-Javadoc)
@@ -347,9 +409,12 @@ public abstract class PackagerBase implements IPackager
         // write the primary jar. MUST be first so manifest is not overwritten
         // by
         // an included jar
+        BuildProfile.Timer timer = profile.startPhase();
         writeManifest();
         writeSkeletonInstaller();
+        profile.endPhase("writeSkeletonInstaller", timer);
 
+        timer = profile.startPhase();
         writeInstallerObject("izpackInstallModel", izpackInstallModel);
         writeInstallerObject("info", info);
         writeInstallerObject("vars", properties);
@@ -361,13 +426,42 @@ public abstract class PackagerBase implements IPackager
         writeInstallerObject("dynvariables", dynamicvariables);
         writeInstallerObject("dynconditions", dynamicInstallerRequirements);
         writeInstallerObject("installerrequirements", installerrequirements);
+        profile.endPhase("writeInstallerObjects", timer);
 
-        writeInstallerResources();
+        timer = profile.startPhase();
+        try
+        {
+            writeInstallerResources();
+        }
+        finally
+        {
+            deleteTemporaryFiles();
+        }
+        profile.endPhase("writeInstallerResources", timer);
+        timer = profile.startPhase();
         writeIncludedJars();
+        profile.endPhase("writeIncludedJars", timer);
 
         // Pack File Data may be written to separate jars
+        timer = profile.startPhase();
         writePacks();
+        profile.endPhase("writePacks", timer);
+
+    }
 
+    /**
+     * Deletes the temporary files created for the installer resources.
+     */
+    private void deleteTemporaryFiles()
+    {
+        for (File file : temporaryFiles)
+        {
+            if (!file.delete() && file.exists())
+            {
+                sendMsg("Failed to delete temporary file " + file, PackagerListener.MSG_VERBOSE);
+            }
+        }
+        temporaryFiles.clear();
     }
 
     protected abstract void writeInstallerObject(String entryName, Object object) throws IOException;
@@ -0,0 +1,234 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.exception.MergeException;
+import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.MergeManagerImpl;
+import com.izforge.izpack.merge.jar.JarMerge;
+import com.izforge.izpack.merge.resolve.PathResolver;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Caches the merged skeleton installer between compilations.
+ * <p/>
+ * The skeleton only depends on the merged IzPack jars, so it is merged once into a jar of its own,
+ * keyed by the mergeables and the path, size and modification time of their jars, like the
+ * listings of {@link com.izforge.izpack.merge.jar.JarEntryIndex}. Later compilations merge this
+ * single jar in one pass instead of walking all the IzPack jars for each package again. Its
+ * entries are stored without compression, so reading them back costs no inflation. Mergeables
+ * which are not jars, e.g. class directories of a development build, are never cached.
+ * <p/>
+ * The cache directory defaults to <tt>.izpack/skeleton</tt> in the home directory of the user and
+ * can be set with the system property {@value #CACHE_DIR_PROPERTY}. Setting it to an empty value
+ * disables the cache. Only the latest skeleton is kept, the others are deleted when it is written.
+ */
+public class SkeletonCache
+{
+    /**
+     * System property to configure the cache directory.
+     */
+    public static final String CACHE_DIR_PROPERTY = "izpack.skeleton.dir";
+
+    private static final String PREFIX = "skeleton-";
+
+    private static final String SUFFIX = ".jar";
+
+    private final PathResolver pathResolver;
+
+    public SkeletonCache(PathResolver pathResolver)
+    {
+        this.pathResolver = pathResolver;
+    }
+
+    /**
+     * Returns the jar holding the merged content of the given mergeables, creating it if needed.
+     *
+     * @param mergeables the skeleton mergeables
+     * @return the skeleton jar, or <tt>null</tt> if the mergeables can't be cached
+     */
+    public File getSkeleton(List<Mergeable> mergeables)
+    {
+        File dir = getCacheDir();
+        if (dir == null || mergeables.isEmpty())
+        {
+            return null;
+        }
+        String key = getKey(mergeables);
+        if (key == null)
+        {
+            return null;
+        }
+        File skeleton = new File(dir, PREFIX + key + SUFFIX);
+        if (skeleton.isFile())
+        {
+            return skeleton;
+        }
+        if (writeSkeleton(mergeables, skeleton))
+        {
+            deleteOthers(dir, skeleton);
+            return skeleton;
+        }
+        return null;
+    }
+
+    private boolean writeSkeleton(List<Mergeable> mergeables, File skeleton)
+    {
+        File tmpFile = new File(skeleton.getPath() + ".tmp" + System.nanoTime());
+        ZipOutputStream outputStream = null;
+        try
+        {
+            outputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            outputStream.setLevel(Deflater.NO_COMPRESSION);
+            MergeManagerImpl mergeManager = new MergeManagerImpl(pathResolver);
+            for (Mergeable mergeable : mergeables)
+            {
+                mergeManager.addResourceToMerge(mergeable);
+            }
+            mergeManager.merge(outputStream);
+            outputStream.close();
+            outputStream = null;
+            if (tmpFile.renameTo(skeleton) || skeleton.isFile())
+            {
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+            // merge directly into the installer instead
+        }
+        catch (MergeException e)
+        {
+            // merge directly into the installer instead
+        }
+        finally
+        {
+            if (outputStream != null)
+            {
+                try
+                {
+                    outputStream.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+            tmpFile.delete();
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the skeletons other than the given one, as well as abandoned temporary files.
+     */
+    private void deleteOthers(File dir, File skeleton)
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.getName().startsWith(PREFIX) && !file.equals(skeleton))
+                {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the cache key of the mergeables, without reading their jars.
+     *
+     * @return the key, or <tt>null</tt> if not all mergeables are jars
+     */
+    private String getKey(List<Mergeable> mergeables)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+        StringBuilder description = new StringBuilder();
+        Set<String> jarPaths = new HashSet<String>();
+        for (Mergeable mergeable : mergeables)
+        {
+            if (!(mergeable instanceof JarMerge))
+            {
+                return null;
+            }
+            description.append(mergeable).append('\n');
+            String jarPath = ((JarMerge) mergeable).getJarPath();
+            if (jarPaths.add(jarPath))
+            {
+                File jar = new File(jarPath);
+                description.append(jar.length()).append(' ').append(jar.lastModified()).append('\n');
+            }
+        }
+        try
+        {
+            digest.update(description.toString().getBytes("UTF-8"));
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private static File getCacheDir()
+    {
+        String dirName = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dirName == null)
+        {
+            dirName = new File(System.getProperty("user.home"), ".izpack" + File.separator + "skeleton").getPath();
+        }
+        if (dirName.length() == 0)
+        {
+            return null;
+        }
+        File dir = new File(dirName);
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            return null;
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.resource;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.XMLException;
+import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.exception.CompilerException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedList;
+
+/**
+ * Parses installation descriptors without keeping the content of the packs in memory.
+ * <p/>
+ * {@link #parse(URL)} returns the descriptor tree with the <tt>&lt;pack&gt;</tt> elements of
+ * <tt>&lt;packs&gt;</tt> reduced to their attributes. The content of the packs is read later
+ * with {@link #parsePacks(URL, PackHandler)}, which builds the tree of one pack at a time and
+ * drops it once it is handled.
+ * <p/>
+ * The trees are built like {@link com.izforge.izpack.api.adaptator.impl.XMLParser} builds them,
+ * including XInclude processing, the unwrapping of <tt>xfragment</tt> elements and line numbers.
+ */
+public class DescriptorParser
+{
+    /**
+     * The key of the user data holding the descriptor URL on a <tt>&lt;packs&gt;</tt> element
+     * whose packs still have to be parsed.
+     */
+    private static final String DEFERRED_KEY = "izpack.deferred";
+
+    /**
+     * The key of the user data holding the line number, as used by {@link XMLElementImpl}.
+     */
+    private static final String LINE_NUMBER_KEY = "ln";
+
+    private static final String FRAGMENT = "xfragment";
+
+    /**
+     * Handles the packs of a descriptor.
+     */
+    public interface PackHandler
+    {
+        /**
+         * Handles a pack.
+         *
+         * @param pack the <tt>&lt;pack&gt;</tt> element with all its content
+         * @throws CompilerException if the pack is invalid
+         */
+        void handlePack(IXMLElement pack) throws CompilerException;
+    }
+
+    /**
+     * Parses a descriptor, leaving out the content of the packs.
+     *
+     * @param url the descriptor
+     * @return the root element of the descriptor
+     * @throws XMLException if the descriptor can't be parsed
+     */
+    public IXMLElement parse(URL url)
+    {
+        TreeBuilder builder = new TreeBuilder(url, null);
+        parse(url, builder);
+        return new XMLElementImpl(builder.root);
+    }
+
+    /**
+     * Parses the packs of a descriptor, one at a time.
+     *
+     * @param url     the descriptor
+     * @param handler the handler of the packs
+     * @throws CompilerException if a pack is invalid
+     * @throws XMLException      if the descriptor can't be parsed
+     */
+    public void parsePacks(URL url, PackHandler handler) throws CompilerException
+    {
+        try
+        {
+            parse(url, new TreeBuilder(url, handler));
+        }
+        catch (XMLException e)
+        {
+            if (e.getCause() instanceof PackException)
+            {
+                throw ((PackException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the descriptor whose packs are left out of the given <tt>&lt;packs&gt;</tt>
+     * element.
+     *
+     * @param packs the <tt>&lt;packs&gt;</tt> element
+     * @return the URL of the descriptor, or <tt>null</tt> if the packs are complete
+     */
+    public static URL getDeferredPacks(IXMLElement packs)
+    {
+        return (URL) packs.getElement().getUserData(DEFERRED_KEY);
+    }
+
+    private void parse(URL url, TreeBuilder builder)
+    {
+        try
+        {
+            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setNamespaceAware(true);
+            saxParserFactory.setXIncludeAware(true);
+            XMLReader xmlReader = saxParserFactory.newSAXParser().getXMLReader();
+            xmlReader.setContentHandler(builder);
+            xmlReader.parse(new InputSource(url.toExternalForm()));
+        }
+        catch (PackException e)
+        {
+            throw new XMLException(e);
+        }
+        catch (SAXException e)
+        {
+            String position = "";
+            if (builder.locator != null)
+            {
+                position = " at line " + builder.locator.getLineNumber() + ", column "
+                        + builder.locator.getColumnNumber();
+            }
+            throw new XMLException("Error in " + url + position + " : " + e.getMessage(), e);
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new XMLException(e);
+        }
+        catch (IOException e)
+        {
+            throw new XMLException(e);
+        }
+    }
+
+    private static Document newDocument()
+    {
+        try
+        {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new XMLException(e);
+        }
+    }
+
+    /**
+     * Wraps the exception of a {@link PackHandler} while parsing.
+     */
+    private static class PackException extends SAXException
+    {
+        PackException(CompilerException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public CompilerException getCause()
+        {
+            return (CompilerException) super.getCause();
+        }
+    }
+
+    /**
+     * An element being parsed.
+     */
+    private static class Frame
+    {
+        /**
+         * The effective element name, which is the name of the parent for unwrapped fragments.
+         */
+        final String name;
+
+        /**
+         * The depth of the effective element, the root element having depth 0.
+         */
+        final int depth;
+
+        /**
+         * The element to add content to, or <tt>null</tt> if the content is skipped.
+         */
+        final Element element;
+
+        /**
+         * Whether the element is a pack whose tree has to be handled at its end.
+         */
+        final boolean pack;
+
+        Frame(String name, int depth, Element element, boolean pack)
+        {
+            this.name = name;
+            this.depth = depth;
+            this.element = element;
+            this.pack = pack;
+        }
+    }
+
+    /**
+     * Builds the descriptor tree without the content of the packs if there is no pack handler,
+     * and the trees of the packs only otherwise.
+     */
+    private static class TreeBuilder extends DefaultHandler
+    {
+        private final URL url;
+
+        private final PackHandler handler;
+
+        private final LinkedList<Frame> frames = new LinkedList<Frame>();
+
+        private Document document;
+
+        private Element root;
+
+        private Locator locator;
+
+        TreeBuilder(URL url, PackHandler handler)
+        {
+            this.url = url;
+            this.handler = handler;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator)
+        {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startDocument()
+        {
+            if (handler == null)
+            {
+                document = newDocument();
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            Frame parent = frames.peek();
+            if (parent != null && FRAGMENT.equals(qName))
+            {
+                frames.push(new Frame(parent.name, parent.depth, parent.element, false));
+                return;
+            }
+
+            int depth = (parent == null) ? 0 : parent.depth + 1;
+            boolean pack = depth == 2 && "pack".equals(qName) && "packs".equals(parent.name);
+            Element element = null;
+            if (handler == null)
+            {
+                if (parent == null || parent.element != null)
+                {
+                    element = createElement(document, uri, qName, attributes);
+                    if (parent == null)
+                    {
+                        document.appendChild(element);
+                        root = element;
+                    }
+                    else
+                    {
+                        parent.element.appendChild(element);
+                    }
+                    if (pack)
+                    {
+                        // keep the attributes only
+                        parent.element.setUserData(DEFERRED_KEY, url, null);
+                        element = null;
+                    }
+                }
+            }
+            else if (pack)
+            {
+                element = createElement(newDocument(), uri, qName, attributes);
+            }
+            else if (parent != null && parent.element != null)
+            {
+                element = createElement(parent.element.getOwnerDocument(), uri, qName, attributes);
+                parent.element.appendChild(element);
+            }
+            frames.push(new Frame(qName, depth, element, pack && handler != null));
+        }
+
+        private Element createElement(Document document, String uri, String qName, Attributes attributes)
+        {
+            Element element = (uri == null || uri.length() == 0) ? document.createElement(qName)
+                    : document.createElementNS(uri, qName);
+            for (int i = 0; i < attributes.getLength(); i++)
+            {
+                String attributeUri = attributes.getURI(i);
+                if (attributeUri == null || attributeUri.length() == 0)
+                {
+                    element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+                }
+                else
+                {
+                    element.setAttributeNS(attributeUri, attributes.getQName(i), attributes.getValue(i));
+                }
+            }
+            if (locator != null)
+            {
+                element.setUserData(LINE_NUMBER_KEY, locator.getLineNumber(), null);
+            }
+            return element;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            Frame frame = frames.pop();
+            if (frame.pack)
+            {
+                try
+                {
+                    handler.handlePack(new XMLElementImpl(frame.element));
+                }
+                catch (CompilerException e)
+                {
+                    throw new PackException(e);
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            Frame frame = frames.peek();
+            if (frame == null || frame.element == null)
+            {
+                return;
+            }
+            Node last = frame.element.getLastChild();
+            if (last instanceof Text)
+            {
+                ((Text) last).appendData(new String(ch, start, length));
+            }
+            else
+            {
+                frame.element.appendChild(frame.element.getOwnerDocument().createTextNode(
+                        new String(ch, start, length)));
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        {
+            characters(ch, start, length);
+        }
+    }
+}
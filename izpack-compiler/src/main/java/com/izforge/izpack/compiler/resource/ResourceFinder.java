@@ -10,7 +10,6 @@ import com.izforge.izpack.compiler.helper.AssertionHelper;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -25,6 +24,11 @@ public class ResourceFinder
     private PropertyManager propertyManager;
     private XmlCompilerHelper xmlCompilerHelper;
 
+    /**
+     * The installation XML tree, parsed on the first request.
+     */
+    private IXMLElement xmlTree;
+
     public ResourceFinder(AssertionHelper assertionHelper, CompilerData compilerData, PropertyManager propertyManager, XmlCompilerHelper xmlCompilerHelper)
     {
         this.assertionHelper = assertionHelper;
@@ -129,7 +133,11 @@ public class ResourceFinder
     }
 
     /**
-     * Returns the IXMLElement representing the installation XML file.
+     * Returns the IXMLElement representing the installation XML file. The packs of an installation
+     * file only hold their attributes, their content is read by {@link DescriptorParser}.
+     * <p/>
+     * The file is parsed once; later calls return the same tree, including the changes made to it
+     * while compiling.
      *
      * @return The XML tree.
      * @throws com.izforge.izpack.api.exception.CompilerException
@@ -138,20 +146,23 @@ public class ResourceFinder
      */
     public IXMLElement getXMLTree() throws IOException
     {
-        IXMLParser parser = new XMLParser();
+        if (xmlTree != null)
+        {
+            return xmlTree;
+        }
         IXMLElement data;
         if (compilerData.getInstallFile() != null)
         {
             File file = new File(compilerData.getInstallFile()).getAbsoluteFile();
             assertionHelper.assertIsNormalReadableFile(file, "Configuration file");
-            FileInputStream inputStream = new FileInputStream(compilerData.getInstallFile());
-            data = parser.parse(inputStream, file.getAbsolutePath());
-            inputStream.close();
+            // the content of the packs is read when they are added
+            data = new DescriptorParser().parse(file.toURI().toURL());
             // add izpack built in property
             propertyManager.setProperty("izpack.file", file.toString());
         }
         else if (compilerData.getInstallText() != null)
         {
+            IXMLParser parser = new XMLParser();
             data = parser.parse(compilerData.getInstallText());
         }
         else
@@ -169,6 +180,7 @@ public class ResourceFinder
         }
 
         // We finally return the tree
+        xmlTree = data;
         return data;
     }
 }
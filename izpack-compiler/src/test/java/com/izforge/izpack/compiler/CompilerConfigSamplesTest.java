@@ -1,5 +1,6 @@
 package com.izforge.izpack.compiler;
 
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.compiler.container.TestCompilerContainer;
 import com.izforge.izpack.matcher.ZipMatcher;
 import com.izforge.izpack.test.Container;
@@ -9,12 +10,16 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.collection.IsCollectionContaining;
+import org.hamcrest.core.Is;
 import org.hamcrest.core.IsNot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -76,5 +81,26 @@ public class CompilerConfigSamplesTest
 
     }
 
-
-}
\ No newline at end of file
+    @Test
+    @InstallFile("samples/refpacks/refpacks.xml")
+    public void installerShouldContainRefpacksInDeclarationOrder() throws Exception
+    {
+        compilerConfig.executeCompiler();
+        ZipFile zipFile = new ZipFile(out);
+        ObjectInputStream content = new ObjectInputStream(zipFile.getInputStream(zipFile.getEntry("resources/packs.info")));
+        try
+        {
+            List<String> names = new ArrayList<String>();
+            int count = content.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                names.add(((Pack) content.readObject()).name);
+            }
+            assertThat(names, Is.is(Arrays.asList("Base", "Ref1", "Ref2a", "Ref2b", "Set1")));
+        }
+        finally
+        {
+            content.close();
+        }
+    }
+}
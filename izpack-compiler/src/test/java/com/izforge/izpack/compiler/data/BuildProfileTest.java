@@ -0,0 +1,60 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.data;
+
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BuildProfileTest
+{
+    @Test
+    public void testTopFiles()
+    {
+        BuildProfile profile = new BuildProfile(2);
+        profile.addFile("a", 10, 300);
+        profile.addFile("b", 30, 100);
+        profile.addFile("c", 20, 200);
+        profile.addFile("d", 5, 400);
+
+        assertThat(profile.getLargestFiles(), Is.is(Arrays.asList("b", "c")));
+        assertThat(profile.getSlowestFiles(), Is.is(Arrays.asList("d", "a")));
+    }
+
+    @Test
+    public void testJson()
+    {
+        BuildProfile profile = new BuildProfile(1);
+        profile.endPhase("addPacks", profile.startPhase());
+        profile.endPhase("addPacks", profile.startPhase());
+        profile.addPack("Core \"base\"", 100, 40, 3);
+        profile.addFile("lib/a.jar", 100, 2000000);
+
+        String json = profile.toJson();
+        assertThat(json.startsWith("{\"phases\":{\"addPacks\":{\"count\":2,"), Is.is(true));
+        assertThat(json.contains("\"packs\":{\"Core \\\"base\\\"\":{\"files\":3,\"bytesIn\":100,\"bytesOut\":40}}"),
+                   Is.is(true));
+        assertThat(json.endsWith("\"slowestFiles\":[{\"path\":\"lib/a.jar\",\"bytes\":100,\"millis\":2}]}"),
+                   Is.is(true));
+    }
+}
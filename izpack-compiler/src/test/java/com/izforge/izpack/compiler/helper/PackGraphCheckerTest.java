@@ -0,0 +1,115 @@
+package com.izforge.izpack.compiler.helper;
+
+import com.izforge.izpack.data.PackInfo;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the pack graph checker
+ */
+public class PackGraphCheckerTest
+{
+    private final PackGraphChecker checker = new PackGraphChecker();
+
+    @Test
+    public void shouldAcceptValidDependencies()
+    {
+        List<PackInfo> packs = Arrays.asList(pack("a", "b", "c"), pack("b", "c"), pack("c"));
+        assertThat(checker.checkDependencies(packs), Is.is(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void shouldReportAllMissingDependencies()
+    {
+        List<PackInfo> packs = Arrays.asList(pack("a", "x"), pack("b", "a", "y"));
+        assertThat(checker.checkDependencies(packs), Is.is(Arrays.asList(
+                "A dependency doesn't exist: pack a depends on x",
+                "A dependency doesn't exist: pack b depends on y")));
+    }
+
+    @Test
+    public void shouldReportAllCycles()
+    {
+        List<PackInfo> packs = Arrays.asList(pack("a", "b"), pack("b", "a"), pack("c", "c"), pack("d", "a"));
+        assertThat(checker.checkDependencies(packs), Is.is(Arrays.asList(
+                "Circular dependency detected: a -> b -> a",
+                "Circular dependency detected: c -> c")));
+    }
+
+    @Test
+    public void shouldReportAllPreselectedPacksOfExcludeGroup()
+    {
+        List<PackInfo> packs = Arrays.asList(excluded("a", "g1", true), excluded("b", "g1", true),
+                excluded("c", "g1", true), excluded("d", "g2", true), excluded("e", "g2", false),
+                excluded("f", "g3", true), excluded("g", "g3", true));
+        assertThat(checker.checkExcludes(packs), Is.is(Arrays.asList(
+                "Packs a, b and c belong to the same excludeGroup g1 and are all preselected. This is not allowed.",
+                "Packs f and g belong to the same excludeGroup g3 and are both preselected. This is not allowed.")));
+    }
+
+    /**
+     * Checks a synthetic graph of generated packs, including a dependency chain as deep as the
+     * number of packs, which a recursive walk couldn't follow without overflowing the stack.
+     * Cycles and exclude group conflicts are spread over the chain, and all of them must be
+     * reported.
+     */
+    @Test
+    public void shouldCheckDeepPackGraphs()
+    {
+        int count = 20000;
+        List<PackInfo> packs = new ArrayList<PackInfo>(count);
+        Set<String> cycles = new HashSet<String>();
+        List<String> conflicts = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            // both packs of every thousandth exclude group are preselected
+            PackInfo pack = excluded("pack" + i, "group" + (i / 2), i % 2 == 0 || (i / 2) % 1000 == 0);
+            for (int j = 1; j <= 3 && i + j < count; j++)
+            {
+                pack.addDependency("pack" + (i + j));
+            }
+            if (i % 1000 == 1)
+            {
+                pack.addDependency("pack" + (i - 1));
+                cycles.add("Circular dependency detected: pack" + (i - 1) + " -> pack" + i + " -> pack" + (i - 1));
+            }
+            if (i % 2000 == 1)
+            {
+                conflicts.add("Packs pack" + (i - 1) + " and pack" + i + " belong to the same excludeGroup group"
+                        + (i / 2) + " and are both preselected. This is not allowed.");
+            }
+            packs.add(pack);
+        }
+
+        List<String> problems = checker.checkDependencies(packs);
+        assertThat(problems.size(), Is.is(cycles.size()));
+        assertThat(new HashSet<String>(problems), Is.is(cycles));
+        assertThat(checker.checkExcludes(packs), Is.is(conflicts));
+    }
+
+    private static PackInfo pack(String name, String... dependencies)
+    {
+        PackInfo pack = new PackInfo(name, null, "", false, false, null, true);
+        for (String dependency : dependencies)
+        {
+            pack.addDependency(dependency);
+        }
+        return pack;
+    }
+
+    private static PackInfo excluded(String name, String excludeGroup, boolean preselected)
+    {
+        PackInfo pack = new PackInfo(name, null, "", false, false, excludeGroup, true);
+        pack.setPreselected(preselected);
+        return pack;
+    }
+}
@@ -0,0 +1,112 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.jar.JarMerge;
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the skeleton cache
+ */
+public class SkeletonCacheTest
+{
+    private File cacheDir;
+
+    private String previousCacheDir;
+
+    private File jar;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        jar = File.createTempFile("junit", ".jar");
+        FileUtils.copyFile(new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI()), jar);
+        cacheDir = File.createTempFile("izpack-skeleton", "");
+        cacheDir.delete();
+        previousCacheDir = System.getProperty(SkeletonCache.CACHE_DIR_PROPERTY);
+        System.setProperty(SkeletonCache.CACHE_DIR_PROPERTY, cacheDir.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (previousCacheDir == null)
+        {
+            System.clearProperty(SkeletonCache.CACHE_DIR_PROPERTY);
+        }
+        else
+        {
+            System.setProperty(SkeletonCache.CACHE_DIR_PROPERTY, previousCacheDir);
+        }
+        File[] files = cacheDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+        jar.delete();
+    }
+
+    @Test
+    public void shouldCacheMergedJar() throws Exception
+    {
+        List<Mergeable> mergeables = getMergeables();
+
+        SkeletonCache skeletonCache = new SkeletonCache(null);
+        File skeleton = skeletonCache.getSkeleton(mergeables);
+        ZipFile zipFile = new ZipFile(skeleton);
+        assertThat(zipFile.getEntry("org/junit/runner/JUnitCore.class") != null, Is.is(true));
+        assertThat(zipFile.getEntry("org/junit/Assert.class") == null, Is.is(true));
+        zipFile.close();
+
+        long lastModified = skeleton.lastModified();
+        assertThat(skeletonCache.getSkeleton(getMergeables()), Is.is(skeleton));
+        assertThat(skeleton.lastModified(), Is.is(lastModified));
+        assertThat(cacheDir.list().length, Is.is(1));
+    }
+
+    @Test
+    public void shouldReplaceSkeletonWhenJarChanges() throws Exception
+    {
+        SkeletonCache skeletonCache = new SkeletonCache(null);
+        File skeleton = skeletonCache.getSkeleton(getMergeables());
+
+        jar.setLastModified(jar.lastModified() - 60000);
+        File replaced = skeletonCache.getSkeleton(getMergeables());
+        assertThat(replaced.equals(skeleton), Is.is(false));
+        assertThat(replaced.isFile(), Is.is(true));
+        assertThat(skeleton.exists(), Is.is(false));
+        assertThat(cacheDir.list().length, Is.is(1));
+    }
+
+    @Test
+    public void shouldNotCacheEmptySkeleton() throws Exception
+    {
+        SkeletonCache skeletonCache = new SkeletonCache(null);
+        assertThat(skeletonCache.getSkeleton(Collections.<Mergeable>emptyList()), IsNull.nullValue());
+    }
+
+    private List<Mergeable> getMergeables()
+    {
+        List<Mergeable> mergeables = new ArrayList<Mergeable>();
+        mergeables.add(new JarMerge(jar.getPath(), "org/junit/runner/", "org/junit/runner/", new HashMap<OutputStream, List<String>>()));
+        return mergeables;
+    }
+}
@@ -0,0 +1,69 @@
+package com.izforge.izpack.compiler.resource;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the descriptor parser
+ */
+public class DescriptorParserTest
+{
+    private final URL descriptor = ClassLoader.getSystemResource("bindingTest.xml");
+
+    @Test
+    public void shouldLeaveOutContentOfPacks() throws Exception
+    {
+        IXMLElement data = new DescriptorParser().parse(descriptor);
+        IXMLElement full = new XMLParser().parse(descriptor);
+
+        assertThat(data.getFirstChildNamed("panels").getChildrenCount(),
+                Is.is(full.getFirstChildNamed("panels").getChildrenCount()));
+        IXMLElement packs = data.getFirstChildNamed("packs");
+        assertThat(DescriptorParser.getDeferredPacks(packs), Is.is(descriptor));
+        List<IXMLElement> fullPacks = full.getFirstChildNamed("packs").getChildrenNamed("pack");
+        List<IXMLElement> shells = packs.getChildrenNamed("pack");
+        assertThat(shells.size(), Is.is(fullPacks.size()));
+        for (int i = 0; i < shells.size(); i++)
+        {
+            assertThat(shells.get(i).getAttributes(), Is.is(fullPacks.get(i).getAttributes()));
+            assertThat(shells.get(i).hasChildren(), Is.is(false));
+        }
+    }
+
+    @Test
+    public void shouldParsePacksOneByOne() throws Exception
+    {
+        final List<IXMLElement> packs = new ArrayList<IXMLElement>();
+        new DescriptorParser().parsePacks(descriptor, new DescriptorParser.PackHandler()
+        {
+            public void handlePack(IXMLElement pack)
+            {
+                assertThat(pack.getElement().getParentNode(), IsNull.nullValue());
+                packs.add(pack);
+            }
+        });
+
+        IXMLElement full = new XMLParser().parse(descriptor);
+        List<IXMLElement> fullPacks = full.getFirstChildNamed("packs").getChildrenNamed("pack");
+        assertThat(packs.size(), Is.is(fullPacks.size()));
+        for (int i = 0; i < packs.size(); i++)
+        {
+            IXMLElement pack = packs.get(i);
+            IXMLElement fullPack = fullPacks.get(i);
+            assertThat(pack.getAttributes(), Is.is(fullPack.getAttributes()));
+            assertThat(pack.getLineNr(), Is.is(fullPack.getLineNr()));
+            assertThat(pack.getChildrenCount(), Is.is(fullPack.getChildrenCount()));
+            assertThat(pack.getFirstChildNamed("description").getContent(),
+                    Is.is(fullPack.getFirstChildNamed("description").getContent()));
+        }
+    }
+}
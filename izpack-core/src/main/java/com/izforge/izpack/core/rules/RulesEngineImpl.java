@@ -40,6 +40,7 @@ import com.izforge.izpack.core.rules.process.JavaCondition;
 import com.izforge.izpack.core.rules.process.PackselectionCondition;
 import com.izforge.izpack.merge.resolve.ClassPathCrawler;
 import com.izforge.izpack.util.Debug;
+import com.izforge.izpack.util.LogEvent;
 
 import java.io.OutputStream;
 import java.util.*;
@@ -471,18 +472,19 @@ public class RulesEngineImpl implements RulesEngine
     public boolean isConditionTrue(String id, Properties variables)
     {
         Condition cond = getCondition(id);
-        cond.setInstalldata(installdata);
         if (cond == null)
         {
-            Debug.trace("Condition (" + id + ") not found.");
+            Debug.event(LogEvent.Type.CONDITION, id, "not found");
             return true;
         }
         else
         {
-            Debug.trace("Checking condition");
+            cond.setInstalldata(installdata);
             try
             {
-                return cond.isTrue();
+                boolean result = cond.isTrue();
+                Debug.event(LogEvent.Type.CONDITION, id, result);
+                return result;
             }
             catch (NullPointerException npe)
             {
@@ -512,10 +514,13 @@ public class RulesEngineImpl implements RulesEngine
         if (cond != null)
         {
             cond.setInstalldata(installdata);
-            return this.isConditionTrue(cond);
+            boolean result = this.isConditionTrue(cond);
+            Debug.event(LogEvent.Type.CONDITION, id, result);
+            return result;
         }
         else
         {
+            Debug.event(LogEvent.Type.CONDITION, id, "not found");
             return false;
         }
     }
@@ -539,7 +544,10 @@ public class RulesEngineImpl implements RulesEngine
      */
     public boolean canShowPanel(String panelid, Properties variables)
     {
-        Debug.trace("can show panel with id " + panelid + " ?");
+        if (Debug.tracing())
+        {
+            Debug.trace("can show panel with id " + panelid + " ?");
+        }
         if (!this.panelconditions.containsKey(panelid))
         {
             Debug.trace("no condition, show panel");
@@ -568,7 +576,10 @@ public class RulesEngineImpl implements RulesEngine
         {
             return true;
         }
-        Debug.trace("can install pack with id " + packid + "?");
+        if (Debug.tracing())
+        {
+            Debug.trace("can install pack with id " + packid + "?");
+        }
         if (!this.packconditions.containsKey(packid))
         {
             Debug.trace("no condition, can install pack");
@@ -592,7 +603,10 @@ public class RulesEngineImpl implements RulesEngine
      */
     public boolean canInstallPackOptional(String packid, Properties variables)
     {
-        Debug.trace("can install pack optional with id " + packid + "?");
+        if (Debug.tracing())
+        {
+            Debug.trace("can install pack optional with id " + packid + "?");
+        }
         if (!this.optionalpackconditions.containsKey(packid))
         {
             Debug.trace("not in optionalpackconditions.");
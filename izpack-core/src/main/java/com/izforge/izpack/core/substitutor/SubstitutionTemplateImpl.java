@@ -0,0 +1,154 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A string compiled by {@link VariableSubstitutorBase#compile(String, SubstitutionType)}.
+ * <p/>
+ * The template consists of <tt>n</tt> variable references and <tt>n + 1</tt> literal parts
+ * surrounding them. If a variable is undefined, the reference is kept as written.
+ */
+class SubstitutionTemplateImpl implements SubstitutionTemplate
+{
+    private static final Logger LOGGER = Logger.getLogger(SubstitutionTemplateImpl.class.getName());
+
+    private final VariableSubstitutorBase substitutor;
+
+    private final SubstitutionType type;
+
+    private final char variableStart;
+
+    private final String[] literals;
+
+    private final String[] names;
+
+    private final boolean[] braces;
+
+    /**
+     * The original string, if it has to be substituted as a whole each time.
+     */
+    private final String source;
+
+    /**
+     * Creates a template without variable references.
+     *
+     * @param str the constant string
+     */
+    SubstitutionTemplateImpl(String str)
+    {
+        this(null, null, '\0', new String[]{str}, new String[0], new boolean[0]);
+    }
+
+    /**
+     * Creates a template which delegates to the substitutor each time.
+     *
+     * @param substitutor the substitutor
+     * @param str         the string to substitute
+     * @param type        the escaping type
+     */
+    SubstitutionTemplateImpl(VariableSubstitutorBase substitutor, String str, SubstitutionType type)
+    {
+        this.substitutor = substitutor;
+        this.type = type;
+        this.variableStart = '\0';
+        this.literals = null;
+        this.names = null;
+        this.braces = null;
+        this.source = str;
+    }
+
+    /**
+     * Creates a compiled template.
+     *
+     * @param substitutor   the substitutor resolving the variables
+     * @param type          the escaping type
+     * @param variableStart the character starting a variable reference
+     * @param literals      the literal parts, one more than there are variables
+     * @param names         the referenced variable names
+     * @param braces        whether the corresponding variable reference is enclosed in braces
+     */
+    SubstitutionTemplateImpl(VariableSubstitutorBase substitutor, SubstitutionType type, char variableStart,
+                             String[] literals, String[] names, boolean[] braces)
+    {
+        this.substitutor = substitutor;
+        this.type = type;
+        this.variableStart = variableStart;
+        this.literals = literals;
+        this.names = names;
+        this.braces = braces;
+        this.source = null;
+    }
+
+    public String substitute()
+    {
+        if (source != null)
+        {
+            return substitutor.substitute(source, type);
+        }
+        if (names.length == 0)
+        {
+            return literals[0];
+        }
+
+        StringBuilder result = new StringBuilder();
+        try
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                result.append(literals[i]);
+                String value = substitutor.resolveVariable(names[i], braces[i]);
+                if (value != null)
+                {
+                    result.append(substitutor.escapeSpecialChars(value, type));
+                }
+                else
+                {
+                    result.append(variableStart);
+                    if (braces[i])
+                    {
+                        result.append('{').append(names[i]).append('}');
+                    }
+                    else
+                    {
+                        result.append(names[i]);
+                    }
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.SEVERE, "Error when substituting variables", e);
+            throw new Error(e);
+        }
+        result.append(literals[names.length]);
+        return result.toString();
+    }
+
+    public boolean hasVariables()
+    {
+        return source != null || names.length > 0;
+    }
+}
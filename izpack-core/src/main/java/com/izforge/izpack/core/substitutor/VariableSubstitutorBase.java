@@ -22,12 +22,16 @@
 package com.izforge.izpack.core.substitutor;
 
 import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.IoHelper;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,11 +55,34 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
 {
     private static final Logger LOGGER = Logger.getLogger(VariableSubstitutorBase.class.getName());
 
+    /**
+     * The size of the chunks read from a reader.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * Whether braces are required for substitution.
      */
     protected boolean bracesRequired = false;
 
+    /**
+     * The maximum number of cached templates.
+     */
+    private static final int TEMPLATE_CACHE_SIZE = 256;
+
+    /**
+     * The templates of recently compiled plain strings, least recently used first.
+     */
+    private final Map<String, SubstitutionTemplate> templates =
+            new LinkedHashMap<String, SubstitutionTemplate>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SubstitutionTemplate> eldest)
+                {
+                    return size() > TEMPLATE_CACHE_SIZE;
+                }
+            };
+
     /**
      * A constant for file type. Plain file.
      */
@@ -131,6 +158,11 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
     public void setBracesRequired(boolean braces)
     {
         bracesRequired = braces;
+        synchronized (templates)
+        {
+            // the templates were compiled with the previous brace requirement
+            templates.clear();
+        }
     }
 
     /**
@@ -161,15 +193,23 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         {
             return null;
         }
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
 
-        // Create reader and write for the strings
-        StringReader reader = new StringReader(str);
-        StringWriter writer = new StringWriter();
+        // Nothing to do if there is no variable reference at all
+        if (str.indexOf(getVariableStart(type)) < 0)
+        {
+            return str;
+        }
+
+        StringBuilder result = new StringBuilder(str.length() + 16);
 
         // Substitute any variables
         try
         {
-            substitute(reader, writer, type);
+            substitute(str, result, type);
         }
         catch (Exception e)
         {
@@ -177,8 +217,7 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
             throw new Error(e);
         }
 
-        // Return the resulting string
-        return writer.getBuffer().toString();
+        return result.toString();
     }
 
     /**
@@ -294,125 +333,397 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         {
             type = SubstitutionType.getDefault();
         }
-
-        // determine character which starts (and ends) a variable
-        char variable_start = '$';
-        char variable_end = '\0';
-        switch (type)
+        char variable_start = getVariableStart(type);
+        Substitution substitution = new Substitution(writer, type);
+
+        // Read the input in chunks. A variable reference may span chunk boundaries, so the scan
+        // stops before a reference which may continue in the next chunk, and keeps it
+        StringBuilder pending = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1)
         {
-            case TYPE_SHELL:
-                variable_start = '%';
-                break;
-
-            case TYPE_AT:
-                variable_start = '@';
-                break;
-
-            case TYPE_ANT:
-                variable_start = '@';
-                variable_end = '@';
-                break;
-
-            default:
-                break;
+            if (pending.length() == 0 && indexOf(buffer, read, variable_start) < 0)
+            {
+                writer.write(buffer, 0, read);
+                continue;
+            }
+            pending.append(buffer, 0, read);
+            pending.delete(0, scan(pending, false, variable_start, substitution));
         }
+        scan(pending, true, variable_start, substitution);
+        return substitution.subs;
+    }
 
-        int subs = 0;
+    /**
+     * Substitutes the variables found in the specified string, appending the result to the given
+     * buffer. Text between variable references is copied in bulk.
+     *
+     * @param str    the string to substitute
+     * @param result the buffer to append the result to
+     * @param type   the file type
+     * @return the number of substitutions made
+     * @throws Exception if a variable value can't be resolved
+     */
+    private int substitute(String str, StringBuilder result, SubstitutionType type) throws Exception
+    {
+        Substitution substitution = new Substitution(result, type);
+        scan(str, true, getVariableStart(type), substitution);
+        return substitution.subs;
+    }
 
-        // Copy data and substitute variables
-        int c = reader.read();
+    /**
+     * Receives the text and the variable references found by {@link #scan}.
+     */
+    interface ScanHandler
+    {
+        /**
+         * Receives text which is not part of a variable reference.
+         *
+         * @param str   the scanned string
+         * @param start the start index of the text
+         * @param end   the end index of the text, exclusive
+         * @throws Exception if the text can't be handled
+         */
+        void text(CharSequence str, int start, int end) throws Exception;
+
+        /**
+         * Receives a variable reference.
+         *
+         * @param name   the variable name, may be empty
+         * @param braces whether the name follows an opening brace
+         * @param next   the character following the name, or <tt>-1</tt> at the end of the input
+         * @return <tt>true</tt> if the following character ends the reference, so that it is
+         *         skipped
+         * @throws Exception if the reference can't be handled
+         */
+        boolean variable(String name, boolean braces, int next) throws Exception;
+    }
+
+    /**
+     * Scans a string for variable references.
+     *
+     * @param str            the string to scan
+     * @param complete       whether the string holds the rest of the input. If not, the scan stops
+     *                       before a reference which may continue beyond the end of the string
+     * @param variable_start the character which starts a variable reference
+     * @param handler        the handler receiving the text and the references
+     * @return the index up to which the string was scanned
+     * @throws Exception if the handler fails
+     */
+    int scan(CharSequence str, boolean complete, char variable_start, ScanHandler handler) throws Exception
+    {
+        int length = str.length();
+        int pos = 0;
 
         while (true)
         {
             // Find the next potential variable reference or EOF
-            while (c != -1 && c != variable_start)
+            int start = indexOf(str, pos, variable_start);
+            if (start < 0)
+            {
+                if (pos < length)
+                {
+                    handler.text(str, pos, length);
+                }
+                return length;
+            }
+            if (start > pos)
             {
-                writer.write(c);
-                c = reader.read();
+                handler.text(str, pos, start);
             }
-            if (c == -1)
+            pos = start + 1;
+            if (pos >= length && !complete)
             {
-                return subs;
+                return start;
             }
 
             // Check if braces used or start char escaped
             boolean braces = false;
-            c = reader.read();
-            if (c == '{')
+            if (pos < length && str.charAt(pos) == '{')
             {
                 braces = true;
-                c = reader.read();
+                pos++;
             }
-            else if (bracesRequired)
+            else if (bracesRequired || pos >= length)
             {
-                writer.write(variable_start);
+                handler.text(str, start, pos);
                 continue;
             }
-            else if (c == -1)
+
+            // Read the variable name
+            int nameStart = pos;
+            while (pos < length)
+            {
+                char c = str.charAt(pos);
+                if ((braces && c != '}') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                        || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && pos > nameStart))
+                {
+                    pos++;
+                }
+                else
+                {
+                    break;
+                }
+            }
+            if (pos >= length && !complete)
+            {
+                return start;
+            }
+            String name = str.subSequence(nameStart, pos).toString();
+            int next = (pos < length) ? str.charAt(pos) : -1;
+            if (handler.variable(name, braces, next) && next != -1)
             {
-                writer.write(variable_start);
-                return subs;
+                pos++;
             }
+        }
+    }
 
-            // Read the variable name
-            StringBuffer nameBuffer = new StringBuffer();
-            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
-                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
+    private static int indexOf(CharSequence str, int from, char c)
+    {
+        if (str instanceof String)
+        {
+            return ((String) str).indexOf(c, from);
+        }
+        for (int i = from, length = str.length(); i < length; i++)
+        {
+            if (str.charAt(i) == c)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(char[] buffer, int length, char c)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer[i] == c)
             {
-                nameBuffer.append((char) c);
-                c = reader.read();
+                return i;
             }
-            String name = nameBuffer.toString();
+        }
+        return -1;
+    }
+
+    /**
+     * Substitutes the variable references passed by {@link #scan} with their values.
+     */
+    private class Substitution implements ScanHandler
+    {
+        private final Appendable out;
+
+        private final SubstitutionType type;
+
+        private final char variable_start;
+
+        private final char variable_end;
+
+        /**
+         * The number of substitutions made.
+         */
+        private int subs = 0;
+
+        Substitution(Appendable out, SubstitutionType type)
+        {
+            this.out = out;
+            this.type = type;
+            // determine character which starts (and ends) a variable
+            this.variable_start = getVariableStart(type);
+            this.variable_end = (type == SubstitutionType.TYPE_ANT) ? '@' : '\0';
+        }
+
+        public void text(CharSequence str, int start, int end) throws IOException
+        {
+            out.append(str, start, end);
+        }
 
+        public boolean variable(String name, boolean braces, int next) throws Exception
+        {
             // Check if a legal and defined variable found
             String varvalue = null;
 
-            if (((!braces || c == '}') &&
-                    (!braces || variable_end == '\0' || variable_end == c)
+            if (((!braces || next == '}') &&
+                    (!braces || variable_end == '\0' || variable_end == next)
             ) && name.length() > 0)
             {
-                // check for environment variables
-                if (braces && name.startsWith("ENV[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
-                {
-                    varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
-                    if (varvalue == null)
-                    {
-                        varvalue = "";
-                    }
-                }
-                else
-                {
-                    Value val = getValue(name);
-                    if (val != null)
-                    {
-                        varvalue = val.resolve();
-                    }
-                }
-
+                varvalue = resolveVariable(name, braces);
                 subs++;
             }
 
             // Substitute the variable...
             if (varvalue != null)
             {
-                writer.write(escapeSpecialChars(varvalue, type));
-                if (braces || variable_end != '\0')
-                {
-                    c = reader.read();
-                }
+                out.append(escapeSpecialChars(varvalue, type));
+                return braces || variable_end != '\0';
             }
             // ...or ignore it
-            else
+            out.append(variable_start);
+            if (braces)
             {
-                writer.write(variable_start);
-                if (braces)
-                {
-                    writer.write('{');
-                }
-                writer.write(name);
+                out.append('{');
+            }
+            out.append(name);
+            return false;
+        }
+    }
+
+    /**
+     * Parses the specified string into a template which can be substituted repeatedly without
+     * parsing the string again. The templates of recently compiled plain strings are cached.
+     *
+     * @param str  the string to check for variables
+     * @param type the escaping type or null for plain
+     * @return the compiled template
+     */
+    public SubstitutionTemplate compile(String str, SubstitutionType type)
+    {
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+        if (type != SubstitutionType.TYPE_PLAIN || str == null)
+        {
+            return compileTemplate(str, type);
+        }
+        synchronized (templates)
+        {
+            SubstitutionTemplate template = templates.get(str);
+            if (template == null)
+            {
+                template = compileTemplate(str, type);
+                templates.put(str, template);
+            }
+            return template;
+        }
+    }
+
+    private SubstitutionTemplate compileTemplate(String str, SubstitutionType type)
+    {
+        char variable_start = getVariableStart(type);
+        if (str == null || str.indexOf(variable_start) < 0)
+        {
+            return new SubstitutionTemplateImpl(str);
+        }
+        if (type == SubstitutionType.TYPE_ANT)
+        {
+            // whether the end marker is consumed depends on the variable values,
+            // so the string can't be split up in advance
+            return new SubstitutionTemplateImpl(this, str, type);
+        }
+
+        Compilation compilation = new Compilation(variable_start);
+        try
+        {
+            scan(str, true, variable_start, compilation);
+        }
+        catch (Exception e)
+        {
+            // compiling doesn't resolve anything
+            throw new Error(e);
+        }
+        return compilation.toTemplate(type);
+    }
+
+    /**
+     * Splits the string passed to {@link #scan} into literal parts and the variable references
+     * which {@link Substitution} would substitute.
+     */
+    private class Compilation implements ScanHandler
+    {
+        private final char variable_start;
+
+        private final List<String> literals = new ArrayList<String>();
+
+        private final List<String> names = new ArrayList<String>();
+
+        private final List<Boolean> braced = new ArrayList<Boolean>();
+
+        private final StringBuilder literal = new StringBuilder();
+
+        Compilation(char variable_start)
+        {
+            this.variable_start = variable_start;
+        }
+
+        public void text(CharSequence str, int start, int end)
+        {
+            literal.append(str, start, end);
+        }
+
+        public boolean variable(String name, boolean braces, int next)
+        {
+            if ((!braces || next != -1) && name.length() > 0)
+            {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                names.add(name);
+                braced.add(braces);
+                // the closing brace is part of the reference
+                return braces;
+            }
+            literal.append(variable_start);
+            if (braces)
+            {
+                literal.append('{');
+            }
+            literal.append(name);
+            return false;
+        }
+
+        SubstitutionTemplate toTemplate(SubstitutionType type)
+        {
+            literals.add(literal.toString());
+            boolean[] braces = new boolean[braced.size()];
+            for (int i = 0; i < braces.length; i++)
+            {
+                braces[i] = braced.get(i);
             }
+            return new SubstitutionTemplateImpl(VariableSubstitutorBase.this, type, variable_start,
+                    literals.toArray(new String[literals.size()]), names.toArray(new String[names.size()]), braces);
+        }
+    }
+
+    /**
+     * Resolves the value of a variable reference.
+     *
+     * @param name   the variable name
+     * @param braces whether the reference was enclosed in braces, which allows to reference
+     *               environment variables as <tt>ENV[name]</tt>
+     * @return the value or <tt>null</tt> if the variable is undefined
+     * @throws Exception if the value can't be resolved
+     */
+    String resolveVariable(String name, boolean braces) throws Exception
+    {
+        // check for environment variables
+        if (braces && name.startsWith("ENV[")
+                && (name.lastIndexOf(']') == name.length() - 1))
+        {
+            String varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
+            return (varvalue == null) ? "" : varvalue;
+        }
+        Value val = getValue(name);
+        return (val != null) ? val.resolve() : null;
+    }
+
+    /**
+     * Returns the character which starts a variable reference for the given type.
+     *
+     * @param type the file type
+     * @return the start character
+     */
+    static char getVariableStart(SubstitutionType type)
+    {
+        switch (type)
+        {
+            case TYPE_SHELL:
+                return '%';
+            case TYPE_AT:
+            case TYPE_ANT:
+                return '@';
+            default:
+                return '$';
         }
     }
 
@@ -0,0 +1,233 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable;
+
+import com.izforge.izpack.util.FileExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the external commands of {@link ExecValue}s on a small, bounded thread pool.
+ * <p/>
+ * While a batch is open (see {@link #beginBatch()}), results are cached by command line and
+ * working directory, so that a command which has been prefetched in the background is run only
+ * once. Commands always inherit the environment of the installer, so the environment is not part
+ * of the cache key. Outside of a batch every command is run again.
+ */
+public class ExecCommandPool
+{
+    /**
+     * The maximum number of commands running at the same time.
+     */
+    private static final int MAX_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecCommandPool INSTANCE = new ExecCommandPool();
+
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<Command, Future<Result>> results = new ConcurrentHashMap<Command, Future<Result>>();
+
+    private int batches = 0;
+
+    private ExecCommandPool()
+    {
+        executor = Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack-exec-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the shared command pool.
+     *
+     * @return the command pool
+     */
+    public static ExecCommandPool getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Opens a batch. Until the matching {@link #endBatch()}, identical commands are run only once.
+     */
+    public synchronized void beginBatch()
+    {
+        batches++;
+    }
+
+    /**
+     * Closes a batch. When the outermost batch is closed, all cached results are dropped.
+     */
+    public synchronized void endBatch()
+    {
+        if (batches > 0 && --batches == 0)
+        {
+            results.clear();
+        }
+    }
+
+    /**
+     * Submits a command for asynchronous execution, without waiting for its result.
+     *
+     * @param cmd     the command line
+     * @param dir     the working directory, may be <tt>null</tt>
+     * @param timeout the maximum execution time in milliseconds, 0 for no limit
+     * @return the pending result of the command
+     */
+    public Future<Result> submit(String[] cmd, String dir, long timeout)
+    {
+        Command command = new Command(cmd, dir);
+        FutureTask<Result> task = new FutureTask<Result>(new CommandTask(command, timeout));
+        synchronized (this)
+        {
+            if (batches > 0)
+            {
+                Future<Result> existing = results.putIfAbsent(command, task);
+                if (existing != null)
+                {
+                    return existing;
+                }
+            }
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs a command and waits for its result. A command that has already been submitted in the
+     * current batch is not run again.
+     *
+     * @param cmd     the command line
+     * @param dir     the working directory, may be <tt>null</tt>
+     * @param timeout the maximum execution time in milliseconds, 0 for no limit
+     * @return the result of the command
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws ExecutionException   if the command could not be run
+     */
+    public Result execute(String[] cmd, String dir, long timeout) throws InterruptedException, ExecutionException
+    {
+        return submit(cmd, dir, timeout).get();
+    }
+
+    /**
+     * The outcome of an executed command.
+     */
+    public static class Result
+    {
+        private final int exitStatus;
+
+        private final String stdout;
+
+        private final String stderr;
+
+        Result(int exitStatus, String stdout, String stderr)
+        {
+            this.exitStatus = exitStatus;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        public int getExitStatus()
+        {
+            return exitStatus;
+        }
+
+        public String getStdout()
+        {
+            return stdout;
+        }
+
+        public String getStderr()
+        {
+            return stderr;
+        }
+    }
+
+    /**
+     * Cache key of a command.
+     */
+    private static class Command
+    {
+        private final String[] cmd;
+
+        private final String dir;
+
+        Command(String[] cmd, String dir)
+        {
+            this.cmd = cmd.clone();
+            this.dir = dir;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Command))
+            {
+                return false;
+            }
+            Command other = (Command) obj;
+            return Arrays.equals(cmd, other.cmd) && (dir == null ? other.dir == null : dir.equals(other.dir));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode(cmd) * 31 + (dir == null ? 0 : dir.hashCode());
+        }
+    }
+
+    private static class CommandTask implements Callable<Result>
+    {
+        private final Command command;
+
+        private final long timeout;
+
+        CommandTask(Command command, long timeout)
+        {
+            this.command = command;
+            this.timeout = timeout;
+        }
+
+        public Result call() throws Exception
+        {
+            String[] output = new String[2];
+            // FileExecutor may rewrite the command line, so pass a copy
+            int status = new FileExecutor().executeCommand(command.cmd.clone(), output, command.dir, timeout);
+            return new Result(status, output[0], output[1]);
+        }
+    }
+}
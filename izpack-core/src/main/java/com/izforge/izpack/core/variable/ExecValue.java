@@ -23,10 +23,12 @@ package com.izforge.izpack.core.variable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
-import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.OsVersion;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 public class ExecValue extends ValueImpl implements Serializable
@@ -40,6 +42,11 @@ public class ExecValue extends ValueImpl implements Serializable
     private String dir;
     private boolean useStdErr = true;
 
+    /**
+     * The maximum execution time of the command in milliseconds, 0 for no limit.
+     */
+    private long timeout = 0;
+
     public ExecValue(String[] command, String dir, boolean isShellCommand, boolean useStdErr)
     {
         super();
@@ -88,6 +95,16 @@ public class ExecValue extends ValueImpl implements Serializable
         this.cmd = cmd;
     }
 
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout)
+    {
+        this.timeout = timeout;
+    }
+
     @Override
     public void validate() throws Exception
     {
@@ -107,13 +124,97 @@ public class ExecValue extends ValueImpl implements Serializable
     @Override
     public String resolve(VariableSubstitutor... substitutors)
     {
-        String _dir_ = null, _cmd_[] = new String[cmd.length];
+        ExecCommandPool.Result result;
+        try
+        {
+            result = submit(substitutors).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            return null;
+        }
+        if (result.getExitStatus() == 0)
+        {
+            if (useStdErr)
+            {
+                // Some commands return their output on stderr (as java -version)
+                return result.getStderr();
+            }
+            else
+            {
+                return result.getStdout();
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Starts the command in the background, so that a later {@link #resolve} within the same
+     * {@link ExecCommandPool} batch only has to pick up its result.
+     * <p/>
+     * The command is not started if its command line or working directory refer to one of the
+     * given variables, or to a variable which is not set yet, since the command line could still
+     * change before it is resolved, and the command would then be run twice.
+     *
+     * @param pending      the names of the variables which may still change, e.g. other dynamic
+     *                     variables
+     * @param substitutors the substitutors to apply to the command line and working directory
+     * @return <tt>true</tt> if the command was started, <tt>false</tt> if it is left to
+     *         {@link #resolve}
+     */
+    public boolean prefetch(Collection<String> pending, VariableSubstitutor... substitutors)
+    {
+        if (refersTo(dir, pending))
+        {
+            return false;
+        }
+        for (String arg : cmd)
+        {
+            if (refersTo(arg, pending))
+            {
+                return false;
+            }
+        }
+        String _dir_ = substituteDir(substitutors);
+        String[] _cmd_ = substituteCmd(substitutors);
+        if (isUnresolved(_dir_))
+        {
+            return false;
+        }
+        for (String arg : _cmd_)
+        {
+            if (isUnresolved(arg))
+            {
+                return false;
+            }
+        }
+        ExecCommandPool.getInstance().submit(_cmd_, _dir_, timeout);
+        return true;
+    }
+
+    private Future<ExecCommandPool.Result> submit(VariableSubstitutor... substitutors)
+    {
+        return ExecCommandPool.getInstance().submit(substituteCmd(substitutors), substituteDir(substitutors), timeout);
+    }
+
+    private String substituteDir(VariableSubstitutor... substitutors)
+    {
+        String _dir_ = null;
         for ( VariableSubstitutor substitutor : substitutors )
         {
             _dir_ = substitutor.substitute(dir, null);
         }
+        return _dir_;
+    }
 
+    private String[] substituteCmd(VariableSubstitutor... substitutors)
+    {
+        String _cmd_[] = new String[cmd.length];
         for (int i = 0; i < cmd.length; i++)
         {
             String _cmdarg_ = cmd[i];
@@ -121,20 +222,51 @@ public class ExecValue extends ValueImpl implements Serializable
                 _cmdarg_ = substitutor.substitute(_cmdarg_, null);
             _cmd_[i] = _cmdarg_;
         }
-        String[] execOut = new String[2];
-        int ret = new FileExecutor().executeCommand(_cmd_, execOut, _dir_);
-        if (ret == 0)
+        return _cmd_;
+    }
+
+    /**
+     * Determines if a string refers to one of the given variables, as <tt>${name}</tt> or
+     * <tt>$name</tt>.
+     */
+    private static boolean refersTo(String value, Collection<String> names)
+    {
+        if (value == null || value.indexOf('$') < 0)
         {
-            if (useStdErr)
+            return false;
+        }
+        for (String name : names)
+        {
+            if (value.contains("${" + name + "}"))
             {
-                // Some commands return their output on stderr (as java -version)
-                return execOut[1];
+                return true;
             }
-            else
+            String reference = "$" + name;
+            int index = value.indexOf(reference);
+            while (index >= 0)
             {
-                return execOut[0];
+                int end = index + reference.length();
+                if (end == value.length() || !isNamePart(value.charAt(end)))
+                {
+                    return true;
+                }
+                index = value.indexOf(reference, end);
             }
         }
-        return null;
+        return false;
+    }
+
+    private static boolean isNamePart(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '.' || c == '-';
+    }
+
+    /**
+     * Determines if a substituted string still contains a reference to a variable which is not set.
+     */
+    private static boolean isUnresolved(String value)
+    {
+        return value != null && value.contains("${");
     }
 }
@@ -3,9 +3,12 @@ package com.izforge.izpack.merge;
 import com.izforge.izpack.api.merge.Mergeable;
 
 import java.io.OutputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract classes for all mergeable element.
@@ -21,8 +24,82 @@ public abstract class AbstractMerge implements Mergeable
     {
         if (!mergeContent.containsKey(outputStream))
         {
-            mergeContent.put(outputStream, new ArrayList<String>());
+            mergeContent.put(outputStream, new MergeList());
         }
         return mergeContent.get(outputStream);
     }
+
+    /**
+     * List of the merged entries, with constant time lookups. The entries are kept in a list and
+     * a set, which every modification updates both.
+     */
+    private static class MergeList extends AbstractList<String>
+    {
+        private final List<String> list = new ArrayList<String>();
+
+        private final Set<String> entries = new HashSet<String>();
+
+        @Override
+        public String get(int index)
+        {
+            return list.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return list.size();
+        }
+
+        @Override
+        public void add(int index, String entry)
+        {
+            list.add(index, entry);
+            entries.add(entry);
+            modCount++;
+        }
+
+        @Override
+        public String set(int index, String entry)
+        {
+            String previous = list.set(index, entry);
+            entries.add(entry);
+            forget(previous);
+            return previous;
+        }
+
+        @Override
+        public String remove(int index)
+        {
+            String previous = list.remove(index);
+            forget(previous);
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public boolean contains(Object entry)
+        {
+            return entries.contains(entry);
+        }
+
+        @Override
+        public void clear()
+        {
+            list.clear();
+            entries.clear();
+            modCount++;
+        }
+
+        /**
+         * Removes an entry from the set unless the list still holds it.
+         */
+        private void forget(String entry)
+        {
+            if (!list.contains(entry))
+            {
+                entries.remove(entry);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.izforge.izpack.merge;
 
 import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.jar.JarMerge;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import org.apache.tools.zip.ZipOutputStream;
 
@@ -45,22 +46,96 @@ public class MergeManagerImpl implements MergeManager
 
     public void merge(ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        for (MergeGroup group : groupByJar())
         {
-            mergeable.merge(outputStream);
+            group.merge(outputStream);
         }
         mergeableList.clear();
     }
 
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        for (MergeGroup group : groupByJar())
         {
-            mergeable.merge(outputStream);
+            group.merge(outputStream);
         }
         mergeableList.clear();
     }
 
+    /**
+     * Groups consecutive jar mergeables of the same jar, so that the jar is read only once for
+     * them. Mergeables are not moved past others, since the first mergeable to write an entry
+     * wins: a jar referenced again after another mergeable is read again.
+     *
+     * @return the groups, in merge order
+     */
+    private List<MergeGroup> groupByJar()
+    {
+        List<MergeGroup> groups = new ArrayList<MergeGroup>();
+        MergeGroup last = null;
+        for (Mergeable mergeable : mergeableList)
+        {
+            if (mergeable instanceof JarMerge)
+            {
+                JarMerge jarMerge = (JarMerge) mergeable;
+                if (last == null || !jarMerge.getJarPath().equals(last.jarPath))
+                {
+                    last = new MergeGroup(jarMerge.getJarPath(), null);
+                    groups.add(last);
+                }
+                last.jarMerges.add(jarMerge);
+            }
+            else
+            {
+                last = null;
+                groups.add(new MergeGroup(null, mergeable));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Either a single mergeable, or jar mergeables of the same jar which are merged in one pass.
+     */
+    private static class MergeGroup
+    {
+        private final String jarPath;
+
+        private final Mergeable mergeable;
+
+        private final List<JarMerge> jarMerges = new ArrayList<JarMerge>();
+
+        MergeGroup(String jarPath, Mergeable mergeable)
+        {
+            this.jarPath = jarPath;
+            this.mergeable = mergeable;
+        }
+
+        void merge(ZipOutputStream outputStream)
+        {
+            if (mergeable != null)
+            {
+                mergeable.merge(outputStream);
+            }
+            else
+            {
+                JarMerge.merge(jarMerges, outputStream);
+            }
+        }
+
+        void merge(java.util.zip.ZipOutputStream outputStream)
+        {
+            if (mergeable != null)
+            {
+                mergeable.merge(outputStream);
+            }
+            else
+            {
+                JarMerge.merge(jarMerges, outputStream);
+            }
+        }
+    }
+
     public List<File> recursivelyListFiles(FileFilter fileFilter)
     {
         ArrayList<File> result = new ArrayList<File>();
@@ -0,0 +1,246 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists the entry names of jar files.
+ * <p/>
+ * The names are read from the central directory of the jar instead of streaming through the
+ * whole content. Listings are cached in memory and in a directory on disk, so that subsequent
+ * compilations don't read the jars at all. A cached listing is used as long as the path, size
+ * and modification time of the jar are unchanged.
+ * <p/>
+ * The cache directory defaults to <tt>.izpack/jar-index</tt> in the home directory of the user,
+ * so that listings are never shared with other users, and can be set with the system property
+ * {@value #CACHE_DIR_PROPERTY}. Setting it to an empty value disables the disk cache. A cached
+ * listing records the path, size and modification time of its jar and is ignored if they differ.
+ */
+public class JarEntryIndex
+{
+    /**
+     * System property to configure the cache directory.
+     */
+    public static final String CACHE_DIR_PROPERTY = "izpack.jarindex.dir";
+
+    private static final int MAGIC = 0x495a4a31;
+
+    private static final Map<String, Listing> listings = new HashMap<String, Listing>();
+
+    /**
+     * Returns the names of all entries of the given jar, in the order of the jar.
+     *
+     * @param jar the jar file
+     * @return the entry names
+     * @throws IOException if the jar can't be read
+     */
+    public static List<String> getEntryNames(File jar) throws IOException
+    {
+        String path = jar.getAbsolutePath();
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        synchronized (listings)
+        {
+            Listing listing = listings.get(path);
+            if (listing != null && listing.isValid(size, lastModified))
+            {
+                return listing.names;
+            }
+        }
+
+        File cacheFile = getCacheFile(jar);
+        Listing listing = (cacheFile != null) ? readListing(cacheFile, path, size, lastModified) : null;
+        if (listing == null)
+        {
+            listing = new Listing(size, lastModified, readEntryNames(jar));
+            if (cacheFile != null)
+            {
+                writeListing(cacheFile, path, listing);
+            }
+        }
+        synchronized (listings)
+        {
+            listings.put(path, listing);
+        }
+        return listing.names;
+    }
+
+    private static List<String> readEntryNames(File jar) throws IOException
+    {
+        ZipFile zipFile = new ZipFile(jar);
+        try
+        {
+            List<String> names = new ArrayList<String>(zipFile.size());
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements())
+            {
+                names.add(entries.nextElement().getName());
+            }
+            return Collections.unmodifiableList(names);
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+
+    private static File getCacheFile(File jar)
+    {
+        String dirName = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dirName == null)
+        {
+            dirName = new File(System.getProperty("user.home"), ".izpack" + File.separator + "jar-index").getPath();
+        }
+        if (dirName.length() == 0)
+        {
+            return null;
+        }
+        File dir = new File(dirName);
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            return null;
+        }
+        String path = jar.getAbsolutePath();
+        return new File(dir, jar.getName() + "-" + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    /**
+     * Reads a cached listing.
+     *
+     * @return the listing, or <tt>null</tt> if there is no valid listing for the jar
+     */
+    private static Listing readListing(File cacheFile, String path, long size, long lastModified)
+    {
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != MAGIC || !path.equals(in.readUTF()) || in.readLong() != size
+                    || in.readLong() != lastModified)
+            {
+                return null;
+            }
+            int count = in.readInt();
+            List<String> names = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++)
+            {
+                names.add(in.readUTF());
+            }
+            return new Listing(size, lastModified, Collections.unmodifiableList(names));
+        }
+        catch (IOException e)
+        {
+            // corrupt or concurrently written cache, read the jar instead
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    private static void writeListing(File cacheFile, String path, Listing listing)
+    {
+        File tmpFile = new File(cacheFile.getPath() + ".tmp" + System.nanoTime());
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeUTF(path);
+            out.writeLong(listing.size);
+            out.writeLong(listing.lastModified);
+            out.writeInt(listing.names.size());
+            for (String name : listing.names)
+            {
+                out.writeUTF(name);
+            }
+            out.close();
+            out = null;
+            cacheFile.delete();
+            if (!tmpFile.renameTo(cacheFile))
+            {
+                tmpFile.delete();
+            }
+        }
+        catch (IOException e)
+        {
+            // the cache is only an optimization
+            close(out);
+            tmpFile.delete();
+        }
+    }
+
+    private static void close(Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+    }
+
+    private static class Listing
+    {
+        private final long size;
+
+        private final long lastModified;
+
+        private final List<String> names;
+
+        Listing(long size, long lastModified, List<String> names)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.names = names;
+        }
+
+        boolean isValid(long size, long lastModified)
+        {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
@@ -9,13 +9,15 @@ import org.apache.tools.zip.ZipOutputStream;
 import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarInputStream;
+import java.util.jar.JarFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
  * Jar files merger.
@@ -29,6 +31,8 @@ public class JarMerge extends AbstractMerge
     private String regexp;
     private String destination;
 
+    private Pattern pattern;
+
 
     /**
      * Create a new JarMerge with a destination
@@ -131,95 +135,140 @@ public class JarMerge extends AbstractMerge
 
     public ArrayList<String> getFileNameInZip() throws IOException
     {
-        ZipInputStream inputStream = new ZipInputStream(new FileInputStream(jarPath));
-        ArrayList<String> arrayList = new ArrayList<String>();
-        ZipEntry zipEntry;
-        while ((zipEntry = inputStream.getNextEntry()) != null)
-        {
-            arrayList.add(zipEntry.getName());
-        }
-        return arrayList;
+        return new ArrayList<String>(JarEntryIndex.getEntryNames(new File(jarPath)));
     }
 
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
-        ZipEntry zentry;
+        merge(Collections.singletonList(this), outputStream);
+    }
+
+    public void merge(ZipOutputStream outJar)
+    {
+        merge(Collections.singletonList(this), outJar);
+    }
+
+    /**
+     * Returns the path of the merged jar.
+     *
+     * @return the jar path
+     */
+    public String getJarPath()
+    {
+        return jarPath;
+    }
+
+    /**
+     * Merges several mergeables of the same jar in a single pass over the jar.
+     * <p/>
+     * An entry matched by several mergeables is merged by the first of them, and only once per output stream.
+     *
+     * @param jarMerges    the mergeables, all referring to the same jar
+     * @param outputStream the output, either a {@link ZipOutputStream} or a {@link java.util.zip.ZipOutputStream}
+     */
+    public static void merge(List<JarMerge> jarMerges, OutputStream outputStream)
+    {
+        JarMerge first = jarMerges.get(0);
+        List<String> mergeList = first.getMergeList(outputStream);
+        Matcher[] matchers = new Matcher[jarMerges.size()];
+        for (int i = 0; i < matchers.length; i++)
+        {
+            matchers[i] = jarMerges.get(i).getPattern().matcher("");
+        }
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
-            while ((zentry = jarInputStream.getNextEntry()) != null)
+            ZipFile zipFile = new ZipFile(first.jarPath);
+            try
             {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                boolean header = true;
+                while (entries.hasMoreElements())
                 {
-                    if (mergeList.contains(zentry.getName()))
+                    ZipEntry zentry = entries.nextElement();
+                    String name = zentry.getName();
+                    if (header)
                     {
-                        continue;
+                        // like JarInputStream, skip the leading manifest
+                        if (name.equalsIgnoreCase("META-INF/"))
+                        {
+                            continue;
+                        }
+                        header = false;
+                        if (name.equalsIgnoreCase(JarFile.MANIFEST_NAME))
+                        {
+                            continue;
+                        }
                     }
-                    mergeList.add(zentry.getName());
-
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
+                    for (int i = 0; i < matchers.length; i++)
                     {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
+                        Matcher matcher = matchers[i].reset(name);
+                        if (matcher.matches())
                         {
-                            dest.append('/');
+                            if (!mergeList.contains(name))
+                            {
+                                mergeList.add(name);
+                                String dest = jarMerges.get(i).getDestination(matcher.group(1));
+                                copyEntry(zipFile, zentry, outputStream, dest);
+                            }
+                            break;
                         }
-                        dest.append(matchFile);
                     }
-                    IoHelper.copyStreamToJar(jarInputStream, outputStream, dest.toString().replaceAll("//", "/"), zentry.getTime());
                 }
-
             }
-            jarInputStream.close();
+            finally
+            {
+                zipFile.close();
+            }
         }
         catch (IOException e)
         {
-            throw new RuntimeException(e);
+            throw new MergeException(e);
         }
     }
 
-    public void merge(ZipOutputStream outJar)
+    private static void copyEntry(ZipFile zipFile, ZipEntry zentry, OutputStream outputStream, String dest)
+            throws IOException
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outJar);
-        ZipEntry zentry;
+        InputStream inputStream = zipFile.getInputStream(zentry);
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
-            while ((zentry = jarInputStream.getNextEntry()) != null)
+            if (outputStream instanceof ZipOutputStream)
             {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
-                {
-                    if (mergeList.contains(zentry.getName()))
-                    {
-                        continue;
-                    }
-                    mergeList.add(zentry.getName());
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
-                    {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
-                        {
-                            dest.append('/');
-                        }
-                        dest.append(matchFile);
-                    }
-                    IoHelper.copyStreamToJar(jarInputStream, outJar, dest.toString().replaceAll("//", "/"), zentry.getTime());
-                }
-
+                IoHelper.copyStreamToJar(inputStream, (ZipOutputStream) outputStream, dest, zentry.getTime());
+            }
+            else
+            {
+                IoHelper.copyStreamToJar(inputStream, (java.util.zip.ZipOutputStream) outputStream, dest,
+                                         zentry.getTime());
             }
-            jarInputStream.close();
         }
-        catch (IOException e)
+        finally
         {
-            throw new MergeException(e);
+            inputStream.close();
+        }
+    }
+
+    private Pattern getPattern()
+    {
+        if (pattern == null)
+        {
+            pattern = Pattern.compile(regexp);
+        }
+        return pattern;
+    }
+
+    private String getDestination(String matchFile)
+    {
+        StringBuilder dest = new StringBuilder(destination);
+        if (matchFile != null && matchFile.length() > 0)
+        {
+            if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
+            {
+                dest.append('/');
+            }
+            dest.append(matchFile);
         }
+        return dest.toString().replaceAll("//", "/");
     }
 
     @Override
@@ -25,6 +25,12 @@ public class ClassPathCrawler
 
     private HashMap<String, Set<URL>> classPathContentCache;
 
+    /**
+     * Files of the classpath by their path relative to the classpath entry, like
+     * <tt>com/izforge/izpack/panels</tt>
+     */
+    private HashMap<String, Set<URL>> classPathPathCache;
+
 
     private static final List<String> acceptedJar = Arrays.asList(".*event.*", ".*panel.*", ".*izpack.*");
 
@@ -52,11 +58,13 @@ public class ClassPathCrawler
             return;
         }
         classPathContentCache = new HashMap<String, Set<URL>>();
+        classPathPathCache = new HashMap<String, Set<URL>>();
         try
         {
             Collection<URL> urls = getClassPathUrl();
             for (URL url : urls)
             {
+                String root = FileUtil.convertUrlToFile(url).getPath().replace(File.separatorChar, '/') + "/";
                 Mergeable mergeable = mergeableResolver.getMergeableFromURL(url);
                 final List<File> files = mergeable.recursivelyListFiles(new FileFilter()
                 {
@@ -69,7 +77,13 @@ public class ClassPathCrawler
                 {
                     for (File file : files)
                     {
-                        getOrCreateList(classPathContentCache, file.getName()).add(file.toURI().toURL());
+                        URL fileUrl = file.toURI().toURL();
+                        getOrCreateList(classPathContentCache, file.getName()).add(fileUrl);
+                        String relativePath = getRelativePath(root, file);
+                        if (relativePath != null)
+                        {
+                            getOrCreateList(classPathPathCache, relativePath).add(fileUrl);
+                        }
                     }
                 }
             }
@@ -80,6 +94,36 @@ public class ClassPathCrawler
         }
     }
 
+    /**
+     * Returns the path of a file inside a jar or directory of the classpath.
+     *
+     * @param root the path of the jar or directory, ending with a slash
+     * @param file the file
+     * @return the path relative to the root, or <tt>null</tt> if it can't be determined
+     */
+    private String getRelativePath(String root, File file)
+    {
+        String path = file.getPath().replace(File.separatorChar, '/');
+        int bang = path.indexOf('!');
+        if (bang >= 0)
+        {
+            path = path.substring(bang + 1);
+        }
+        else if (path.startsWith(root))
+        {
+            path = path.substring(root.length() - 1);
+        }
+        else
+        {
+            return null;
+        }
+        while (path.startsWith("/"))
+        {
+            path = path.substring(1);
+        }
+        return path;
+    }
+
     private Set<URL> getOrCreateList(HashMap<String, Set<URL>> classPathContentCache, String key)
     {
         String newKey = key;
@@ -142,6 +186,12 @@ public class ClassPathCrawler
 
     public Set<URL> getUrlsForPackage(String packageName)
     {
+        processClassPath();
+        Set<URL> packageUrls = classPathPathCache.get(ClassResolver.convertPackageToPath(packageName));
+        if (packageUrls != null)
+        {
+            return new HashSet<URL>(packageUrls);
+        }
         Set<URL> resultSet = new HashSet<URL>();
         Set<URL> urls = classPathContentCache.get(ClassResolver.getLastPackagePart(packageName));
         if (urls == null)
@@ -1,11 +1,16 @@
 package com.izforge.izpack.core.substitutor;
 
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import org.hamcrest.core.Is;
+import org.hamcrest.core.IsSame;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Properties;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -18,12 +23,14 @@ import static org.hamcrest.MatcherAssert.assertThat;
 public class VariableSubstitutorImplTest
 {
 
+    private Properties properties;
+
     private VariableSubstitutor variableSubstitutor;
 
     @Before
     public void setupVariableSubstitutor()
     {
-        Properties properties = new Properties(System.getProperties());
+        properties = new Properties(System.getProperties());
         properties.put("MY_PROP", "one");
         properties.put("MY_PROP2", "two");
         variableSubstitutor = new VariableSubstitutorImpl(properties);
@@ -65,5 +72,130 @@ public class VariableSubstitutorImplTest
                 Is.is("onetwo"));
     }
 
+    @Test
+    public void shouldReturnSameStringWithoutVariables() throws Exception
+    {
+        String str = "string without variables";
+        assertThat(variableSubstitutor.substitute(str, SubstitutionType.TYPE_PLAIN), IsSame.sameInstance(str));
+        String shell = "string with $MY_PROP";
+        assertThat(variableSubstitutor.substitute(shell, SubstitutionType.TYPE_SHELL), IsSame.sameInstance(shell));
+    }
+
+    @Test
+    public void shouldSubstituteAcrossBufferBoundaries() throws Exception
+    {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+        {
+            input.append("line ").append(i).append(": ${MY_PROP}/$MY_PROP2\n");
+            expected.append("line ").append(i).append(": one/two\n");
+        }
+        StringWriter writer = new StringWriter();
+        int subs = variableSubstitutor.substitute(new StringReader(input.toString()), writer, SubstitutionType.TYPE_PLAIN);
+        assertThat(writer.toString(), Is.is(expected.toString()));
+        assertThat(subs, Is.is(10000));
+    }
+
+    @Test
+    public void shouldSubstituteReferencesSplitBetweenReads() throws Exception
+    {
+        String input = "a ${MY_PROP} b $MY_PROP2 c @MY_PROP@ d ${UNDEFINED} e $";
+        StringWriter writer = new StringWriter();
+        int subs = variableSubstitutor.substitute(new OneCharReader(input), writer, SubstitutionType.TYPE_PLAIN);
+        assertThat(writer.toString(), Is.is("a one b two c @MY_PROP@ d ${UNDEFINED} e $"));
+        assertThat(subs, Is.is(3));
+
+        writer = new StringWriter();
+        variableSubstitutor.substitute(new OneCharReader("@MY_PROP@@MY_PROP2@"), writer, SubstitutionType.TYPE_ANT);
+        assertThat(writer.toString(), Is.is("onetwo"));
+    }
+
+    @Test
+    public void shouldSubstituteLargeStream() throws Exception
+    {
+        String line = "some text of a configuration file, ${MY_PROP}/lib and $MY_PROP2/bin\n";
+        String expected = "some text of a configuration file, one/lib and two/bin\n";
+        int lines = 200000;
+        StringBuilder input = new StringBuilder(line.length() * lines);
+        for (int i = 0; i < lines; i++)
+        {
+            input.append(line);
+        }
+        String text = input.toString();
+
+        StringWriter writer = new StringWriter(expected.length() * lines);
+        int subs = variableSubstitutor.substitute(new StringReader(text), writer, SubstitutionType.TYPE_PLAIN);
 
+        assertThat(subs, Is.is(2 * lines));
+        assertThat(writer.getBuffer().length(), Is.is(expected.length() * lines));
+        assertThat(writer.getBuffer().substring(0, expected.length()), Is.is(expected));
+    }
+
+    @Test
+    public void shouldSubstituteCompiledTemplateWithCurrentValues() throws Exception
+    {
+        SubstitutionTemplate template = variableSubstitutor.compile("$MY_PROP/lib/${MY_PROP2}/${UNDEFINED}/$",
+                SubstitutionType.TYPE_PLAIN);
+        assertThat(template.hasVariables(), Is.is(true));
+        assertThat(template.substitute(), Is.is("one/lib/two/${UNDEFINED}/$"));
+        properties.put("MY_PROP", "three");
+        assertThat(template.substitute(), Is.is("three/lib/two/${UNDEFINED}/$"));
+    }
+
+    @Test
+    public void shouldCompileTemplateWithoutVariables() throws Exception
+    {
+        SubstitutionTemplate template = variableSubstitutor.compile("no variables", SubstitutionType.TYPE_PLAIN);
+        assertThat(template.hasVariables(), Is.is(false));
+        assertThat(template.substitute(), Is.is("no variables"));
+    }
+
+    @Test
+    public void shouldSubstituteCompiledTemplateLikeString() throws Exception
+    {
+        String[] strings = {"$", "${", "${MY_PROP", "$MY_PROP-x${MY_PROP2}}", "$$MY_PROP", "${}$1", "a$ b"};
+        for (String str : strings)
+        {
+            assertThat(variableSubstitutor.compile(str, SubstitutionType.TYPE_PLAIN).substitute(),
+                    Is.is(variableSubstitutor.substitute(str, SubstitutionType.TYPE_PLAIN)));
+        }
+    }
+
+    @Test
+    public void shouldRecompileTemplateWhenBracesBecomeRequired() throws Exception
+    {
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+        SubstitutionTemplate template = substitutor.compile("$MY_PROP/${MY_PROP2}", SubstitutionType.TYPE_PLAIN);
+        assertThat(substitutor.compile("$MY_PROP/${MY_PROP2}", SubstitutionType.TYPE_PLAIN), IsSame.sameInstance(template));
+        assertThat(template.substitute(), Is.is("one/two"));
+
+        substitutor.setBracesRequired(true);
+        assertThat(substitutor.compile("$MY_PROP/${MY_PROP2}", SubstitutionType.TYPE_PLAIN).substitute(),
+                Is.is("$MY_PROP/two"));
+    }
+
+    @Test
+    public void shouldSubstituteCompiledAntTemplate() throws Exception
+    {
+        SubstitutionTemplate template = variableSubstitutor.compile("@MY_PROP@@MY_PROP2@", SubstitutionType.TYPE_ANT);
+        assertThat(template.substitute(), Is.is("onetwo"));
+    }
+
+    /**
+     * A reader returning a single character per read.
+     */
+    private static class OneCharReader extends StringReader
+    {
+        OneCharReader(String s)
+        {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException
+        {
+            return super.read(buffer, offset, Math.min(1, length));
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package com.izforge.izpack.core.variable;
+
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNot;
+import org.hamcrest.core.IsSame;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests of the {@link ExecCommandPool}
+ */
+public class ExecCommandPoolTest
+{
+    private static final String[] JAVA_VERSION = {
+            System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-version"};
+
+    @Test
+    public void shouldRunCommand() throws Exception
+    {
+        ExecCommandPool.Result result = ExecCommandPool.getInstance().execute(JAVA_VERSION, null, 60000);
+        assertThat(result.getExitStatus(), Is.is(0));
+        assertThat(result.getStderr().length() > 0, Is.is(true));
+    }
+
+    @Test
+    public void shouldReuseResultWithinBatch() throws Exception
+    {
+        ExecCommandPool pool = ExecCommandPool.getInstance();
+        pool.beginBatch();
+        try
+        {
+            Future<ExecCommandPool.Result> first = pool.submit(JAVA_VERSION, null, 60000);
+            Future<ExecCommandPool.Result> second = pool.submit(JAVA_VERSION.clone(), null, 60000);
+            assertThat(second, IsSame.sameInstance(first));
+            first.get();
+        }
+        finally
+        {
+            pool.endBatch();
+        }
+    }
+
+    @Test
+    public void shouldRunAgainOutsideBatch() throws Exception
+    {
+        ExecCommandPool pool = ExecCommandPool.getInstance();
+        Future<ExecCommandPool.Result> first = pool.submit(JAVA_VERSION, null, 60000);
+        Future<ExecCommandPool.Result> second = pool.submit(JAVA_VERSION, null, 60000);
+        assertThat(second, IsNot.not(IsSame.sameInstance(first)));
+        first.get();
+        second.get();
+    }
+}
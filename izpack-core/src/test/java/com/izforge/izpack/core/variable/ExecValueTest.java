@@ -0,0 +1,61 @@
+package com.izforge.izpack.core.variable;
+
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests of the {@link ExecValue}
+ */
+public class ExecValueTest
+{
+    private static final String JAVA =
+            System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+    private static final Collection<String> PENDING = Arrays.asList("dyn.version");
+
+    @Test
+    public void shouldPrefetchIndependentCommand() throws Exception
+    {
+        assertThat(prefetch(JAVA, "-version"), Is.is(true));
+        assertThat(prefetch(JAVA, "${install.dir}"), Is.is(true));
+    }
+
+    @Test
+    public void shouldNotPrefetchCommandReferringToPendingVariable() throws Exception
+    {
+        assertThat(prefetch(JAVA, "${dyn.version}"), Is.is(false));
+        assertThat(prefetch(JAVA, "-D$dyn.version"), Is.is(false));
+        assertThat(prefetch(JAVA, "$dyn.versions"), Is.is(true));
+    }
+
+    @Test
+    public void shouldNotPrefetchCommandReferringToUnsetVariable() throws Exception
+    {
+        assertThat(prefetch(JAVA, "${unset.variable}"), Is.is(false));
+    }
+
+    private boolean prefetch(String... cmd) throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("install.dir", "/tmp");
+        ExecValue value = new ExecValue(cmd, null, false, true);
+        ExecCommandPool pool = ExecCommandPool.getInstance();
+        pool.beginBatch();
+        try
+        {
+            return value.prefetch(PENDING, new VariableSubstitutorImpl(properties));
+        }
+        finally
+        {
+            pool.endBatch();
+        }
+    }
+}
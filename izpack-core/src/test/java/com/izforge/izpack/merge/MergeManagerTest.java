@@ -76,5 +76,12 @@ public class MergeManagerTest
         assertThat(mergeManager, MergeMatcher.isMergeableContainingFiles("com/dest/Assert.class"));
     }
 
-
+    @Test
+    public void testMergeSeveralPackagesFromTheSameJar() throws Exception
+    {
+        mergeManager.addResourceToMerge("org/junit/runner/", "com/runner/");
+        mergeManager.addResourceToMerge("org/junit/");
+        assertThat(mergeManager, MergeMatcher.isMergeableContainingFiles("com/runner/JUnitCore.class",
+                                                                         "org/junit/Assert.class"));
+    }
 }
@@ -0,0 +1,76 @@
+package com.izforge.izpack.merge.jar;
+
+import com.izforge.izpack.util.FileUtil;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the jar entry index
+ */
+public class JarEntryIndexTest
+{
+    private File cacheDir;
+
+    private String previousCacheDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cacheDir = File.createTempFile("izpack-jar-index", "");
+        cacheDir.delete();
+        previousCacheDir = System.getProperty(JarEntryIndex.CACHE_DIR_PROPERTY);
+        System.setProperty(JarEntryIndex.CACHE_DIR_PROPERTY, cacheDir.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (previousCacheDir == null)
+        {
+            System.clearProperty(JarEntryIndex.CACHE_DIR_PROPERTY);
+        }
+        else
+        {
+            System.setProperty(JarEntryIndex.CACHE_DIR_PROPERTY, previousCacheDir);
+        }
+        File[] files = cacheDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void shouldListEntriesInJarOrder() throws Exception
+    {
+        File jar = FileUtil.convertUrlToFile(
+                ClassLoader.getSystemResource("com/izforge/izpack/merge/test/vim-panel-1.0-SNAPSHOT.jar"));
+
+        List<String> expected = new ArrayList<String>();
+        ZipInputStream inputStream = new ZipInputStream(new FileInputStream(jar));
+        ZipEntry zipEntry;
+        while ((zipEntry = inputStream.getNextEntry()) != null)
+        {
+            expected.add(zipEntry.getName());
+        }
+        inputStream.close();
+
+        assertThat(JarEntryIndex.getEntryNames(jar), Is.is(expected));
+        assertThat(cacheDir.list().length, Is.is(1));
+    }
+}
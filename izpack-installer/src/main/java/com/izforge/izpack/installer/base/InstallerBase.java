@@ -28,12 +28,14 @@ import com.izforge.izpack.api.installer.InstallerRequirementDisplay;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.DynamicVariableSubstitutor;
+import com.izforge.izpack.core.variable.ExecCommandPool;
+import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.util.Debug;
+import com.izforge.izpack.util.LogEvent;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Logger;
 
 /**
  * Common utility functions for the GUI and text installers. (Do not import swing/awt classes to
@@ -45,8 +47,6 @@ import java.util.logging.Logger;
 public abstract class InstallerBase implements InstallerRequirementDisplay
 {
 
-    private static final Logger LOGGER = Logger.getLogger(InstallerBase.class.getName());
-
     protected ResourceManager resourceManager;
 
     /**
@@ -63,6 +63,10 @@ public abstract class InstallerBase implements InstallerRequirementDisplay
 
     /**
      * Refreshes Dynamic Variables.
+     * <p/>
+     * This waits for the commands of executable dynamic variables, also when called on the GUI
+     * thread, since panel conditions and validators rely on the refreshed values. Independent
+     * commands run concurrently, so the wait is about as long as the slowest of them.
      */
     public static void refreshDynamicVariables(AutomatedInstallData installdata,
                                                VariableSubstitutor... substitutors) throws Exception
@@ -70,38 +74,86 @@ public abstract class InstallerBase implements InstallerRequirementDisplay
         Map<String, List<DynamicVariable>> dynamicvariables = installdata.getDynamicvariables();
         RulesEngine rules = installdata.getRules();
 
-        LOGGER.info("refreshing dynamic variables");
+        Debug.log("refreshing dynamic variables");
         if (dynamicvariables != null)
         {
-            for (String dynvarname : dynamicvariables.keySet())
+            ExecCommandPool pool = ExecCommandPool.getInstance();
+            pool.beginBatch();
+            try
+            {
+                prefetchDynamicVariables(dynamicvariables, substitutors);
+                evaluateDynamicVariables(installdata, dynamicvariables, rules, substitutors);
+            }
+            finally
+            {
+                pool.endBatch();
+            }
+        }
+
+    }
+
+    /**
+     * Starts the commands of the unconditional executable dynamic variables, so that they run
+     * concurrently instead of one after the other. Commands whose command line refers to a dynamic
+     * variable, or to a variable which is not set yet, are left to the subsequent evaluation, as
+     * their arguments may change in between. So are conditional commands, since their condition
+     * may depend on the dynamic variables evaluated before them, and a command must not be started
+     * if its condition turns out not to be met.
+     */
+    private static void prefetchDynamicVariables(Map<String, List<DynamicVariable>> dynamicvariables,
+                                                 VariableSubstitutor... substitutors)
+    {
+        for (List<DynamicVariable> dynvars : dynamicvariables.values())
+        {
+            for (DynamicVariable dynvar : dynvars)
             {
-                LOGGER.info("Dynamic variable: " + dynvarname);
-                for (DynamicVariable dynvar : dynamicvariables.get(dynvarname))
+                // variables checked only once are evaluated on demand to not run their command twice
+                if (dynvar.getValue() instanceof ExecValue && !dynvar.isCheckonce() && isUnconditional(dynvar))
                 {
-                    boolean refresh = true;
-                    String conditionid = dynvar.getConditionid();
-                    if ((conditionid != null) && (conditionid.length() > 0))
-                    {
-                        if ((rules != null) && !rules.isConditionTrue(conditionid))
-                        {
-                            LOGGER.info("skipped refreshing dynamic variable due to unmet condition " + conditionid);
-                            refresh = false;
-                        }
-                    }
-                    if (refresh)
-                    {
-                        String newValue = dynvar.evaluate(substitutors);
-                        if (newValue != null) {
-                            LOGGER.info("dynamic variable " + dynvar.getName() + ": " + newValue);
-                            installdata.getVariables().setProperty(dynvar.getName(), newValue);
-                        } else {
-                            LOGGER.info("dynamic variable " + dynvar.getName() + " unchanged: " + dynvar.getValue());
-                        }
-                    }
+                    ((ExecValue) dynvar.getValue()).prefetch(dynamicvariables.keySet(), substitutors);
                 }
             }
         }
+    }
 
+    private static boolean isUnconditional(DynamicVariable dynvar)
+    {
+        String conditionid = dynvar.getConditionid();
+        return (conditionid == null) || (conditionid.length() == 0);
+    }
+
+    private static boolean isConditionMet(DynamicVariable dynvar, RulesEngine rules)
+    {
+        String conditionid = dynvar.getConditionid();
+        return (conditionid == null) || (conditionid.length() == 0)
+                || (rules == null) || rules.isConditionTrue(conditionid);
+    }
+
+    private static void evaluateDynamicVariables(AutomatedInstallData installdata,
+                                                 Map<String, List<DynamicVariable>> dynamicvariables,
+                                                 RulesEngine rules, VariableSubstitutor... substitutors)
+            throws Exception
+    {
+        for (String dynvarname : dynamicvariables.keySet())
+        {
+            for (DynamicVariable dynvar : dynamicvariables.get(dynvarname))
+            {
+                if (isConditionMet(dynvar, rules))
+                {
+                    String newValue = dynvar.evaluate(substitutors);
+                    if (newValue != null) {
+                        Debug.event(LogEvent.Type.VARIABLE, dynvar.getName(), newValue);
+                        installdata.getVariables().setProperty(dynvar.getName(), newValue);
+                    } else {
+                        Debug.event(LogEvent.Type.VARIABLE, dynvar.getName(), "unchanged");
+                    }
+                }
+                else
+                {
+                    Debug.event(LogEvent.Type.VARIABLE, dynvar.getName(), "skipped, condition not met");
+                }
+            }
+        }
     }
 
 }
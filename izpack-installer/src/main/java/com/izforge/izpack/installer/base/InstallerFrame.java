@@ -648,6 +648,7 @@ public class InstallerFrame extends JFrame implements InstallerView
             }
             isBack = false;
             callGUIListener(GUIListener.PANEL_SWITCHED);
+            panelManager.prefetchPanel(installdata.getCurPanelNumber() + 1);
             Log.getInstance().addDebugMessage("InstallerFrame.switchPanel: switched", null,
                     Log.PANEL_TRACE, null);
         }
@@ -1052,8 +1053,9 @@ public class InstallerFrame extends JFrame implements InstallerView
      */
     public boolean canShow(int panelnumber)
     {
-        IzPanel panel = (IzPanel) installdata.getPanels().get(panelnumber);
-        com.izforge.izpack.api.data.Panel panelmetadata = panel.getMetadata();
+        // panels constructors may set variables the conditions depend on
+        panelManager.constructPanels(panelnumber);
+        com.izforge.izpack.api.data.Panel panelmetadata = panelManager.getPanelMetadata(panelnumber);
         String panelid = panelmetadata.getPanelid();
         Debug.trace("Current Panel: " + panelid);
         boolean canShow = false;
@@ -18,6 +18,7 @@ import com.izforge.izpack.installer.console.ConsoleInstaller;
 import com.izforge.izpack.installer.container.provider.GUIInstallDataProvider;
 import com.izforge.izpack.installer.container.provider.IconsProvider;
 import com.izforge.izpack.installer.container.provider.RulesProvider;
+import com.izforge.izpack.installer.data.DeferredVariables;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.data.UninstallDataWriter;
 import com.izforge.izpack.installer.language.ConditionCheck;
@@ -59,7 +60,7 @@ public class InstallerContainer extends AbstractContainer
                 .addComponent(MutablePicoContainer.class, pico)
                 .addComponent(ConditionContainer.class)
                 .addComponent(VariableSubstitutor.class, VariableSubstitutorImpl.class)
-                .addComponent(Properties.class)
+                .addComponent(Properties.class, DeferredVariables.class)
                 .addComponent(ResourceManager.class)
                 .addComponent(ConsoleInstaller.class)
                 .addComponent(UninstallDataWriter.class)
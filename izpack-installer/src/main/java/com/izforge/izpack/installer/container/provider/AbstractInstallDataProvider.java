@@ -8,6 +8,7 @@ import com.izforge.izpack.api.data.binding.Listener;
 import com.izforge.izpack.api.event.InstallerListener;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.installer.data.DeferredVariables;
 import com.izforge.izpack.merge.resolve.ClassPathCrawler;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.*;
@@ -17,8 +18,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Abstract class sharing commons instanciation methods beetween installData
@@ -34,6 +42,18 @@ public abstract class AbstractInstallDataProvider implements Provider
     protected VariableSubstitutor variableSubstitutor;
     protected ClassPathCrawler classPathCrawler;
 
+    /**
+     * The number of threads loading the installation data.
+     */
+    private static final int LOADER_THREADS = 3;
+
+    /**
+     * The duration of the startup steps, reported by {@link #reportTimings()}.
+     */
+    private final StringBuffer timings = new StringBuffer();
+
+    private long startTime = System.currentTimeMillis();
+
     /**
      * Loads the installation data. Also sets environment variables to <code>installdata</code>.
      * All system properties are available as $SYSTEM_<variable> where <variable> is the actual
@@ -45,11 +65,40 @@ public abstract class AbstractInstallDataProvider implements Provider
      */
     protected void loadInstallData(AutomatedInstallData installdata) throws IOException, ClassNotFoundException, InstallerException
     {
+        ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack-startup");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Future<String[]> hostResult;
+        Future<Properties> variablesResult;
+        Future<Info> infoResult;
+        Future<List<Panel>> panelsOrderResult;
+        Future<List<Pack>> packsResult;
+        try
+        {
+            // Resolving the host name may block for a long time on hosts with a broken DNS,
+            // so it is done while the installation data is read
+            hostResult = executor.submit(new HostResolver());
+            variablesResult = executor.submit(new ObjectReader<Properties>("vars"));
+            infoResult = executor.submit(new ObjectReader<Info>("info"));
+            panelsOrderResult = executor.submit(new ObjectReader<List<Panel>>("panelsOrder"));
+            packsResult = executor.submit(new PacksReader());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
         // We load the variables
-        Properties variables = (Properties) readObject("vars");
+        Properties variables = getResult(variablesResult);
 
         // We load the Info data
-        Info info = (Info) readObject("info");
+        Info info = getResult(infoResult);
 
         // We put the Info data as variables
         installdata.setVariable(ScriptParserConstant.APP_NAME, info.getAppName());
@@ -84,44 +133,32 @@ public abstract class AbstractInstallDataProvider implements Provider
 
 
         // We read the panels order data
-        List<Panel> panelsOrder = (List<Panel>) readObject("panelsOrder");
+        List<Panel> panelsOrder = getResult(panelsOrderResult);
 
         // We read the packs data
-        InputStream in = resourceManager.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        int size = objIn.readInt();
+        List<Pack> allPacks = getResult(packsResult);
         List<Pack> availablePacks = new ArrayList<Pack>();
-        List<Pack> allPacks = new ArrayList<Pack>();
-
-        for (int i = 0; i < size; i++)
+        for (Pack pack : allPacks)
         {
-            Pack pack = (Pack) objIn.readObject();
-            allPacks.add(pack);
             if (OsConstraintHelper.oneMatchesCurrentSystem(pack.osConstraints))
             {
                 availablePacks.add(pack);
             }
         }
-        objIn.close();
-
-        // We determine the hostname and IPAdress
-        String hostname;
-        String IPAddress;
 
-        try
+        // We determine the hostname and IPAdress, when they are first read if possible
+        Properties installVariables = installdata.getVariables();
+        if (installVariables instanceof DeferredVariables)
         {
-            InetAddress addr = InetAddress.getLocalHost();
-
-            // Get IP Address
-            IPAddress = addr.getHostAddress();
-
-            // Get hostname
-            hostname = addr.getHostName();
+            DeferredVariables deferredVariables = (DeferredVariables) installVariables;
+            deferredVariables.setDeferred(ScriptParserConstant.IP_ADDRESS, new HostValue(hostResult, 0));
+            deferredVariables.setDeferred(ScriptParserConstant.HOST_NAME, new HostValue(hostResult, 1));
         }
-        catch (Exception e)
+        else
         {
-            hostname = "";
-            IPAddress = "";
+            String[] host = getResult(hostResult);
+            installdata.setVariable(ScriptParserConstant.IP_ADDRESS, host[0]);
+            installdata.setVariable(ScriptParserConstant.HOST_NAME, host[1]);
         }
 
         installdata.setVariable("APPLICATIONS_DEFAULT_ROOT", dir);
@@ -130,8 +167,6 @@ public abstract class AbstractInstallDataProvider implements Provider
         installdata.setVariable(ScriptParserConstant.CLASS_PATH, System.getProperty("java.class.path"));
         installdata.setVariable(ScriptParserConstant.USER_HOME, System.getProperty("user.home"));
         installdata.setVariable(ScriptParserConstant.USER_NAME, System.getProperty("user.name"));
-        installdata.setVariable(ScriptParserConstant.IP_ADDRESS, IPAddress);
-        installdata.setVariable(ScriptParserConstant.HOST_NAME, hostname);
         installdata.setVariable(ScriptParserConstant.FILE_SEPARATOR, File.separator);
 
         Enumeration systemProperties = System.getProperties().keys();
@@ -188,6 +223,159 @@ public abstract class AbstractInstallDataProvider implements Provider
             }
         }
 
+        recordTiming("install data");
+    }
+
+    /**
+     * Records the time spent since the last recorded step.
+     *
+     * @param step the name of the step
+     */
+    protected void recordTiming(String step)
+    {
+        long now = System.currentTimeMillis();
+        synchronized (timings)
+        {
+            timings.append(timings.length() == 0 ? "" : ", ").append(step).append(": ").append(now - startTime)
+                    .append(" ms");
+            startTime = now;
+        }
+    }
+
+    /**
+     * Traces the duration of the recorded startup steps.
+     */
+    protected void reportTimings()
+    {
+        Debug.trace("Startup timings: " + timings);
+    }
+
+    /**
+     * Waits for a result of a loader task.
+     */
+    private <T> T getResult(Future<T> future) throws IOException, ClassNotFoundException, InstallerException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException("Interrupted while loading the installation data");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ClassNotFoundException)
+            {
+                throw (ClassNotFoundException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new InstallerException(cause);
+        }
+    }
+
+    /**
+     * Reads a serialized installer resource.
+     */
+    private class ObjectReader<T> implements Callable<T>
+    {
+        private final String resourceId;
+
+        ObjectReader(String resourceId)
+        {
+            this.resourceId = resourceId;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T call() throws Exception
+        {
+            long start = System.currentTimeMillis();
+            T result = (T) readObject(resourceId);
+            Debug.trace("Read " + resourceId + " in " + (System.currentTimeMillis() - start) + " ms");
+            return result;
+        }
+    }
+
+    /**
+     * Reads all packs.
+     */
+    private class PacksReader implements Callable<List<Pack>>
+    {
+        public List<Pack> call() throws Exception
+        {
+            long start = System.currentTimeMillis();
+            InputStream in = resourceManager.getInputStream("packs.info");
+            ObjectInputStream objIn = new ObjectInputStream(in);
+            int size = objIn.readInt();
+            List<Pack> allPacks = new ArrayList<Pack>();
+            for (int i = 0; i < size; i++)
+            {
+                allPacks.add((Pack) objIn.readObject());
+            }
+            objIn.close();
+            Debug.trace("Read packs.info in " + (System.currentTimeMillis() - start) + " ms");
+            return allPacks;
+        }
+    }
+
+    /**
+     * Determines the IP address and the host name, which are empty if they can't be determined.
+     */
+    private static class HostResolver implements Callable<String[]>
+    {
+        public String[] call()
+        {
+            long start = System.currentTimeMillis();
+            String[] host = {"", ""};
+            try
+            {
+                InetAddress addr = InetAddress.getLocalHost();
+                host[0] = addr.getHostAddress();
+                host[1] = addr.getHostName();
+            }
+            catch (Exception e)
+            {
+                Debug.trace("Cannot determine the host name: " + e);
+            }
+            Debug.trace("Resolved the host name in " + (System.currentTimeMillis() - start) + " ms");
+            return host;
+        }
+    }
+
+    /**
+     * Waits for the IP address or the host name determined by the {@link HostResolver}.
+     */
+    private static class HostValue implements Callable<String>
+    {
+        private final Future<String[]> hostResult;
+
+        private final int index;
+
+        HostValue(Future<String[]> hostResult, int index)
+        {
+            this.hostResult = hostResult;
+            this.index = index;
+        }
+
+        public String call() throws Exception
+        {
+            long start = System.currentTimeMillis();
+            String value = hostResult.get()[index];
+            Debug.trace("Waited " + (System.currentTimeMillis() - start) + " ms for the host name");
+            return value;
+        }
     }
 
     /**
@@ -435,7 +623,7 @@ public abstract class AbstractInstallDataProvider implements Provider
         // Loads the suitable langpack
         List<String> availableLangPacks = resourceManager.getAvailableLangPacks();
         String selectedPack = availableLangPacks.get(0);
-        InputStream in = resourceManager.getInputStream("langpacks/" + selectedPack + ".xml");
+        InputStream in = resourceManager.getLangPack(selectedPack);
         automatedInstallData.setAndProcessLocal(selectedPack, new LocaleDatabase(in));
         resourceManager.setLocale(selectedPack);
     }
@@ -34,6 +34,8 @@ public class AutomatedInstallDataProvider extends AbstractInstallDataProvider
             loadDefaultLocale(automatedInstallData);
             loadDynamicVariables(automatedInstallData);
             loadInstallerRequirements(automatedInstallData);
+            recordTiming("langpack, dynamic variables and requirements");
+            reportTimings();
             return automatedInstallData;
         }
         catch (Exception e)
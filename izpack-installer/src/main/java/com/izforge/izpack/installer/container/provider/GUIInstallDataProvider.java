@@ -79,14 +79,18 @@ public class GUIInstallDataProvider extends AbstractInstallDataProvider
         loadGUIInstallData(guiInstallData);
         loadInstallerRequirements(guiInstallData);
         loadDynamicVariables(guiInstallData);
+        recordTiming("GUI prefs, requirements and dynamic variables");
         // Load custom langpack if exist.
         addCustomLangpack(guiInstallData);
         loadDefaultLocale(guiInstallData);
+        recordTiming("langpack");
         loadLookAndFeel(guiInstallData);
         if (UIManager.getColor("Button.background") != null)
         {
             guiInstallData.buttonsHColor = UIManager.getColor("Button.background");
         }
+        recordTiming("look and feel");
+        reportTimings();
         return guiInstallData;
     }
 
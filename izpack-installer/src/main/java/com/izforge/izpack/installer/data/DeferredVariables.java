@@ -0,0 +1,244 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.util.Debug;
+
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Installer variables whose values may be determined when they are first read.
+ * <p/>
+ * A deferred variable is computed by its {@link Callable} once, the first time it is read, or
+ * when the variables are enumerated or serialized. Setting or removing the variable before
+ * discards the deferred value without computing it. The other variables can be read while a
+ * deferred value is computed. The variables are serialized as plain {@link Properties}.
+ */
+public class DeferredVariables extends Properties
+{
+    private static final long serialVersionUID = 2834719548302765123L;
+
+    /**
+     * The values still to be computed by variable name, guarded by this.
+     */
+    private final transient Map<Object, Callable<String>> deferred = new HashMap<Object, Callable<String>>();
+
+    /**
+     * Sets a variable whose value is computed when it is first read.
+     *
+     * @param name  the variable name
+     * @param value computes the value. If it fails, the variable stays unset
+     */
+    public void setDeferred(String name, Callable<String> value)
+    {
+        synchronized (this)
+        {
+            super.remove(name);
+            deferred.put(name, value);
+        }
+    }
+
+    @Override
+    public String getProperty(String key)
+    {
+        resolve(key);
+        return super.getProperty(key);
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        resolve(key);
+        return super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        resolve(key);
+        return super.containsKey(key);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value)
+    {
+        deferred.remove(key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public synchronized Object remove(Object key)
+    {
+        deferred.remove(key);
+        return super.remove(key);
+    }
+
+    @Override
+    public Enumeration<Object> keys()
+    {
+        resolveAll();
+        return super.keys();
+    }
+
+    @Override
+    public Enumeration<Object> elements()
+    {
+        resolveAll();
+        return super.elements();
+    }
+
+    @Override
+    public Set<Object> keySet()
+    {
+        resolveAll();
+        return super.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet()
+    {
+        resolveAll();
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<Object> values()
+    {
+        resolveAll();
+        return super.values();
+    }
+
+    @Override
+    public Enumeration<?> propertyNames()
+    {
+        resolveAll();
+        return super.propertyNames();
+    }
+
+    @Override
+    public Set<String> stringPropertyNames()
+    {
+        resolveAll();
+        return super.stringPropertyNames();
+    }
+
+    @Override
+    public int size()
+    {
+        resolveAll();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        resolveAll();
+        return super.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        resolveAll();
+        return super.toString();
+    }
+
+    /**
+     * Serializes the variables as plain properties, with their deferred values computed.
+     *
+     * @return the properties to serialize
+     * @throws ObjectStreamException never
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        Properties properties = new Properties();
+        for (Map.Entry<Object, Object> entry : entrySet())
+        {
+            properties.put(entry.getKey(), entry.getValue());
+        }
+        return properties;
+    }
+
+    /**
+     * Computes the deferred value of a variable, if any. The value is computed without holding the
+     * lock, so that the other variables can be read meanwhile.
+     *
+     * @param key the variable name
+     */
+    private void resolve(Object key)
+    {
+        Callable<String> value;
+        synchronized (this)
+        {
+            value = deferred.get(key);
+        }
+        if (value == null)
+        {
+            return;
+        }
+        String result = null;
+        try
+        {
+            result = value.call();
+        }
+        catch (Exception e)
+        {
+            Debug.trace("Cannot determine the variable " + key + ": " + e);
+        }
+        synchronized (this)
+        {
+            // unless the variable has been set or computed meanwhile
+            if (deferred.get(key) == value)
+            {
+                deferred.remove(key);
+                if (result != null)
+                {
+                    super.put(key, result);
+                }
+            }
+        }
+    }
+
+    private void resolveAll()
+    {
+        List<Object> keys;
+        synchronized (this)
+        {
+            if (deferred.isEmpty())
+            {
+                return;
+            }
+            keys = new ArrayList<Object>(deferred.keySet());
+        }
+        for (Object key : keys)
+        {
+            resolve(key);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Pack;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The information about an installation, kept in the <tt>.installationinformation</tt> file of
+ * the installation directory so that the installation can be modified later.
+ * <p/>
+ * The file holds the serialized list of installed packs, the installation variables and, if
+ * written by an installer which supports incremental modification, the index of the installed
+ * files of each pack. An entry of the index records the size and the modification time of the
+ * pack file in the installer as well as of the installed file, so that a later installation only
+ * extracts the files which changed since. Files changed by the installation itself, like parsable
+ * and executable files, are always extracted again.
+ */
+public class InstallationInformation
+{
+    private List<Pack> packs;
+
+    private Properties variables;
+
+    /**
+     * The installed files per pack key, mapping the path of each file to its source size, source
+     * modification time, installed size and installed modification time. <tt>null</tt> if the
+     * files were not recorded.
+     */
+    private final HashMap<String, HashMap<String, long[]>> files;
+
+    /**
+     * Constructs installation information without packs and variables.
+     *
+     * @param recordFiles whether the installed files are recorded
+     */
+    public InstallationInformation(boolean recordFiles)
+    {
+        this(new ArrayList<Pack>(), new Properties(),
+             recordFiles ? new HashMap<String, HashMap<String, long[]>>() : null);
+    }
+
+    private InstallationInformation(List<Pack> packs, Properties variables,
+                                    HashMap<String, HashMap<String, long[]>> files)
+    {
+        this.packs = packs;
+        this.variables = variables;
+        this.files = files;
+    }
+
+    /**
+     * Reads the installation information of an installation directory.
+     *
+     * @param installPath the installation directory
+     * @return the installation information, or <tt>null</tt> if there is none
+     * @throws IOException            if the information can't be read
+     * @throws ClassNotFoundException if the information refers to unknown classes
+     */
+    @SuppressWarnings("unchecked")
+    public static InstallationInformation read(String installPath) throws IOException, ClassNotFoundException
+    {
+        File file = getFile(installPath);
+        if (!file.exists())
+        {
+            return null;
+        }
+        ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+        try
+        {
+            List<Pack> packs = (List<Pack>) in.readObject();
+            Properties variables = (Properties) in.readObject();
+            HashMap<String, HashMap<String, long[]>> files = null;
+            try
+            {
+                files = (HashMap<String, HashMap<String, long[]>>) in.readObject();
+            }
+            catch (EOFException e)
+            {
+                // written by an installer which doesn't record the files
+            }
+            catch (OptionalDataException e)
+            {
+                // written by an installer which doesn't record the files
+            }
+            return new InstallationInformation(packs, variables, files);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the installation information into an installation directory.
+     *
+     * @param installPath the installation directory
+     * @throws IOException if the information can't be written
+     */
+    public void write(String installPath) throws IOException
+    {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(getFile(installPath)));
+        try
+        {
+            out.writeObject(packs);
+            out.writeObject(variables);
+            if (files != null)
+            {
+                out.writeObject(files);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the installation information file of an installation directory.
+     *
+     * @param installPath the installation directory
+     * @return the installation information file
+     */
+    public static File getFile(String installPath)
+    {
+        return new File(installPath, AutomatedInstallData.INSTALLATION_INFORMATION);
+    }
+
+    /**
+     * Returns the key identifying a pack across installations, its id if it has one and its
+     * name otherwise.
+     *
+     * @param pack the pack
+     * @return the key of the pack
+     */
+    public static String getKey(Pack pack)
+    {
+        return (pack.id != null && pack.id.length() > 0) ? pack.id : pack.name;
+    }
+
+    /**
+     * Returns the installed packs.
+     *
+     * @return the installed packs
+     */
+    public List<Pack> getPacks()
+    {
+        return packs;
+    }
+
+    /**
+     * Sets the installed packs.
+     *
+     * @param packs the installed packs
+     */
+    public void setPacks(List<Pack> packs)
+    {
+        this.packs = packs;
+    }
+
+    /**
+     * Returns the installation variables.
+     *
+     * @return the installation variables
+     */
+    public Properties getVariables()
+    {
+        return variables;
+    }
+
+    /**
+     * Sets the installation variables.
+     *
+     * @param variables the installation variables
+     */
+    public void setVariables(Properties variables)
+    {
+        this.variables = variables;
+    }
+
+    /**
+     * Determines if the installed files are recorded, so that the installation can be modified
+     * incrementally.
+     *
+     * @return <tt>true</tt> if the installed files are recorded
+     */
+    public boolean hasFiles()
+    {
+        return files != null;
+    }
+
+    /**
+     * Returns the installed files of a pack.
+     *
+     * @param key the pack key
+     * @return the files of the pack, mapped to their source size, source modification time,
+     *         installed size and installed modification time
+     */
+    public Map<String, long[]> getFiles(String key)
+    {
+        Map<String, long[]> result = (files == null) ? null : files.get(key);
+        return (result == null) ? Collections.<String, long[]>emptyMap() : result;
+    }
+
+    /**
+     * Returns the keys of the packs whose files are recorded.
+     *
+     * @return the pack keys
+     */
+    public Set<String> getFilePacks()
+    {
+        return (files == null) ? Collections.<String>emptySet() : files.keySet();
+    }
+
+    /**
+     * Determines if an installed file is up to date: it was installed from a pack file with the
+     * same size and modification time, and it was not changed since.
+     *
+     * @param key          the pack key
+     * @param path         the path of the installed file
+     * @param length       the size of the pack file
+     * @param lastModified the modification time of the pack file
+     * @return <tt>true</tt> if the file doesn't have to be extracted again
+     */
+    public boolean isUpToDate(String key, String path, long length, long lastModified)
+    {
+        long[] record = getFiles(key).get(path);
+        if (record == null || record[0] < 0 || lastModified < 0 || record[0] != length
+                || record[1] != lastModified)
+        {
+            return false;
+        }
+        File file = new File(path);
+        return file.isFile() && file.length() == record[2] && file.lastModified() == record[3];
+    }
+
+    /**
+     * Records an installed file.
+     *
+     * @param key          the pack key
+     * @param path         the path of the installed file
+     * @param length       the size of the pack file
+     * @param lastModified the modification time of the pack file
+     */
+    public void addFile(String key, String path, long length, long lastModified)
+    {
+        getPackFiles(key).put(path, new long[]{length, lastModified, -1, -1});
+    }
+
+    /**
+     * Marks an installed file as changed by the installation itself, e.g. parsed or executed, so
+     * that it is always extracted again.
+     *
+     * @param key  the pack key
+     * @param path the path of the installed file
+     */
+    public void setChanged(String key, String path)
+    {
+        long[] record = getFiles(key).get(path);
+        if (record != null)
+        {
+            record[0] = -1;
+            record[1] = -1;
+        }
+    }
+
+    /**
+     * Records the installed files of a pack of another installation.
+     *
+     * @param key         the pack key
+     * @param information the other installation
+     */
+    public void addFiles(String key, InstallationInformation information)
+    {
+        getPackFiles(key).putAll(information.getFiles(key));
+    }
+
+    /**
+     * Records the size and the modification time of the installed files, once they are final.
+     */
+    public void updateInstalledFiles()
+    {
+        for (HashMap<String, long[]> packFiles : files.values())
+        {
+            for (Map.Entry<String, long[]> entry : packFiles.entrySet())
+            {
+                long[] record = entry.getValue();
+                if (record[2] < 0)
+                {
+                    File file = new File(entry.getKey());
+                    record[2] = file.length();
+                    record[3] = file.lastModified();
+                }
+            }
+        }
+    }
+
+    private HashMap<String, long[]> getPackFiles(String key)
+    {
+        HashMap<String, long[]> packFiles = files.get(key);
+        if (packFiles == null)
+        {
+            packFiles = new HashMap<String, long[]>();
+            files.put(key, packFiles);
+        }
+        return packFiles;
+    }
+}
@@ -19,12 +19,27 @@
 
 package com.izforge.izpack.installer.data;
 
+import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.util.InstallManifest;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 /**
  * Holds uninstallation data.
@@ -33,16 +48,36 @@ import java.util.Map;
  */
 public class UninstallData
 {
+    /**
+     * The maximum number of installed files sorted in memory at once.
+     */
+    static final int SORT_RUN_SIZE = 16384;
+
+    /**
+     * The installed files, spooled to a temporary file as they are added. Each file is written
+     * as a path prefix-compressed against the previous path, followed by the uninstall flag.
+     */
+    private DataOutputStream files;
+
+    /**
+     * The temporary file holding the installed files, or <tt>null</tt> if they are kept in memory.
+     */
+    private File filesSpool;
+
+    /**
+     * The installed files, if they couldn't be spooled to a temporary file.
+     */
+    private ByteArrayOutputStream filesBuffer;
 
     /**
-     * The installed files list.
+     * The path of the last installed file.
      */
-    private List<String> installedFilesList;
+    private byte[] lastFile = new byte[0];
 
     /**
-     * The uninstallable files list.
+     * The number of installed files.
      */
-    private List<String> uninstallableFilesList;
+    private int fileCount;
 
     /**
      * The executables list.
@@ -74,8 +109,6 @@ public class UninstallData
      */
     public UninstallData()
     {
-        installedFilesList = new ArrayList<String>();
-        uninstallableFilesList = new ArrayList<String>();
         executablesList = new ArrayList<ExecutableFile>();
         additionalData = new HashMap<String, Object>();
         unInstallScripts = new ArrayList<String>();
@@ -96,10 +129,21 @@ public class UninstallData
     {
         if (path != null)
         {
-            installedFilesList.add(path);
-            if (uninstall)
+            try
             {
-                uninstallableFilesList.add(path);
+                if (files == null)
+                {
+                    openFiles();
+                }
+                byte[] bytes = path.getBytes("UTF-8");
+                InstallManifest.writePath(files, bytes, lastFile);
+                files.writeBoolean(uninstall);
+                lastFile = bytes;
+                fileCount++;
+            }
+            catch (IOException e)
+            {
+                throw new IzPackException("Failed to record installed file " + path, e);
             }
         }
     }
@@ -107,21 +151,343 @@ public class UninstallData
     /**
      * Returns the installed files list.
      *
-     * @return The installed files list.
+     * @return A copy of the installed files list.
      */
     public List<String> getInstalledFilesList()
     {
-        return installedFilesList;
+        return readFiles(false);
     }
 
     /**
      * Returns the uninstallable files list.
      *
-     * @return The uninstallable files list.
+     * @return A copy of the uninstallable files list.
      */
     public List<String> getUninstalableFilesList()
     {
-        return uninstallableFilesList;
+        return readFiles(true);
+    }
+
+    /**
+     * Receives the installed files.
+     */
+    public interface FileHandler
+    {
+        /**
+         * Handles an installed file.
+         *
+         * @param path      the path of the file
+         * @param uninstall whether the file must be uninstalled
+         */
+        void file(String path, boolean uninstall);
+    }
+
+    /**
+     * Passes the installed files to a handler in the order they were added, without copying them.
+     *
+     * @param handler the handler of the files
+     */
+    public synchronized void visitFiles(final FileHandler handler)
+    {
+        new SpoolReader()
+        {
+            @Override
+            void file(String path, boolean uninstall)
+            {
+                handler.file(path, uninstall);
+            }
+        }.read();
+    }
+
+    /**
+     * Returns the number of files added, including the files added more than once.
+     *
+     * @return the number of files added
+     */
+    public synchronized int getFileCount()
+    {
+        return fileCount;
+    }
+
+    /**
+     * Passes the installed files to a handler sorted by path, each file once. A file added more
+     * than once must be uninstalled if any of its additions must.
+     * <p/>
+     * The files are sorted in runs of at most {@link #SORT_RUN_SIZE} files, spooled to temporary
+     * files and merged, so that the files are never all held in memory.
+     *
+     * @param handler the handler of the files
+     */
+    public synchronized void visitSortedFiles(FileHandler handler)
+    {
+        final List<File> runs = new ArrayList<File>();
+        final TreeMap<String, Boolean> run = new TreeMap<String, Boolean>();
+        try
+        {
+            new SpoolReader()
+            {
+                @Override
+                void file(String path, boolean uninstall)
+                {
+                    Boolean previous = run.put(path, uninstall);
+                    if (previous != null && previous)
+                    {
+                        run.put(path, true);
+                    }
+                    if (run.size() == SORT_RUN_SIZE)
+                    {
+                        runs.add(writeRun(run));
+                        run.clear();
+                    }
+                }
+            }.read();
+            if (runs.isEmpty())
+            {
+                for (Map.Entry<String, Boolean> file : run.entrySet())
+                {
+                    handler.file(file.getKey(), file.getValue());
+                }
+                return;
+            }
+            if (!run.isEmpty())
+            {
+                runs.add(writeRun(run));
+                run.clear();
+            }
+            mergeRuns(runs, handler);
+        }
+        catch (IOException e)
+        {
+            throw new IzPackException("Failed to sort installed files", e);
+        }
+        finally
+        {
+            for (File file : runs)
+            {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a sorted run of installed files to a temporary file.
+     */
+    private static File writeRun(Map<String, Boolean> run)
+    {
+        try
+        {
+            File file = File.createTempFile("izpack-sorted", ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try
+            {
+                out.writeInt(run.size());
+                byte[] previous = new byte[0];
+                for (Map.Entry<String, Boolean> entry : run.entrySet())
+                {
+                    byte[] bytes = entry.getKey().getBytes("UTF-8");
+                    InstallManifest.writePath(out, bytes, previous);
+                    out.writeBoolean(entry.getValue());
+                    previous = bytes;
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            return file;
+        }
+        catch (IOException e)
+        {
+            throw new IzPackException("Failed to sort installed files", e);
+        }
+    }
+
+    /**
+     * Merges sorted runs of installed files.
+     */
+    private static void mergeRuns(List<File> runs, FileHandler handler) throws IOException
+    {
+        PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>(runs.size());
+        try
+        {
+            for (File file : runs)
+            {
+                RunReader reader = new RunReader(file);
+                if (reader.next())
+                {
+                    readers.add(reader);
+                }
+                else
+                {
+                    reader.close();
+                }
+            }
+            while (!readers.isEmpty())
+            {
+                RunReader reader = readers.poll();
+                String path = reader.path;
+                boolean uninstall = reader.uninstall;
+                advance(readers, reader);
+                while (!readers.isEmpty() && readers.peek().path.equals(path))
+                {
+                    reader = readers.poll();
+                    uninstall |= reader.uninstall;
+                    advance(readers, reader);
+                }
+                handler.file(path, uninstall);
+            }
+        }
+        finally
+        {
+            for (RunReader reader : readers)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    private static void advance(PriorityQueue<RunReader> readers, RunReader reader) throws IOException
+    {
+        if (reader.next())
+        {
+            readers.add(reader);
+        }
+        else
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a sorted run of installed files.
+     */
+    private static class RunReader implements Comparable<RunReader>
+    {
+        private final DataInputStream in;
+
+        private int remaining;
+
+        private byte[] previous = new byte[0];
+
+        private String path;
+
+        private boolean uninstall;
+
+        RunReader(File file) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            remaining = in.readInt();
+        }
+
+        boolean next() throws IOException
+        {
+            if (remaining == 0)
+            {
+                return false;
+            }
+            remaining--;
+            previous = InstallManifest.readPath(in, previous);
+            path = new String(previous, "UTF-8");
+            uninstall = in.readBoolean();
+            return true;
+        }
+
+        void close()
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+
+        public int compareTo(RunReader other)
+        {
+            return path.compareTo(other.path);
+        }
+    }
+
+    private synchronized List<String> readFiles(final boolean uninstallOnly)
+    {
+        final List<String> result = new ArrayList<String>(fileCount);
+        new SpoolReader()
+        {
+            @Override
+            void file(String path, boolean uninstall)
+            {
+                if (uninstall || !uninstallOnly)
+                {
+                    result.add(path);
+                }
+            }
+        }.read();
+        return result;
+    }
+
+    private void openFiles()
+    {
+        try
+        {
+            filesSpool = File.createTempFile("izpack-installed", ".tmp");
+            filesSpool.deleteOnExit();
+            files = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filesSpool)));
+        }
+        catch (IOException e)
+        {
+            // keep the installed files in memory
+            filesSpool = null;
+            filesBuffer = new ByteArrayOutputStream();
+            files = new DataOutputStream(filesBuffer);
+        }
+    }
+
+    /**
+     * Reads the installed files back in the order they were added.
+     */
+    private abstract class SpoolReader
+    {
+        abstract void file(String path, boolean uninstall);
+
+        void read()
+        {
+            if (files == null)
+            {
+                return;
+            }
+            InputStream in = null;
+            try
+            {
+                files.flush();
+                in = (filesSpool != null) ? new BufferedInputStream(new FileInputStream(filesSpool))
+                        : new ByteArrayInputStream(filesBuffer.toByteArray());
+                DataInputStream dataIn = new DataInputStream(in);
+                byte[] path = new byte[0];
+                for (int i = 0; i < fileCount; i++)
+                {
+                    path = InstallManifest.readPath(dataIn, path);
+                    file(new String(path, "UTF-8"), dataIn.readBoolean());
+                }
+            }
+            catch (IOException e)
+            {
+                throw new IzPackException("Failed to read installed files", e);
+            }
+            finally
+            {
+                if (in != null)
+                {
+                    try
+                    {
+                        in.close();
+                    }
+                    catch (IOException ignored)
+                    {
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.izforge.izpack.installer.data;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.CompiledLangpack;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.api.rules.RulesEngine;
@@ -9,11 +10,19 @@ import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.Debug;
+import com.izforge.izpack.util.InstallManifest;
+import com.izforge.izpack.util.InstallMetrics;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.PrivilegedRunner;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -22,6 +31,16 @@ public class UninstallDataWriter
 {
     private static final String UNINSTALLER_CONDITION = "UNINSTALLER_CONDITION";
     private static final String LOGFILE_PATH = "InstallerFrame.logfilePath";
+
+    /**
+     * The number of threads computing the fingerprints of the installed files.
+     */
+    private static final int FINGERPRINT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of installed files fingerprinted by a task.
+     */
+    private static final int FINGERPRINT_BATCH_SIZE = 256;
     private VariableSubstitutor variableSubstitutor;
     private UninstallData udata;
     private AutomatedInstallData installdata;
@@ -48,6 +67,7 @@ public class UninstallDataWriter
      */
     public boolean write()
     {
+        long start = InstallMetrics.start();
         try
         {
             if (!isUninstallShouldBeWriten())
@@ -56,8 +76,6 @@ public class UninstallDataWriter
             }
             BufferedWriter extLogWriter = getExternLogFile(installdata);
             createOutputJar();
-            // We get the data
-            List<String> files = udata.getUninstalableFilesList();
 
             if (outJar == null)
             {
@@ -68,7 +86,7 @@ public class UninstallDataWriter
 
             writeJarSkeleton(installdata, pathResolver, outJar);
 
-            writeFilesLog(installdata, extLogWriter, files, outJar);
+            writeFilesLog(installdata, extLogWriter, outJar);
 
             writeUninstallerJarFileLog(udata, outJar);
 
@@ -90,6 +108,10 @@ public class UninstallDataWriter
             err.printStackTrace();
             return false;
         }
+        finally
+        {
+            InstallMetrics.stop("uninstalldata", start);
+        }
     }
 
     public boolean isUninstallShouldBeWriten()
@@ -143,47 +165,209 @@ public class UninstallDataWriter
         return extLogWriter;
     }
 
-    // We write the files log
-
-    private void writeFilesLog(AutomatedInstallData installdata, BufferedWriter extLogWriter, List<String> files, ZipOutputStream outJar) throws IOException
+    /**
+     * Writes the installation manifest, streaming the sorted installed files block by block into
+     * the jar.
+     * <p/>
+     * The size, the modification time and, for the files to uninstall, the checksum of the
+     * installed files are recorded, so that the uninstaller can leave the files modified since in
+     * place. The fingerprints are computed in parallel, a bounded number of batches ahead of the
+     * manifest being written.
+     * <p/>
+     * Files still being written, like the uninstaller jar itself, are recorded without
+     * fingerprint since their final size is unknown: they are uninstalled whatever their content.
+     */
+    private class ManifestWriter implements UninstallData.FileHandler
     {
-        outJar.putNextEntry(new ZipEntry("install.log"));
-        BufferedWriter logWriter = new BufferedWriter(new OutputStreamWriter(outJar));
-        logWriter.write(installdata.getInstallPath());
-        logWriter.newLine();
-        Iterator<String> iter = files.iterator();
-        if (extLogWriter != null)
-        { // Write intern (in uninstaller.jar) and extern log file.
+        private final InstallManifest.Writer manifest;
+
+        private final BufferedWriter extLogWriter;
+
+        private final ExecutorService executor;
+
+        private final LinkedList<Future<List<InstallManifest.Entry>>> pending
+                = new LinkedList<Future<List<InstallManifest.Entry>>>();
+
+        private List<String> paths = new ArrayList<String>(FINGERPRINT_BATCH_SIZE);
 
-            while (iter.hasNext())
+        private List<Boolean> uninstalls = new ArrayList<Boolean>(FINGERPRINT_BATCH_SIZE);
+
+        private boolean first = true;
+
+        /**
+         * The time the fingerprints started to be computed.
+         */
+        private final long started = System.currentTimeMillis();
+
+        private final String uninstallerJar = udata.getUninstallerJarFilename();
+
+        ManifestWriter(InstallManifest.Writer manifest, BufferedWriter extLogWriter)
+        {
+            this.manifest = manifest;
+            this.extLogWriter = extLogWriter;
+            executor = Executors.newFixedThreadPool(FINGERPRINT_THREADS, new ThreadFactory()
             {
-                String txt = iter.next();
-                logWriter.write(txt);
-                extLogWriter.write(txt);
-                if (iter.hasNext())
+                public Thread newThread(Runnable runnable)
                 {
-                    logWriter.newLine();
-                    extLogWriter.newLine();
+                    Thread thread = new Thread(runnable, "IzPack - Fingerprints");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        public void file(String path, boolean uninstall)
+        {
+            try
+            {
+                if (uninstall && extLogWriter != null)
+                {
+                    if (!first)
+                    {
+                        extLogWriter.newLine();
+                    }
+                    extLogWriter.write(path);
+                    first = false;
+                }
+                paths.add(path);
+                uninstalls.add(uninstall);
+                if (paths.size() == FINGERPRINT_BATCH_SIZE)
+                {
+                    submit();
+                    while (pending.size() > FINGERPRINT_THREADS * 2)
+                    {
+                        writeEntries(pending.removeFirst());
+                    }
                 }
             }
-            logWriter.flush();
-            extLogWriter.flush();
-            extLogWriter.close();
+            catch (IOException e)
+            {
+                throw new IzPackException("Failed to write the installed files", e);
+            }
+        }
+
+        /**
+         * Writes the entries left and the end of the manifest.
+         *
+         * @throws IOException if the manifest can't be written
+         */
+        void finish() throws IOException
+        {
+            submit();
+            while (!pending.isEmpty())
+            {
+                writeEntries(pending.removeFirst());
+            }
+            manifest.finish();
         }
-        else
+
+        /**
+         * Stops the fingerprint threads.
+         */
+        void close()
+        {
+            executor.shutdownNow();
+        }
+
+        private void submit()
         {
-            while (iter.hasNext())
+            if (paths.isEmpty())
+            {
+                return;
+            }
+            final List<String> batchPaths = paths;
+            final List<Boolean> batchUninstalls = uninstalls;
+            paths = new ArrayList<String>(FINGERPRINT_BATCH_SIZE);
+            uninstalls = new ArrayList<Boolean>(FINGERPRINT_BATCH_SIZE);
+            pending.add(executor.submit(new Callable<List<InstallManifest.Entry>>()
             {
-                String txt = iter.next();
-                logWriter.write(txt);
-                if (iter.hasNext())
+                public List<InstallManifest.Entry> call()
                 {
-                    logWriter.newLine();
+                    List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>(batchPaths.size());
+                    for (int i = 0; i < batchPaths.size(); i++)
+                    {
+                        entries.add(getFingerprint(batchPaths.get(i), batchUninstalls.get(i)));
+                    }
+                    return entries;
                 }
+            }));
+        }
+
+        /**
+         * Returns the manifest entry of an installed file.
+         *
+         * @param path      the path of the file
+         * @param uninstall whether the file is uninstalled
+         * @return the entry
+         */
+        private InstallManifest.Entry getFingerprint(String path, boolean uninstall)
+        {
+            File installedFile = new File(path);
+            if (path.equals(uninstallerJar) || installedFile.lastModified() >= started)
+            {
+                return new InstallManifest.Entry(path, uninstall);
             }
-            logWriter.flush();
+            Long checksum = null;
+            if (uninstall && installedFile.isFile())
+            {
+                try
+                {
+                    checksum = InstallManifest.checksum(installedFile);
+                }
+                catch (IOException e)
+                {
+                    // the uninstaller compares size and modification time only
+                    Debug.log("Cannot compute checksum of " + installedFile + ": " + e.getMessage());
+                }
+            }
+            return new InstallManifest.Entry(path, uninstall, installedFile.length(), installedFile.lastModified(),
+                    checksum);
+        }
+
+        private void writeEntries(Future<List<InstallManifest.Entry>> future) throws IOException
+        {
+            try
+            {
+                for (InstallManifest.Entry entry : future.get())
+                {
+                    manifest.add(entry);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while computing the file fingerprints");
+            }
+            catch (ExecutionException e)
+            {
+                throw new IzPackException(e.getCause());
+            }
+        }
+    }
+
+    // We write the files log
+
+    private void writeFilesLog(AutomatedInstallData installdata, BufferedWriter extLogWriter, ZipOutputStream outJar) throws IOException
+    {
+        outJar.putNextEntry(new ZipEntry(InstallManifest.RESOURCE));
+        ManifestWriter writer = new ManifestWriter(
+                new InstallManifest.Writer(installdata.getInstallPath(), outJar), extLogWriter);
+        try
+        {
+            udata.visitSortedFiles(writer);
+            writer.finish();
+        }
+        finally
+        {
+            writer.close();
         }
         outJar.closeEntry();
+
+        if (extLogWriter != null)
+        { // Write extern log file.
+            extLogWriter.flush();
+            extLogWriter.close();
+        }
     }
 
 
@@ -397,8 +581,11 @@ public class UninstallDataWriter
             outJar.closeEntry();
         }
 
-        // We put the langpack
-        List<Mergeable> langPack = pathResolver.getMergeableFromPath("resources/langpacks/" + installdata.getLocaleISO3() + ".xml", "langpack.xml");
+        // We put the langpack, compiled if the installer has it so
+        String langpack = "resources/langpacks/" + installdata.getLocaleISO3();
+        String extension = ClassLoader.getSystemResource(langpack + CompiledLangpack.EXTENSION) != null
+                ? CompiledLangpack.EXTENSION : ".xml";
+        List<Mergeable> langPack = pathResolver.getMergeableFromPath(langpack + extension, "langpack" + extension);
         for (Mergeable mergeable : langPack)
         {
             mergeable.merge(outJar);
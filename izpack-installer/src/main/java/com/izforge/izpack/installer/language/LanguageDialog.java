@@ -539,7 +539,7 @@ public class LanguageDialog extends JDialog implements ActionListener, Installer
      */
     private void propagateLocale(String selectedPack) throws Exception
     {
-        InputStream in = resourceManager.getInputStream("langpacks/" + selectedPack + ".xml");
+        InputStream in = resourceManager.getLangPack(selectedPack);
         installdata.setAndProcessLocal(selectedPack, new LocaleDatabase(in));
         resourceManager.setLocale(selectedPack);
     }
@@ -19,6 +19,7 @@ import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.merge.resolve.ResolveUtils;
 import com.izforge.izpack.util.OsConstraintHelper;
 
+import javax.swing.*;
 import java.io.File;
 import java.io.FileFilter;
 import java.lang.reflect.Modifier;
@@ -43,6 +44,11 @@ public class PanelManager
     protected ArrayList<Integer> visiblePanelMapping;
     private PathResolver pathResolver;
 
+    /**
+     * Whether a constructed panel is hidden. Panels only tell whether they are hidden once constructed.
+     */
+    private boolean[] hiddenPanels = new boolean[0];
+
     public PanelManager(GUIInstallData installDataGUI, BindeableContainer installerContainer, PathResolver pathResolver, MergeableResolver mergeableResolver, ClassPathCrawler classPathCrawler) throws ClassNotFoundException
     {
         this.installdata = installDataGUI;
@@ -132,66 +138,251 @@ public class PanelManager
     }
 
     /**
-     * Construct all panels present in the installerContainer.<br />
-     * Executing prebuild, prevalidate, postvalidate and postconstruct actions.
+     * Prepares the panels present in the installerContainer.<br />
+     * The panels are constructed on first access through {@link GUIInstallData#getPanels()}, executing
+     * prebuild, prevalidate, postvalidate and postconstruct actions at that time. Accessing a panel
+     * constructs all panels before it first, so that panels are still constructed in order.
      *
      * @throws ClassNotFoundException
      */
     public void instantiatePanels() throws ClassNotFoundException
     {
         List<Panel> panelsOrder = installdata.getPanelsOrder();
-        int curVisPanelNumber = 0;
-        lastVis = 0;
-        int count = 0;
+        List<Panel> panels = new ArrayList<Panel>();
         for (Panel panel : panelsOrder)
         {
             if (OsConstraintHelper.oneMatchesCurrentSystem(panel.getOsConstraints()))
             {
-                Class<? extends IzPanel> aClass = classPathCrawler.searchClassInClassPath(panel.getClassName());
-                executePreBuildActions(panel);
-                IzPanel izPanel;
-                if (panel.getPanelid() != null)
-                {
-                    izPanel = (IzPanel) installerContainer.getComponent(panel.getPanelid());
-                }
-                else
+                panels.add(panel);
+                // We add the XML installDataGUI izPanel root
+                IXMLElement panelRoot = new XMLElementImpl(panel.getClassName(), installdata.getXmlData());
+                // if set, we add the id as an attribute to the panelRoot
+                String panelId = panel.getPanelid();
+                if (panelId != null)
                 {
-                    izPanel = installerContainer.getComponent(aClass);
+                    panelRoot.setAttribute("id", panelId);
                 }
-                izPanel.setMetadata(panel);
-                String dataValidator = panel.getValidator();
-                if (dataValidator != null)
+                installdata.getXmlData().addChild(panelRoot);
+            }
+        }
+        hiddenPanels = new boolean[panels.size()];
+        installdata.setPanels(new PanelList(panels));
+        updateVisiblePanelMapping();
+    }
+
+    /**
+     * Returns the metadata of a panel, without constructing the panel.
+     *
+     * @param panelNumber the panel number
+     * @return the panel metadata
+     */
+    public Panel getPanelMetadata(int panelNumber)
+    {
+        List panels = installdata.getPanels();
+        if (panels instanceof PanelList)
+        {
+            return ((PanelList) panels).metadata.get(panelNumber);
+        }
+        return ((IzPanel) panels.get(panelNumber)).getMetadata();
+    }
+
+    /**
+     * Constructs the panels up to the given one, in order, if not done yet.
+     *
+     * @param panelNumber the panel number
+     */
+    public void constructPanels(int panelNumber)
+    {
+        if (panelNumber >= 0)
+        {
+            installdata.getPanels().get(panelNumber);
+        }
+    }
+
+    /**
+     * Constructs a panel once the pending events are processed, so that it is ready when it is
+     * shown. Panels are Swing components, so the panel is still constructed on the event dispatch
+     * thread, not in the background.
+     *
+     * @param panelNumber the panel number
+     */
+    public void prefetchPanel(final int panelNumber)
+    {
+        final List panels = installdata.getPanels();
+        if (panels instanceof PanelList && panelNumber >= 0 && panelNumber < panels.size()
+                && panelNumber >= ((PanelList) panels).constructed)
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
                 {
-                    izPanel.setValidationService(DataValidatorFactory.createDataValidator(dataValidator));
+                    try
+                    {
+                        panels.get(panelNumber);
+                    }
+                    catch (Exception e)
+                    {
+                        LOGGER.log(Level.WARNING, "Prefetching panel " + panelNumber + " failed", e);
+                    }
                 }
-                izPanel.setHelpUrl(panel.getHelpUrl(installdata.getLocaleISO3()));
+            });
+        }
+    }
+
+    private IzPanel createPanel(Panel panel)
+    {
+        Class<? extends IzPanel> aClass = classPathCrawler.searchClassInClassPath(panel.getClassName());
+        executePreBuildActions(panel);
+        IzPanel izPanel;
+        if (panel.getPanelid() != null)
+        {
+            izPanel = (IzPanel) installerContainer.getComponent(panel.getPanelid());
+        }
+        else
+        {
+            izPanel = installerContainer.getComponent(aClass);
+        }
+        izPanel.setMetadata(panel);
+        String dataValidator = panel.getValidator();
+        if (dataValidator != null)
+        {
+            izPanel.setValidationService(DataValidatorFactory.createDataValidator(dataValidator));
+        }
+        izPanel.setHelpUrl(panel.getHelpUrl(installdata.getLocaleISO3()));
 
-                preValidateAction(panel, izPanel);
-                postValidateAction(panel, izPanel);
+        preValidateAction(panel, izPanel);
+        postValidateAction(panel, izPanel);
+        return izPanel;
+    }
 
-                installdata.getPanels().add(izPanel);
-                if (izPanel.isHidden())
+    /**
+     * Maps the panel numbers to visible panel numbers. The mapping of a panel is only valid once
+     * the panel is constructed, see {@link #constructPanels(int)}.
+     */
+    private void updateVisiblePanelMapping()
+    {
+        visiblePanelMapping.clear();
+        int curVisPanelNumber = 0;
+        lastVis = 0;
+        for (int count = 0; count < hiddenPanels.length; count++)
+        {
+            if (hiddenPanels[count])
+            {
+                visiblePanelMapping.add(-1);
+            }
+            else
+            {
+                visiblePanelMapping.add(curVisPanelNumber);
+                curVisPanelNumber++;
+                lastVis = count;
+            }
+        }
+        visiblePanelMapping.add(lastVis);
+    }
+
+    /**
+     * The panels of the installer, constructed on first access.
+     */
+    private class PanelList extends AbstractList<IzPanel>
+    {
+        private final List<Panel> metadata;
+
+        private final IzPanel[] created;
+
+        /**
+         * The number of panels constructed so far, always the first ones.
+         */
+        private int constructed = 0;
+
+        PanelList(List<Panel> metadata)
+        {
+            this.metadata = metadata;
+            this.created = new IzPanel[metadata.size()];
+        }
+
+        /**
+         * Returns a panel, constructing it and all panels before it if not done yet.
+         */
+        @Override
+        public IzPanel get(int index)
+        {
+            synchronized (PanelManager.this)
+            {
+                if (index < 0 || index >= created.length)
                 {
-                    visiblePanelMapping.add(count, -1);
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + created.length);
                 }
-                else
+                while (constructed <= index)
                 {
-                    visiblePanelMapping.add(count, curVisPanelNumber);
-                    curVisPanelNumber++;
-                    lastVis = count;
+                    IzPanel izPanel = createPanel(metadata.get(constructed));
+                    created[constructed] = izPanel;
+                    if (izPanel.isHidden())
+                    {
+                        hiddenPanels[constructed] = true;
+                        updateVisiblePanelMapping();
+                    }
+                    constructed++;
                 }
-                count++;
-                // We add the XML installDataGUI izPanel root
-                IXMLElement panelRoot = new XMLElementImpl(panel.getClassName(), installdata.getXmlData());
-                // if set, we add the id as an attribute to the panelRoot
-                String panelId = panel.getPanelid();
-                if (panelId != null)
+                return created[index];
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            return created.length;
+        }
+
+        /**
+         * Searches the constructed panels only, as a panel not constructed yet can't be passed.
+         */
+        @Override
+        public int indexOf(Object o)
+        {
+            synchronized (PanelManager.this)
+            {
+                for (int i = 0; i < created.length; i++)
                 {
-                    panelRoot.setAttribute("id", panelId);
+                    if (created[i] != null && created[i].equals(o))
+                    {
+                        return i;
+                    }
                 }
-                installdata.getXmlData().addChild(panelRoot);
+                return -1;
             }
-            visiblePanelMapping.add(count, lastVis);
+        }
+
+        @Override
+        public int lastIndexOf(Object o)
+        {
+            synchronized (PanelManager.this)
+            {
+                for (int i = created.length - 1; i >= 0; i--)
+                {
+                    if (created[i] != null && created[i].equals(o))
+                    {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder result = new StringBuilder("[");
+            for (int i = 0; i < metadata.size(); i++)
+            {
+                result.append(i == 0 ? "" : ", ").append(metadata.get(i).getClassName());
+            }
+            return result.append(']').toString();
         }
     }
 
@@ -240,16 +431,28 @@ public class PanelManager
 
     public boolean isVisible(int panelNumber)
     {
+        constructPanels(panelNumber);
         return !(visiblePanelMapping.get(panelNumber) == -1);
     }
 
     public boolean isLast(int panelNumber)
     {
-        return (visiblePanelMapping.get(installdata.getPanels().size()) == panelNumber);
+        // only construct the following panels until a visible one is found
+        int size = installdata.getPanels().size();
+        for (int i = panelNumber + 1; i < size; i++)
+        {
+            if (isVisible(i))
+            {
+                return false;
+            }
+        }
+        constructPanels(panelNumber);
+        return (visiblePanelMapping.get(size) == panelNumber);
     }
 
     public int getPanelVisibilityNumber(int panel)
     {
+        constructPanels(panel);
         return visiblePanelMapping.get(panel);
     }
 
@@ -259,9 +462,25 @@ public class PanelManager
 //        installerContainer.addComponent(AbstractUIHandler.class, abstractUIHandlerInContainer);
     }
 
-    public int getCountVisiblePanel()
+    /**
+     * Returns the visibility number of the last visible panel, that is the number of visible panels
+     * minus one. The panels not constructed yet are counted as visible, as they only tell whether
+     * they are hidden once constructed, so the count decreases when such a panel turns out to be
+     * hidden.
+     *
+     * @return the number of visible panels minus one
+     */
+    public synchronized int getCountVisiblePanel()
     {
-        return lastVis;
+        int hidden = 0;
+        for (boolean hiddenPanel : hiddenPanels)
+        {
+            if (hiddenPanel)
+            {
+                hidden++;
+            }
+        }
+        return installdata.getPanels().size() - hidden - 1;
     }
 
     public IUnpacker getUnpacker(AbstractUIProgressHandler listener)
@@ -79,8 +79,6 @@ public class MultiVolumeInstaller
             {
                 long maxmem = Runtime.getRuntime().maxMemory() / (1024 * 1024);
                 Debug.trace("Currently using maximum memory of " + maxmem + "m");
-                // just use a static fraction of memory for perm gen size.
-                long maxpermgensize = maxmem / 4;
 
                 Class<MultiVolumeInstaller> clazz = MultiVolumeInstaller.class;
                 Method target = clazz.getMethod("install", new Class[]{String[].class});
@@ -89,13 +87,11 @@ public class MultiVolumeInstaller
 
                 // try to find the directory, where the jar file is located, this class was loaded
                 // from
-//                newargs[0] = "-Xmx" + maxmem + "m";
-//                newargs[1] = "-XX:MaxPermSize=" + maxpermgensize + "m";               
                 newargs[0] = "-mediadir";
                 newargs[1] = SelfModifier.findJarFile(clazz).getParent();
                 System.out.println("Setting mediadir: " + newargs[1]);
                 MultiVolumeInstaller.setMediadirectory(newargs[1]);
-                new SelfModifier(target, maxmem, maxpermgensize).invoke(newargs);
+                new SelfModifier(target, maxmem).invoke(newargs);
 
             }
             catch (Exception e)
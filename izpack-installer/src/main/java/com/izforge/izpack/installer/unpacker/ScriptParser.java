@@ -23,6 +23,7 @@ package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.InstallMetrics;
 import com.izforge.izpack.util.OsConstraintHelper;
 
 import java.io.*;
@@ -66,6 +67,19 @@ public class ScriptParser
      * @throws Exception Description of the Exception
      */
     public void parseFiles() throws Exception
+    {
+        long start = InstallMetrics.start();
+        try
+        {
+            parse();
+        }
+        finally
+        {
+            InstallMetrics.stop("parsables", start);
+        }
+    }
+
+    private void parse() throws Exception
     {
         // Parses the files
         for (ParsableFile pfile : files)
@@ -104,6 +118,7 @@ public class ScriptParser
             {
                 throw new IOException("Could not rename file " + parsedFile + " to " + file);
             }
+            InstallMetrics.count("parsables.files", 1);
         }
     }
 }
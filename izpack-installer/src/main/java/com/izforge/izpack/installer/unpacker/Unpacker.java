@@ -75,6 +75,7 @@ public class Unpacker extends UnpackerBase
     public void run()
     {
         addToInstances();
+        InstallMetrics.begin("install");
         try
         {
             //
@@ -86,13 +87,20 @@ public class Unpacker extends UnpackerBase
             ArrayList<UpdateCheck> updatechecks = new ArrayList<UpdateCheck>();
             List<Pack> packs = idata.getSelectedPacks();
             int npacks = packs.size();
-            handler.startAction("Unpacking", npacks);
+            loadInstallationInformation();
+            progress.startAction("Unpacking", npacks);
             // Custom action listener stuff --- load listeners ----
             List<InstallerListener> customActions = idata.getInstallerListener();
             // Custom action listener stuff --- beforePacks ----
             informListeners(customActions, InstallerListener.BEFORE_PACKS, idata, npacks, handler);
             packs = idata.getSelectedPacks();
             npacks = packs.size();
+            long totalBytes = 0;
+            for (Pack pack : packs)
+            {
+                totalBytes += pack.nbytes;
+            }
+            progress.setTotalBytes(totalBytes);
 
             // We unpack the selected packs
             for (int i = 0; i < npacks; i++)
@@ -100,6 +108,7 @@ public class Unpacker extends UnpackerBase
                 // We get the pack stream
                 //int n = installData.allPacks.indexOf(packs.get(i));
                 Pack p = packs.get(i);
+                long packStart = InstallMetrics.start();
 
                 // evaluate condition
                 if (p.hasCondition())
@@ -145,11 +154,13 @@ public class Unpacker extends UnpackerBase
                     // hide the pack name if pack is hidden
                     stepname = "";
                 }
-                handler.nextStep(stepname, i + 1, nfiles);
+                progress.nextStep(stepname, i + 1, nfiles);
+                Debug.event(LogEvent.Type.PACK, pack.name, "installing");
                 for (int j = 0; j < nfiles; j++)
                 {
                     // We read the header
                     PackFile pf = (PackFile) objIn.readObject();
+                    progress.addBytes(pf.size());
                     // TODO: reaction if condition can not be checked
                     if (pf.hasCondition() && (rules != null))
                     {
@@ -166,7 +177,7 @@ public class Unpacker extends UnpackerBase
                     if (OsConstraintHelper.oneMatchesCurrentSystem(pf.osConstraints()))
                     {
                         // We translate & build the path
-                        String path = IoHelper.translatePath(pf.getTargetPath(), variableSubstitutor);
+                        String path = translatePath(pf.getTargetPath());
                         File pathFile = new File(path);
                         File dest = pathFile;
                         if (!pf.isDirectory())
@@ -184,11 +195,25 @@ public class Unpacker extends UnpackerBase
                             continue;
                         }
 
+                        if (addInstalledFile(pack, path, pf))
+                        {
+                            // unchanged since the installation being modified
+                            Debug.event(LogEvent.Type.FILE, path, "unchanged");
+                            InstallMetrics.count("unpack.unchanged", 1);
+                            skipFile(pf, pack, objIn);
+                            // the file is in place as if it was extracted
+                            informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile,
+                                    pf, null);
+                            informListeners(customActions, InstallerListener.AFTER_FILE, pathFile,
+                                    pf, null);
+                            continue;
+                        }
+
                         // Custom action listener stuff --- beforeFile ----
                         informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile, pf,
                                 null);
 
-                        handler.progress(j, path);
+                        progress.progress(j, path);
 
                         // if this file exists and should not be overwritten,
                         // check
@@ -197,17 +222,8 @@ public class Unpacker extends UnpackerBase
                         {
                             if (!isOverwriteFile(pf, pathFile))
                             {
-                                if (!pf.isBackReference() && !(packs.get(i)).loose)
-                                {
-                                    if (pf.isPack200Jar())
-                                    {
-                                        objIn.skip(Integer.SIZE / 8);
-                                    }
-                                    else
-                                    {
-                                        objIn.skip(pf.length());
-                                    }
-                                }
+                                Debug.event(LogEvent.Type.FILE, path, "kept existing file");
+                                skipFile(pf, pack, objIn);
                                 continue;
                             }
 
@@ -255,9 +271,8 @@ public class Unpacker extends UnpackerBase
                             else
                             {
                                 //file not found
-                                //issue a warning (logging api pending)
                                 //since this file was loosely bundled, we continue with the installation.
-                                System.out.println("Could not find loosely bundled file: " + pf.getRelativeSourcePath());
+                                Debug.event(LogEvent.Type.FILE, pf.getRelativeSourcePath(), "loosely bundled file not found");
                                 if (!handler.emitWarning("File not found", "Could not find loosely bundled file: " + pf.getRelativeSourcePath()))
                                 {
                                     throw new InstallerException("Installation cancelled");
@@ -317,6 +332,9 @@ public class Unpacker extends UnpackerBase
                         handleTimeStamp( pf, pathFile, tmpFile);
 
                         fq = handleBlockable(pf, pathFile, tmpFile, fq, customActions);
+                        Debug.event(LogEvent.Type.FILE, path, "installed");
+                        InstallMetrics.count("unpack.files", 1);
+                        InstallMetrics.count("unpack.bytes", pf.length());
                     }
                     else
                     {
@@ -340,11 +358,17 @@ public class Unpacker extends UnpackerBase
                             continue;
                         }
                     }
-                    pf.path = IoHelper.translatePath(pf.path, variableSubstitutor);
+                    pf.path = translatePath(pf.path);
                     parsables.add(pf);
+                    setInstalledFileChanged(pack, pf.path);
                 }
 
+                int firstExecutable = executables.size();
                 loadExecutables(objIn, executables);
+                for (int k = firstExecutable; k < executables.size(); k++)
+                {
+                    setInstalledFileChanged(pack, executables.get(k).path);
+                }
 
                 // Custom action listener stuff --- uninstall data ----
 //                handleAdditionalUninstallData(udata, customActions);
@@ -366,6 +390,9 @@ public class Unpacker extends UnpackerBase
                     return;
                 }
 
+                Debug.event(LogEvent.Type.PACK, pack.name, "installed");
+                recordPackMetrics(pack, packStart);
+
                 // Custom action listener stuff --- afterPack ----
                 informListeners(customActions, InstallerListener.AFTER_PACK, packs.get(i),
                         i, handler);
@@ -379,6 +406,8 @@ public class Unpacker extends UnpackerBase
                 idata.setRebootNecessary(fq.isRebootNecessary());
             }
 
+            removeObsoleteFiles();
+
             // We use the scripts parser
             ScriptParser parser = new ScriptParser(parsables, variableSubstitutor);
             parser.parseFiles();
@@ -418,8 +447,8 @@ public class Unpacker extends UnpackerBase
             // write installation information
             writeInstallationInformation();
 
-            // The end :-)
-            handler.stopAction();
+            // The end :-), showing the progress of the last files first
+            progress.stopAction();
         }
         catch (Exception err)
         {
@@ -448,6 +477,29 @@ public class Unpacker extends UnpackerBase
         }
     }
 
+    /**
+     * Skips the content of a pack file which is not extracted.
+     *
+     * @param pf    the pack file
+     * @param pack  the pack of the file
+     * @param objIn the pack stream
+     * @throws IOException if the stream can't be read
+     */
+    private void skipFile(PackFile pf, Pack pack, ObjectInputStream objIn) throws IOException
+    {
+        if (!pf.isBackReference() && !pack.loose)
+        {
+            if (pf.isPack200Jar())
+            {
+                objIn.skip(Integer.SIZE / 8);
+            }
+            else
+            {
+                objIn.skip(pf.length());
+            }
+        }
+    }
+
     private Pack200.Unpacker getPack200Unpacker()
     {
         if (unpacker == null)
@@ -30,8 +30,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
@@ -44,14 +48,19 @@ import com.izforge.izpack.api.event.InstallerListener;
 import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.SubstitutionTemplate;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.api.unpacker.IDiscardInterruptable;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.installer.data.InstallationInformation;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.util.Debug;
+import com.izforge.izpack.util.InstallMetrics;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsVersion;
+import com.izforge.izpack.util.ThrottledProgressHandler;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.GlobPatternMapper;
 import com.izforge.izpack.util.file.types.FileSet;
@@ -75,6 +84,12 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
      */
     protected AbstractUIProgressHandler handler;
 
+    /**
+     * The progress handler forwarding to {@link #handler}, which passes the progress of each file
+     * on at most once every {@link ThrottledProgressHandler#DEFAULT_INTERVAL} milliseconds.
+     */
+    protected ThrottledProgressHandler progress;
+
     /**
      * The uninstallation data.
      */
@@ -126,6 +141,37 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     protected ResourceManager resourceManager;
     protected VariableSubstitutor variableSubstitutor;
 
+    /**
+     * The directory parts of the translated paths, by their untranslated value.
+     */
+    private final Map<String, TranslatedDirectory> translatedDirectories = new HashMap<String, TranslatedDirectory>();
+
+    /**
+     * The directories which are known to exist, because they have been created or checked before.
+     */
+    private final Set<File> existingDirectories = new HashSet<File>();
+
+    /**
+     * The files installed by this installation, or <tt>null</tt> if they are not recorded.
+     */
+    protected InstallationInformation installedFiles;
+
+    /**
+     * The installation being modified, if its files are recorded, <tt>null</tt> otherwise.
+     */
+    protected InstallationInformation previousInstallation;
+
+    /**
+     * The time spent reading, that is decompressing, and writing file contents since the last
+     * {@link #recordPackMetrics}, in nanoseconds.
+     */
+    private long readNanos, writeNanos;
+
+    /**
+     * The timer names of the listeners, by listener class.
+     */
+    private final Map<Class<?>, String> listenerTimers = new HashMap<Class<?>, String>();
+
     /**
      * The constructor.
      *
@@ -149,6 +195,65 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
         this.rules = rules;
     }
 
+    /**
+     * Translates a path like {@link IoHelper#translatePath(String, VariableSubstitutor)} does.
+     * <p/>
+     * The directory part of the path is compiled only once, and its translation is reused as long
+     * as the referenced variables keep their values. So translating the paths of many files in the
+     * same directory neither parses nor converts the common prefix over and over again.
+     *
+     * @param path the path to translate
+     * @return the translated path
+     */
+    protected String translatePath(String path)
+    {
+        int split = path.lastIndexOf('/');
+        // the file name may only be split off if it can't be part of a variable reference
+        // and is not subject to slash masking
+        if (split < 0 || path.indexOf('$', split) >= 0 || path.indexOf('}', split) >= 0
+                || path.indexOf('\\', split) >= 0 || path.indexOf('~', split) >= 0)
+        {
+            split = path.length();
+        }
+        String directory = path.substring(0, split);
+        TranslatedDirectory translated = translatedDirectories.get(directory);
+        if (translated == null)
+        {
+            translated = new TranslatedDirectory(variableSubstitutor.compile(directory, SubstitutionType.TYPE_PLAIN));
+            translatedDirectories.put(directory, translated);
+        }
+        String substituted = translated.template.substitute();
+        if (split == path.length() || substituted.endsWith("\\"))
+        {
+            // a trailing backslash would mask the following slash
+            return IoHelper.translateSeparators(substituted + path.substring(split));
+        }
+        if (!substituted.equals(translated.substituted))
+        {
+            // first use, or a variable has changed since
+            translated.substituted = substituted;
+            translated.path = IoHelper.translateSeparators(substituted);
+        }
+        return translated.path + path.substring(split).replace('/', File.separatorChar);
+    }
+
+    /**
+     * A directory path compiled into a substitution template, together with its last translation.
+     */
+    private static class TranslatedDirectory
+    {
+        private final SubstitutionTemplate template;
+
+        private String substituted;
+
+        private String path;
+
+        TranslatedDirectory(SubstitutionTemplate template)
+        {
+            this.template = template;
+        }
+    }
+
     /**
      * Returns a copy of the active unpacker instances.
      *
@@ -328,6 +433,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
             {
                 return;
             }
+            long start = InstallMetrics.start();
             switch (action)
             {
                 case InstallerListener.BEFORE_FILE:
@@ -343,6 +449,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                     installerListener.afterDir(file, packFile);
                     break;
             }
+            recordListenerMetrics(installerListener, start);
         }
     }
 
@@ -351,6 +458,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     {
         for (InstallerListener customAction : customActions)
         {
+            long start = InstallMetrics.start();
             switch (action)
             {
                 case InstallerListener.BEFORE_PACK:
@@ -362,6 +470,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                             abstractUIProgressHandler);
                     break;
             }
+            recordListenerMetrics(customAction, start);
         }
     }
 
@@ -370,6 +479,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     {
         for (InstallerListener customAction : customActions)
         {
+            long start = InstallMetrics.start();
             switch (action)
             {
                 case InstallerListener.BEFORE_PACKS:
@@ -379,7 +489,51 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                     customAction.afterPacks(pack, abstractUIProgressHandler);
                     break;
             }
+            recordListenerMetrics(customAction, start);
+        }
+    }
+
+    /**
+     * Adds the time spent in a listener to the metrics.
+     *
+     * @param listener the listener
+     * @param start    the time the listener was called at
+     */
+    private void recordListenerMetrics(InstallerListener listener, long start)
+    {
+        if (!InstallMetrics.isEnabled())
+        {
+            return;
+        }
+        String name = listenerTimers.get(listener.getClass());
+        if (name == null)
+        {
+            name = "listener." + listener.getClass().getName();
+            listenerTimers.put(listener.getClass(), name);
+        }
+        InstallMetrics.stop(name, start);
+    }
+
+    /**
+     * Adds the time spent unpacking a pack to the metrics, along with the time spent reading and
+     * writing its files.
+     *
+     * @param pack  the pack
+     * @param start the time the pack was started at
+     */
+    protected void recordPackMetrics(Pack pack, long start)
+    {
+        if (!InstallMetrics.isEnabled())
+        {
+            return;
         }
+        long elapsed = System.nanoTime() - start;
+        InstallMetrics.record("unpack", elapsed);
+        InstallMetrics.record("pack." + pack.name, elapsed);
+        InstallMetrics.record("unpack.read", readNanos);
+        InstallMetrics.record("unpack.write", writeNanos);
+        readNanos = 0;
+        writeNanos = 0;
     }
 
     /**
@@ -472,13 +626,13 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     {
         if (updatechecks != null && updatechecks.size() > 0)
         {
+            long start = InstallMetrics.start();
+            File installDir = new File(idata.getInstallPath()).getAbsoluteFile();
             FileSet fileset = new FileSet();
-            ArrayList<File> files_to_delete = new ArrayList<File>();
-            ArrayList<File> dirs_to_delete = new ArrayList<File>();
 
             try
             {
-                fileset.setDir(new File(idata.getInstallPath()).getAbsoluteFile());
+                fileset.setDir(installDir);
 
                 for (UpdateCheck uc : updatechecks)
                 {
@@ -498,73 +652,158 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                         }
                     }
                 }
-                DirectoryScanner ds = fileset.getDirectoryScanner();
-                ds.scan();
-                String[] srcFiles = ds.getIncludedFiles();
-                String[] srcDirs = ds.getIncludedDirectories();
-
-                TreeSet<File> installed_files = new TreeSet<File>();
-
-                for (String fname : this.udata.getInstalledFilesList())
-                {
-                    File f = new File(fname);
-
-                    if (!f.isAbsolute())
-                    {
-                        f = new File(this.absolute_installpath, fname);
-                    }
-
-                    installed_files.add(f);
-                }
-                for (int i = 0; i < srcFiles.length; i++)
-                {
-                    File newFile = new File(ds.getBasedir(), srcFiles[i]);
-
-                    // skip files we just installed
-                    if (installed_files.contains(newFile))
-                    {
-                        continue;
-                    }
-                    else
-                    {
-                        files_to_delete.add(newFile);
-                    }
-                }
-                for (int i = 0; i < srcDirs.length; i++)
-                {
-                    File newDir = new File(ds.getBasedir(), srcDirs[i]);
-
-                    // skip directories we just installed
-                    if (installed_files.contains(newDir))
-                    {
-                        continue;
-                    }
-                    else
-                    {
-                        dirs_to_delete.add(newDir);
-                    }
-                }
+                DirectoryScanner ds = new DirectoryScanner();
+                fileset.setupDirectoryScanner(ds);
+                ds.setFollowSymlinks(fileset.isFollowSymlinks());
+                new UpdateChecker(udata, installDir).deleteStaleFiles(ds);
             }
             catch (Exception e)
             {
                 this.handler.emitError("Error while performing update checks", e.getMessage());
             }
+            finally
+            {
+                InstallMetrics.stop("updatechecks", start);
+            }
+        }
+    }
 
-            for (File f : files_to_delete)
+    /**
+     * Starts recording the installed files. If an installation whose files were recorded is
+     * modified, its information is loaded so that unchanged files are not extracted again and
+     * the files of the packs which are not installed anymore are removed.
+     *
+     * @throws IOException            if the information of the modified installation can't be read
+     * @throws ClassNotFoundException if the information of the modified installation is invalid
+     */
+    protected void loadInstallationInformation() throws IOException, ClassNotFoundException
+    {
+        if (!idata.getInfo().isWriteInstallationInformation())
+        {
+            return;
+        }
+        installedFiles = new InstallationInformation(true);
+        if (Boolean.valueOf(idata.getVariable(AutomatedInstallData.MODIFY_INSTALLATION)))
+        {
+            InstallationInformation information = InstallationInformation.read(idata.getInstallPath());
+            if (information != null && information.hasFiles())
             {
-                f.delete();
+                Debug.trace("modifying installation incrementally");
+                previousInstallation = information;
             }
-            for (File d : dirs_to_delete)
+        }
+    }
+
+    /**
+     * Records an installed file and determines if it is up to date, that is if the modified
+     * installation installed the same pack file and the file was not changed since.
+     *
+     * @param pack the pack of the file
+     * @param path the path of the installed file
+     * @param pf   the pack file
+     * @return <tt>true</tt> if the file doesn't have to be extracted
+     */
+    protected boolean addInstalledFile(Pack pack, String path, PackFile pf)
+    {
+        if (installedFiles == null)
+        {
+            return false;
+        }
+        String key = InstallationInformation.getKey(pack);
+        installedFiles.addFile(key, path, pf.length(), pf.lastModified());
+        return previousInstallation != null
+                && previousInstallation.isUpToDate(key, path, pf.length(), pf.lastModified());
+    }
+
+    /**
+     * Records that an installed file is changed by the installation, e.g. parsed or executed, so
+     * that a later modification of the installation extracts it again.
+     *
+     * @param pack the pack of the file
+     * @param path the path of the installed file
+     */
+    protected void setInstalledFileChanged(Pack pack, String path)
+    {
+        if (installedFiles != null)
+        {
+            installedFiles.setChanged(InstallationInformation.getKey(pack), path);
+        }
+    }
+
+    /**
+     * Removes the files of the modified installation which are not installed anymore, because
+     * their pack was deselected or they were removed from their pack. Packs unknown to this
+     * installer are kept. Directories emptied by the removal are removed up to the installation
+     * path.
+     * <p/>
+     * The installer listeners are not informed, as there is no pack file for a removed file.
+     */
+    protected void removeObsoleteFiles()
+    {
+        if (previousInstallation == null)
+        {
+            return;
+        }
+        Set<String> installed = new HashSet<String>();
+        for (String key : installedFiles.getFilePacks())
+        {
+            installed.addAll(installedFiles.getFiles(key).keySet());
+        }
+        Set<String> known = getPackKeys(idata.getAvailablePacks());
+        TreeSet<File> obsolete = new TreeSet<File>(Collections.reverseOrder());
+        for (String key : previousInstallation.getFilePacks())
+        {
+            if (known.contains(key))
             {
-                // Only empty directories will be deleted
-                d.delete();
+                for (String path : previousInstallation.getFiles(key).keySet())
+                {
+                    if (!installed.contains(path))
+                    {
+                        obsolete.add(new File(path));
+                    }
+                }
             }
         }
+        File installPath = new File(idata.getInstallPath()).getAbsoluteFile();
+        for (File file : obsolete)
+        {
+            Debug.trace("removing obsolete file " + file);
+            file.delete();
+            removeEmptyDirectories(file.getAbsoluteFile().getParentFile(), installPath);
+        }
     }
 
     /**
-     * Writes information about the installed packs and the variables at
-     * installation time.
+     * Removes a directory and its parents as long as they are empty, stopping at the given root
+     * directory which is kept. Nothing is removed if the directory is not below the root.
+     *
+     * @param dir  the directory to remove
+     * @param root the directory to stop at
+     */
+    protected static void removeEmptyDirectories(File dir, File root)
+    {
+        String prefix = root.getPath();
+        if (!prefix.endsWith(File.separator))
+        {
+            prefix += File.separator;
+        }
+        if (dir == null || !dir.getPath().startsWith(prefix))
+        {
+            return;
+        }
+        // only empty directories are removed
+        while (dir != null && !dir.equals(root) && dir.delete())
+        {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /**
+     * Writes information about the installed packs, the variables at installation time and the
+     * installed files if they are recorded.
+     * <p/>
+     * The packs of an existing installation are kept, unless this installer knows them and
+     * modifies the installation incrementally.
      *
      * @throws IOException
      * @throws ClassNotFoundException
@@ -580,46 +819,48 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
         String installdir = idata.getInstallPath();
 
         List<Pack> installedpacks = new ArrayList<Pack>(idata.getSelectedPacks());
-
-        File installationinfo = new File(installdir + File.separator + AutomatedInstallData.INSTALLATION_INFORMATION);
-        if (!installationinfo.exists())
-        {
-            Debug.trace("creating info file" + installationinfo.getAbsolutePath());
-            installationinfo.createNewFile();
-        }
-        else
+        Set<String> keys = getPackKeys(installedpacks);
+        Set<String> known = (previousInstallation != null) ? getPackKeys(idata.getAvailablePacks())
+                : Collections.<String>emptySet();
+
+        InstallationInformation information = (installedFiles != null) ? installedFiles
+                : new InstallationInformation(false);
+        InstallationInformation existing = InstallationInformation.read(installdir);
+        if (existing != null)
         {
             Debug.trace("installation information found");
-            // read in old information and update
-            FileInputStream fin = new FileInputStream(installationinfo);
-            ObjectInputStream oin = new ObjectInputStream(fin);
-
-            List<Pack> packs = (List<Pack>) oin.readObject();
-            for (Pack pack1 : packs)
+            // keep the packs installed before
+            for (Pack pack : existing.getPacks())
             {
-                Pack pack = pack1;
-                installedpacks.add(pack);
+                String key = InstallationInformation.getKey(pack);
+                if (!known.contains(key) && keys.add(key))
+                {
+                    installedpacks.add(pack);
+                    if (installedFiles != null)
+                    {
+                        installedFiles.addFiles(key, existing);
+                    }
+                }
             }
-            oin.close();
-            fin.close();
-
         }
-
-        FileOutputStream fout = new FileOutputStream(installationinfo);
-        ObjectOutputStream oout = new ObjectOutputStream(fout);
-        oout.writeObject(installedpacks);
-        /*
-        int selectedpackscount = installData.selectedPacks.size();
-        for (int i = 0; i < selectedpackscount; i++)
+        if (installedFiles != null)
         {
-            Pack pack = (Pack) installData.selectedPacks.get(i);
-            oout.writeObject(pack);
+            installedFiles.updateInstalledFiles();
         }
-        */
-        oout.writeObject(idata.getVariables());
+        information.setPacks(installedpacks);
+        information.setVariables(idata.getVariables());
+        information.write(installdir);
         Debug.trace("done.");
-        oout.close();
-        fout.close();
+    }
+
+    private static Set<String> getPackKeys(List<Pack> packs)
+    {
+        Set<String> keys = new HashSet<String>();
+        for (Pack pack : packs)
+        {
+            keys.add(InstallationInformation.getKey(pack));
+        }
+        return keys;
     }
 
     protected File getAbsolutInstallSource() throws Exception
@@ -651,10 +892,16 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     public void setHandler(AbstractUIProgressHandler handler)
     {
         this.handler = handler;
+        this.progress = new ThrottledProgressHandler(handler);
     }
 
     protected void handleMkDirs(PackFile pf, File dest) throws Exception
     {
+        // many files share a directory, so don't ask the file system over and over again
+        if (existingDirectories.contains(dest))
+        {
+            return;
+        }
         if (!dest.exists())
         {
             // If there are custom actions which would be called
@@ -678,6 +925,10 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                 }
             }
         }
+        for (File dir = dest; dir != null && existingDirectories.add(dir); dir = dir.getParentFile())
+        {
+            // the parents exist as well
+        }
     }
 
     protected long writeBuffer(PackFile pf, byte[] buffer,
@@ -685,12 +936,20 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
     throws IOException
     {
         int maxBytes = (int) Math.min(pf.length() - bytesCopied, buffer.length);
+        boolean measure = InstallMetrics.isEnabled();
+        long start = measure ? System.nanoTime() : 0;
         int bytesInBuffer = pis.read(buffer, 0, maxBytes);
+        long read = measure ? System.nanoTime() : 0;
+        readNanos += read - start;
         if (bytesInBuffer == -1)
         {
             throw new IOException("Unexpected end of stream (installer corrupted?)");
         }
         out.write(buffer, 0, bytesInBuffer);
+        if (measure)
+        {
+            writeNanos += System.nanoTime() - read;
+        }
         bytesCopied += bytesInBuffer;
 
         return bytesCopied;
@@ -849,7 +1108,7 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
                     continue;
                 }
             }
-            ef.path = IoHelper.translatePath(ef.path, variableSubstitutor);
+            ef.path = translatePath(ef.path);
             if (null != ef.argList && !ef.argList.isEmpty())
             {
                 String arg = null;
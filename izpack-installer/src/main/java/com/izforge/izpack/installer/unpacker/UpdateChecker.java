@@ -0,0 +1,265 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.util.OsVersion;
+import com.izforge.izpack.util.file.DirectoryScanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Deletes the files matched by the update checks which were not installed.
+ * <p/>
+ * The installation directory is walked with a streaming scan, and each file found is looked up
+ * in a compact set holding a 64 bit hash of each installed path, instead of a set of the paths.
+ * A hash collision can only keep a stale file. Stale files are deleted concurrently while the
+ * scan goes on, stale directories are deleted once they are emptied.
+ */
+public class UpdateChecker
+{
+    /**
+     * The number of threads deleting files.
+     */
+    private static final int DELETE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of files deleted by a single task.
+     */
+    private static final int DELETE_BATCH_SIZE = 256;
+
+    /**
+     * The hashes of the installed paths, in an open addressing table. Zero marks empty slots.
+     */
+    private final long[] installed;
+
+    /**
+     * Constructs an update checker.
+     *
+     * @param udata      the installed files
+     * @param installDir the installation directory, to resolve relative paths
+     */
+    public UpdateChecker(UninstallData udata, final File installDir)
+    {
+        int capacity = 16;
+        while (capacity < udata.getFileCount() * 2)
+        {
+            capacity <<= 1;
+        }
+        installed = new long[capacity];
+        udata.visitFiles(new UninstallData.FileHandler()
+        {
+            public void file(String path, boolean uninstall)
+            {
+                File file = new File(path);
+                if (!file.isAbsolute())
+                {
+                    file = new File(installDir, path);
+                }
+                add(hash(file));
+            }
+        });
+    }
+
+    /**
+     * Deletes the files and directories matched by a scanner which were not installed.
+     *
+     * @param scanner the scanner of the installation directory, set up with the update checks
+     * @throws Exception if the directory can't be scanned or a file can't be deleted
+     */
+    public void deleteStaleFiles(DirectoryScanner scanner) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(DELETE_THREADS, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack - Update check");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        StaleFiles staleFiles = new StaleFiles(executor);
+        try
+        {
+            scanner.scan(staleFiles);
+            staleFiles.submit();
+            for (Future<?> result : staleFiles.results)
+            {
+                try
+                {
+                    result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    throw (cause instanceof Exception) ? (Exception) cause : e;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // only empty directories are deleted, their content first
+        List<File> directories = staleFiles.directories;
+        Collections.sort(directories, Collections.reverseOrder());
+        for (File directory : directories)
+        {
+            directory.delete();
+        }
+    }
+
+    /**
+     * Deletes the stale files found by a scan in batches, and collects the stale directories.
+     */
+    private class StaleFiles implements DirectoryScanner.ScanListener
+    {
+        private final ExecutorService executor;
+
+        private final List<Future<?>> results = new ArrayList<Future<?>>();
+
+        private final List<File> directories = new ArrayList<File>();
+
+        private List<File> batch = new ArrayList<File>(DELETE_BATCH_SIZE);
+
+        StaleFiles(ExecutorService executor)
+        {
+            this.executor = executor;
+        }
+
+        public void included(String name, File file, boolean directory)
+        {
+            if (contains(hash(file)))
+            {
+                // skip files we just installed
+                return;
+            }
+            if (directory)
+            {
+                directories.add(file);
+            }
+            else
+            {
+                batch.add(file);
+                if (batch.size() == DELETE_BATCH_SIZE)
+                {
+                    submit();
+                }
+            }
+        }
+
+        /**
+         * Submits the deletion of the current batch of files.
+         */
+        void submit()
+        {
+            if (!batch.isEmpty())
+            {
+                results.add(executor.submit(new Deletion(batch)));
+                batch = new ArrayList<File>(DELETE_BATCH_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Deletes a batch of files.
+     */
+    private static class Deletion implements Callable<Void>
+    {
+        private final List<File> files;
+
+        Deletion(List<File> files)
+        {
+            this.files = files;
+        }
+
+        public Void call()
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+            return null;
+        }
+    }
+
+    private void add(long hash)
+    {
+        int mask = installed.length - 1;
+        int slot = (int) hash & mask;
+        while (installed[slot] != 0 && installed[slot] != hash)
+        {
+            slot = (slot + 1) & mask;
+        }
+        installed[slot] = hash;
+    }
+
+    private boolean contains(long hash)
+    {
+        int mask = installed.length - 1;
+        int slot = (int) hash & mask;
+        while (installed[slot] != 0)
+        {
+            if (installed[slot] == hash)
+            {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Hashes a path, ignoring the case where file names are case insensitive.
+     *
+     * @param file the file
+     * @return the hash of the path, never zero
+     */
+    static long hash(File file)
+    {
+        String path = file.getAbsolutePath();
+        if (OsVersion.IS_WINDOWS)
+        {
+            path = path.toLowerCase();
+        }
+        long hash = 1125899906842597L;
+        for (int i = 0; i < path.length(); i++)
+        {
+            hash = 31 * hash + path.charAt(i);
+        }
+        // spread the bits so that the low bits select the slot well
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash == 0) ? 1 : hash;
+    }
+}
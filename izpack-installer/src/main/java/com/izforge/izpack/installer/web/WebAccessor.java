@@ -21,6 +21,8 @@
 
 package com.izforge.izpack.installer.web;
 
+import com.izforge.izpack.util.Debug;
+
 import javax.swing.*;
 import java.awt.*;
 import java.io.InputStream;
@@ -129,7 +131,7 @@ public class WebAccessor
                 }
                 catch (Exception e)
                 {
-                    System.out.println("In openInputStream: " + e);
+                    Debug.log(e);
                 }
             }
 
@@ -32,6 +32,7 @@ import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.OsConstraintHelper;
 
 import java.io.File;
@@ -156,7 +157,7 @@ public class WebRepositoryAccessor
         }
         catch (Exception e)
         {
-            System.out.println(e + " while trying to download " + url);
+            Debug.error(e + " while trying to download " + url);
             return null;
         }
         finally
@@ -208,7 +209,7 @@ public class WebRepositoryAccessor
         }
         catch (Exception e)
         {
-            System.out.println("WARN: Unable to parse install.xml");
+            Debug.log("WARN: Unable to parse install.xml");
             return null;
         }
     }
@@ -235,7 +236,7 @@ public class WebRepositoryAccessor
         }
         catch (Exception e)
         {
-            System.out.println("WARN: Unable to parse packsinfo.xml");
+            Debug.log("WARN: Unable to parse packsinfo.xml");
         }
     }
 
@@ -276,12 +277,12 @@ public class WebRepositoryAccessor
         }
         catch (SecurityException e)
         {
-            System.out.println(e + " while trying to write temp file: " + tempFolder);
+            Debug.error(e + " while trying to write temp file: " + tempFolder);
             throw e;
         }
         catch (Exception e)
         {
-            System.out.println(e + " while trying to download " + url);
+            Debug.error(e + " while trying to download " + url);
             throw e;
         }
     }
@@ -503,7 +504,7 @@ public class WebRepositoryAccessor
      */
     protected void parseWarn(IXMLElement parent, String message)
     {
-        System.out.println(installFilename + ":" + parent.getLineNr() + ": " + message);
+        Debug.log(installFilename + ":" + parent.getLineNr() + ": " + message);
     }
 
     /**
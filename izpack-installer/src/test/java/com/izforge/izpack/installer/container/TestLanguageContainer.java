@@ -65,6 +65,7 @@ public class TestLanguageContainer extends AbstractContainer
         Mockito.when(resourceManager.getImageIconResource("flag.eng")).thenReturn(engFlag);
         Mockito.when(resourceManager.getImageIconResource("flag.fra")).thenReturn(frFlag);
         Mockito.when(resourceManager.getInputStream(Mockito.anyString())).thenReturn(getClass().getResourceAsStream("/bin/langpacks/installer/eng.xml"));
+        Mockito.when(resourceManager.getLangPack(Mockito.anyString())).thenReturn(getClass().getResourceAsStream("/bin/langpacks/installer/eng.xml"));
     }
 
     private JFrame initFrame()
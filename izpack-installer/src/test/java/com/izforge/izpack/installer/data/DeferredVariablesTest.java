@@ -0,0 +1,91 @@
+package com.izforge.izpack.installer.data;
+
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests of the {@link DeferredVariables}
+ */
+public class DeferredVariablesTest
+{
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void shouldComputeValueOnceWhenFirstRead()
+    {
+        DeferredVariables variables = new DeferredVariables();
+        variables.setProperty("APP_NAME", "test");
+        variables.setDeferred("HOST_NAME", new CountingValue("host"));
+
+        assertThat(variables.getProperty("APP_NAME"), Is.is("test"));
+        assertThat(calls.get(), Is.is(0));
+        assertThat(variables.getProperty("HOST_NAME"), Is.is("host"));
+        assertThat(variables.getProperty("HOST_NAME", "default"), Is.is("host"));
+        assertThat(calls.get(), Is.is(1));
+    }
+
+    @Test
+    public void shouldNotComputeValueSetMeanwhile()
+    {
+        DeferredVariables variables = new DeferredVariables();
+        variables.setDeferred("HOST_NAME", new CountingValue("host"));
+        variables.setProperty("HOST_NAME", "overridden");
+
+        assertThat(variables.getProperty("HOST_NAME"), Is.is("overridden"));
+        assertThat(variables.size(), Is.is(1));
+        assertThat(calls.get(), Is.is(0));
+    }
+
+    @Test
+    public void shouldComputeValuesWhenEnumerated()
+    {
+        DeferredVariables variables = new DeferredVariables();
+        variables.setDeferred("HOST_NAME", new CountingValue("host"));
+        variables.setDeferred("IP_ADDRESS", new CountingValue("127.0.0.1"));
+
+        assertThat(variables.stringPropertyNames().contains("IP_ADDRESS"), Is.is(true));
+        assertThat(calls.get(), Is.is(2));
+    }
+
+    @Test
+    public void shouldSerializeAsProperties() throws Exception
+    {
+        DeferredVariables variables = new DeferredVariables();
+        variables.setDeferred("HOST_NAME", new CountingValue("host"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(variables);
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertThat(copy.getClass().getName(), Is.is(Properties.class.getName()));
+        assertThat(((Properties) copy).getProperty("HOST_NAME"), Is.is("host"));
+    }
+
+    private class CountingValue implements Callable<String>
+    {
+        private final String value;
+
+        CountingValue(String value)
+        {
+            this.value = value;
+        }
+
+        public String call()
+        {
+            calls.incrementAndGet();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.util.InstallManifest;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the installation manifest
+ */
+public class InstallManifestTest
+{
+    private File installDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        installDir = File.createTempFile("izpack-manifest", "");
+        installDir.delete();
+        installDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(installDir);
+    }
+
+    @Test
+    public void shouldReadWrittenEntries() throws Exception
+    {
+        List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>();
+        for (int i = 0; i < 300; i++)
+        {
+            entries.add(new InstallManifest.Entry("/opt/app/dir" + (i % 7) + "/file" + i, i % 3 != 0, i, 1000L * i,
+                    (i % 2 == 0) ? null : (long) -i));
+        }
+        Collections.shuffle(entries);
+
+        byte[] bytes = write(entries);
+        InstallManifest manifest = read(bytes);
+        assertThat(manifest.getInstallPath(), Is.is("/opt/app"));
+
+        List<String> paths = new ArrayList<String>();
+        List<InstallManifest.Entry> block;
+        while ((block = manifest.nextBlock()) != null)
+        {
+            for (InstallManifest.Entry entry : block)
+            {
+                paths.add(entry.getPath());
+            }
+        }
+        assertThat(paths.size(), Is.is(300));
+        List<String> sorted = new ArrayList<String>(paths);
+        Collections.sort(sorted);
+        assertThat(paths, Is.is(sorted));
+
+        // the manifest is read forward
+        manifest = read(bytes);
+        assertThat(manifest.find("/opt/app/dir0/file14").getChecksum(), IsNull.nullValue());
+        InstallManifest.Entry entry = manifest.find("/opt/app/dir1/file15");
+        assertThat(entry.isUninstall(), Is.is(false));
+        assertThat(entry.getSize(), Is.is(15L));
+        assertThat(entry.getLastModified(), Is.is(15000L));
+        assertThat(entry.getChecksum(), Is.is(-15L));
+        assertThat(manifest.find("/opt/app/dir1/file16"), IsNull.nullValue());
+        assertThat(read(bytes).find("/opt/app/dir0"), IsNull.nullValue());
+        assertThat(read(bytes).find("/opt/app/dir9"), IsNull.nullValue());
+    }
+
+    @Test
+    public void shouldReadUncheckedEntries() throws Exception
+    {
+        List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>();
+        entries.add(new InstallManifest.Entry("/opt/app/a", true, 10, 1000, 42L));
+        entries.add(new InstallManifest.Entry("/opt/app/b", true));
+        entries.add(new InstallManifest.Entry("/opt/app/c", false, 20, 2000, null));
+
+        List<InstallManifest.Entry> read = read(write(entries)).nextBlock();
+        assertThat(read.size(), Is.is(3));
+        assertThat(read.get(0).isChecked(), Is.is(true));
+        assertThat(read.get(0).getChecksum(), Is.is(42L));
+        assertThat(read.get(1).isChecked(), Is.is(false));
+        assertThat(read.get(1).isUninstall(), Is.is(true));
+        assertThat(read.get(1).isModified(), Is.is(false));
+        assertThat(read.get(2).getSize(), Is.is(20L));
+        assertThat(read.get(2).getLastModified(), Is.is(2000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsortedEntries() throws Exception
+    {
+        InstallManifest.Writer writer = new InstallManifest.Writer("/opt/app", new ByteArrayOutputStream());
+        writer.add(new InstallManifest.Entry("/opt/app/b", true, 0, 0, null));
+        writer.add(new InstallManifest.Entry("/opt/app/a", true, 0, 0, null));
+    }
+
+    @Test
+    public void shouldFindModifiedFilesOfDirectory() throws Exception
+    {
+        List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>();
+        List<File> files = new ArrayList<File>();
+        for (String name : Arrays.asList("a/one", "a/two", "a/sub/three", "ab/four", "b/five"))
+        {
+            File file = new File(installDir, name);
+            file.getParentFile().mkdirs();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(name.getBytes("UTF-8"));
+            out.close();
+            files.add(file);
+            entries.add(new InstallManifest.Entry(file.getPath(), true, file.length(), file.lastModified(), null));
+        }
+        byte[] bytes = write(entries);
+        assertThat(read(bytes).getModifiedFiles(new File(installDir, "a").getPath()).isEmpty(), Is.is(true));
+
+        // modified in the directory, in a directory sharing its name prefix and outside
+        for (int i : new int[]{2, 3, 4})
+        {
+            FileOutputStream out = new FileOutputStream(files.get(i), true);
+            out.write('x');
+            out.close();
+        }
+        files.get(0).delete();
+
+        List<InstallManifest.Entry> modified = read(bytes).getModifiedFiles(new File(installDir, "a").getPath());
+        assertThat(modified.size(), Is.is(2));
+        assertThat(modified.get(0).getPath(), Is.is(files.get(0).getPath()));
+        assertThat(modified.get(1).getPath(), Is.is(files.get(2).getPath()));
+    }
+
+    @Test
+    public void shouldRecordInstalledFiles()
+    {
+        UninstallData data = new UninstallData();
+        data.addFile("/opt/app/lib/a.jar", true);
+        data.addFile("/opt/app/lib/b.jar", false);
+        data.addFile("/opt/app/lib", true);
+        data.addFile("/opt/app/lib/b.jar", true);
+
+        assertThat(data.getInstalledFilesList(), Is.is(Arrays.asList(
+                "/opt/app/lib/a.jar", "/opt/app/lib/b.jar", "/opt/app/lib", "/opt/app/lib/b.jar")));
+        assertThat(data.getUninstalableFilesList(), Is.is(Arrays.asList(
+                "/opt/app/lib/a.jar", "/opt/app/lib", "/opt/app/lib/b.jar")));
+        Map<String, Boolean> files = getSortedFiles(data);
+        assertThat(new ArrayList<String>(files.keySet()), Is.is(Arrays.asList(
+                "/opt/app/lib", "/opt/app/lib/a.jar", "/opt/app/lib/b.jar")));
+        assertThat(files.get("/opt/app/lib/b.jar"), Is.is(true));
+    }
+
+    @Test
+    public void shouldMergeSortedRunsOfInstalledFiles()
+    {
+        UninstallData data = new UninstallData();
+        int count = UninstallData.SORT_RUN_SIZE * 2 + 100;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            data.addFile("/opt/app/file" + i, i % 2 == 0);
+        }
+        // in another run than the first addition
+        data.addFile("/opt/app/file" + (count - 1), true);
+
+        Map<String, Boolean> files = getSortedFiles(data);
+        assertThat(files.size(), Is.is(count));
+        List<String> sorted = new ArrayList<String>(files.keySet());
+        Collections.sort(sorted);
+        assertThat(new ArrayList<String>(files.keySet()), Is.is(sorted));
+        assertThat(files.get("/opt/app/file1"), Is.is(false));
+        assertThat(files.get("/opt/app/file" + (count - 1)), Is.is(true));
+    }
+
+    private Map<String, Boolean> getSortedFiles(UninstallData data)
+    {
+        final Map<String, Boolean> files = new LinkedHashMap<String, Boolean>();
+        data.visitSortedFiles(new UninstallData.FileHandler()
+        {
+            public void file(String path, boolean uninstall)
+            {
+                assertThat(files.containsKey(path), Is.is(false));
+                files.put(path, uninstall);
+            }
+        });
+        return files;
+    }
+
+    private byte[] write(List<InstallManifest.Entry> entries) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstallManifest.write("/opt/app", entries, out);
+        return out.toByteArray();
+    }
+
+    private InstallManifest read(byte[] bytes) throws Exception
+    {
+        return InstallManifest.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
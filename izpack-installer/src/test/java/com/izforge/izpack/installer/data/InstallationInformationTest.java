@@ -0,0 +1,132 @@
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.api.data.Pack;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the installation information
+ */
+public class InstallationInformationTest
+{
+    private File installDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        installDir = File.createTempFile("izpack-information", "");
+        installDir.delete();
+        installDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] children = installDir.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                child.delete();
+            }
+        }
+        installDir.delete();
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        File unchanged = createFile("unchanged", "content");
+        File edited = createFile("edited", "content");
+        File updated = createFile("updated", "content");
+
+        InstallationInformation information = new InstallationInformation(true);
+        information.setPacks(Arrays.asList(createPack("core")));
+        Properties variables = new Properties();
+        variables.setProperty("INSTALL_PATH", installDir.getPath());
+        information.setVariables(variables);
+        for (File file : new File[]{unchanged, edited, updated})
+        {
+            information.addFile("core", file.getPath(), 7, 1000);
+        }
+        information.updateInstalledFiles();
+        information.write(installDir.getPath());
+
+        edited.setLastModified(edited.lastModified() - 10000);
+
+        InstallationInformation read = InstallationInformation.read(installDir.getPath());
+        assertThat(read.hasFiles(), Is.is(true));
+        assertThat(read.getPacks().get(0).name, Is.is("core"));
+        assertThat(read.getVariables().getProperty("INSTALL_PATH"), Is.is(installDir.getPath()));
+        assertThat(read.getFiles("core").size(), Is.is(3));
+        assertThat(read.isUpToDate("core", unchanged.getPath(), 7, 1000), Is.is(true));
+        assertThat(read.isUpToDate("core", edited.getPath(), 7, 1000), Is.is(false));
+        assertThat(read.isUpToDate("core", updated.getPath(), 7, 2000), Is.is(false));
+        assertThat(read.isUpToDate("other", unchanged.getPath(), 7, 1000), Is.is(false));
+    }
+
+    @Test
+    public void testChangedFilesAreNeverUpToDate() throws Exception
+    {
+        File parsed = createFile("parsed", "${INSTALL_PATH}");
+
+        InstallationInformation information = new InstallationInformation(true);
+        information.addFile("core", parsed.getPath(), 15, 1000);
+        information.setChanged("core", parsed.getPath());
+        information.updateInstalledFiles();
+        information.write(installDir.getPath());
+
+        InstallationInformation read = InstallationInformation.read(installDir.getPath());
+        assertThat(read.getFiles("core").size(), Is.is(1));
+        assertThat(read.isUpToDate("core", parsed.getPath(), 15, 1000), Is.is(false));
+    }
+
+    @Test
+    public void testReadWithoutFiles() throws Exception
+    {
+        List<Pack> packs = new ArrayList<Pack>();
+        packs.add(createPack("core"));
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(
+                InstallationInformation.getFile(installDir.getPath())));
+        out.writeObject(packs);
+        out.writeObject(new Properties());
+        out.close();
+
+        InstallationInformation read = InstallationInformation.read(installDir.getPath());
+        assertThat(read.hasFiles(), Is.is(false));
+        assertThat(read.getPacks().size(), Is.is(1));
+        assertThat(read.getFiles("core").isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void testReadMissing() throws Exception
+    {
+        assertThat(InstallationInformation.read(installDir.getPath()) == null, Is.is(true));
+    }
+
+    private File createFile(String name, String content) throws Exception
+    {
+        File file = new File(installDir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+
+    private static Pack createPack(String name)
+    {
+        return new Pack(name, null, "", null, null, false, true, false, null, true);
+    }
+}
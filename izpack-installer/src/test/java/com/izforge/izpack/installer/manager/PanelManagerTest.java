@@ -0,0 +1,86 @@
+package com.izforge.izpack.installer.manager;
+
+import com.izforge.izpack.api.container.BindeableContainer;
+import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.installer.base.IzPanel;
+import com.izforge.izpack.installer.data.GUIInstallData;
+import com.izforge.izpack.merge.resolve.ClassPathCrawler;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests of the lazy construction of the panels by the {@link PanelManager}
+ */
+public class PanelManagerTest
+{
+    private static final int PANELS = 3;
+
+    private GUIInstallData installData;
+
+    private BindeableContainer container;
+
+    private IzPanel[] izPanels = new IzPanel[PANELS];
+
+    private PanelManager panelManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        installData = new GUIInstallData(new Properties(), null);
+        container = Mockito.mock(BindeableContainer.class);
+        ClassPathCrawler classPathCrawler = Mockito.mock(ClassPathCrawler.class);
+        Mockito.when(classPathCrawler.searchClassInClassPath(Mockito.anyString())).thenReturn(IzPanel.class);
+
+        List<Panel> panelsOrder = new ArrayList<Panel>();
+        for (int i = 0; i < PANELS; i++)
+        {
+            Panel panel = new Panel();
+            panel.setClassName("TestPanel");
+            panel.setPanelid("panel" + i);
+            panelsOrder.add(panel);
+            izPanels[i] = Mockito.mock(IzPanel.class);
+            Mockito.when(container.getComponent("panel" + i)).thenReturn(izPanels[i]);
+        }
+        // the second panel turns out to be hidden
+        Mockito.when(izPanels[1].isHidden()).thenReturn(true);
+        installData.setPanelsOrder(panelsOrder);
+
+        panelManager = new PanelManager(installData, container, null, null, classPathCrawler);
+        panelManager.instantiatePanels();
+    }
+
+    @Test
+    public void shouldConstructPanelsInOrderOnFirstAccess()
+    {
+        Mockito.verifyZeroInteractions(container);
+
+        assertThat(installData.getPanels().get(2), Is.is((Object) izPanels[2]));
+
+        InOrder order = Mockito.inOrder(container);
+        order.verify(container).getComponent("panel0");
+        order.verify(container).getComponent("panel1");
+        order.verify(container).getComponent("panel2");
+        assertThat(installData.getPanels().get(0), Is.is((Object) izPanels[0]));
+        Mockito.verify(container, Mockito.times(1)).getComponent("panel0");
+    }
+
+    @Test
+    public void shouldCountPanelsNotConstructedAsVisible()
+    {
+        assertThat(panelManager.getCountVisiblePanel(), Is.is(2));
+        Mockito.verifyZeroInteractions(container);
+
+        assertThat(panelManager.getPanelVisibilityNumber(1), Is.is(-1));
+        assertThat(panelManager.getCountVisiblePanel(), Is.is(1));
+        Mockito.verify(container, Mockito.never()).getComponent("panel2");
+    }
+}
@@ -0,0 +1,93 @@
+package com.izforge.izpack.installer.unpacker;
+
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the removal of the directories emptied by an installation modification
+ */
+public class UnpackerBaseTest
+{
+    private File installDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        installDir = File.createTempFile("izpack-unpacker", "");
+        installDir.delete();
+        installDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(installDir);
+    }
+
+    @Test
+    public void shouldRemoveEmptiedDirectoriesUpToTheInstallPath()
+    {
+        File lib = new File(installDir, "lib");
+        File deep = new File(lib, "a/b/c");
+        deep.mkdirs();
+        File kept = new File(installDir, "conf");
+        kept.mkdirs();
+
+        UnpackerBase.removeEmptyDirectories(deep, installDir);
+
+        assertThat(lib.exists(), Is.is(false));
+        assertThat(kept.exists(), Is.is(true));
+        assertThat(installDir.exists(), Is.is(true));
+    }
+
+    @Test
+    public void shouldKeepDirectoriesWhichAreNotEmpty() throws Exception
+    {
+        File lib = new File(installDir, "lib");
+        File deep = new File(lib, "a/b");
+        deep.mkdirs();
+        new File(lib, "keep.jar").createNewFile();
+
+        UnpackerBase.removeEmptyDirectories(deep, installDir);
+
+        assertThat(new File(lib, "a").exists(), Is.is(false));
+        assertThat(lib.exists(), Is.is(true));
+    }
+
+    @Test
+    public void shouldIgnoreDirectoriesOutsideTheInstallPath() throws Exception
+    {
+        File other = File.createTempFile("izpack-other", "");
+        other.delete();
+        other.mkdirs();
+        try
+        {
+            UnpackerBase.removeEmptyDirectories(other, installDir);
+
+            assertThat(other.exists(), Is.is(true));
+        }
+        finally
+        {
+            other.delete();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,84 @@
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.util.file.DirectoryScanner;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the update checks
+ */
+public class UpdateCheckerTest
+{
+    private File installDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        installDir = File.createTempFile("izpack-update", "");
+        installDir.delete();
+        installDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(installDir);
+    }
+
+    @Test
+    public void testDeleteStaleFiles() throws Exception
+    {
+        UninstallData udata = new UninstallData();
+        File lib = new File(installDir, "lib");
+        udata.addFile(lib.getPath(), true);
+        for (int i = 0; i < 600; i++)
+        {
+            udata.addFile(createFile(lib, "installed" + i + ".jar").getPath(), true);
+            createFile(lib, "stale" + i + ".jar");
+        }
+        File staleDir = new File(installDir, "old");
+        createFile(staleDir, "stale.jar");
+        File kept = createFile(new File(installDir, "conf"), "user.properties");
+
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(installDir);
+        scanner.setIncludes(new String[]{"**"});
+        scanner.setExcludes(new String[]{"conf/**"});
+        new UpdateChecker(udata, installDir).deleteStaleFiles(scanner);
+
+        assertThat(lib.list().length, Is.is(600));
+        assertThat(new File(lib, "installed599.jar").exists(), Is.is(true));
+        assertThat(new File(lib, "stale0.jar").exists(), Is.is(false));
+        assertThat(staleDir.exists(), Is.is(false));
+        assertThat(kept.exists(), Is.is(true));
+        assertThat(installDir.exists(), Is.is(true));
+    }
+
+    private static File createFile(File directory, String name) throws Exception
+    {
+        directory.mkdirs();
+        File file = new File(directory, name);
+        file.createNewFile();
+        return file;
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
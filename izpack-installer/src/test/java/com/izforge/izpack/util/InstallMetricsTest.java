@@ -0,0 +1,60 @@
+package com.izforge.izpack.util;
+
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests of the {@link InstallMetrics}
+ */
+public class InstallMetricsTest
+{
+    @After
+    public void disableMetrics()
+    {
+        System.clearProperty(InstallMetrics.IZPACK_METRICS);
+        InstallMetrics.begin("test");
+    }
+
+    @Test
+    public void shouldNotCollectWithoutReport()
+    {
+        System.clearProperty(InstallMetrics.IZPACK_METRICS);
+        InstallMetrics.begin("test");
+        InstallMetrics.record("unpack", 1000);
+        InstallMetrics.count("unpack.files", 1);
+
+        assertThat(InstallMetrics.isEnabled(), Is.is(Debug.isLOG()));
+        if (!Debug.isLOG())
+        {
+            assertThat(InstallMetrics.getTotal("unpack"), Is.is(0L));
+            assertThat(InstallMetrics.getCount("unpack.files"), Is.is(0L));
+        }
+    }
+
+    @Test
+    public void shouldReportTimersCountersAndRates() throws Exception
+    {
+        File report = File.createTempFile("metrics", ".json");
+        report.deleteOnExit();
+        System.setProperty(InstallMetrics.IZPACK_METRICS, report.getPath());
+        InstallMetrics.begin("test");
+        assertThat(InstallMetrics.isEnabled(), Is.is(true));
+
+        InstallMetrics.record("unpack", 500000000L);
+        InstallMetrics.record("unpack", 1500000000L);
+        InstallMetrics.count("unpack.bytes", 1000);
+
+        assertThat(InstallMetrics.getTotal("unpack"), Is.is(2000000000L));
+        assertThat(InstallMetrics.getCount("unpack.bytes"), Is.is(1000L));
+        String json = InstallMetrics.getReport();
+        assertThat(json.startsWith("{\"phase\":\"test\""), Is.is(true));
+        assertThat(json.contains("\"unpack\":{\"count\":2,\"totalMillis\":2000,\"minMicros\":500000,\"maxMicros\":1500000"),
+                Is.is(true));
+        assertThat(json.contains("\"rates\":{\"unpack.bytes/s\":500}"), Is.is(true));
+    }
+}
@@ -0,0 +1,55 @@
+package com.izforge.izpack.util;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+/**
+ * Tests of the {@link ThrottledProgressHandler}
+ */
+public class ThrottledProgressHandlerTest
+{
+    private AbstractUIProgressHandler handler;
+
+    private ThrottledProgressHandler progress;
+
+    @Before
+    public void setUp()
+    {
+        handler = Mockito.mock(AbstractUIProgressHandler.class);
+        // an hour, so that only the first progress is due
+        progress = new ThrottledProgressHandler(handler, 3600000);
+    }
+
+    @Test
+    public void shouldForwardLastProgressHeldBackBeforeNextStep()
+    {
+        progress.progress(1, "first");
+        progress.progress(2, "second");
+        progress.progress(3, "third");
+        progress.nextStep("step", 2, 10);
+
+        InOrder order = Mockito.inOrder(handler);
+        order.verify(handler).progress(1, "first");
+        order.verify(handler).progress(3, "third");
+        order.verify(handler).nextStep("step", 2, 10);
+        Mockito.verify(handler, Mockito.never()).progress(2, "second");
+    }
+
+    @Test
+    public void shouldForwardLastProgressHeldBackBeforeStopAction()
+    {
+        progress.progress(1, "first");
+        progress.progress(2, "second");
+        progress.stopAction();
+        progress.stopAction();
+
+        InOrder order = Mockito.inOrder(handler);
+        order.verify(handler).progress(1, "first");
+        order.verify(handler).progress(2, "second");
+        order.verify(handler, Mockito.times(2)).stopAction();
+        Mockito.verifyNoMoreInteractions(handler);
+    }
+}
@@ -11,6 +11,8 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -74,6 +76,13 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private int comprLevel;
 
+    /**
+     * File to write the JSON profile of the compilation into, with the time spent in each phase
+     * and the size of each pack. Not written by default.
+     *
+     * @parameter
+     */
+    private File profileFile;
 
     public void execute() throws MojoExecutionException, MojoFailureException
     {
@@ -93,6 +102,18 @@ public class IzPackNewMojo extends AbstractMojo
         {
             throw new AssertionError(e);
         }
+
+        if (profileFile != null)
+        {
+            try
+            {
+                compilerData.getProfile().write(profileFile);
+            }
+            catch (IOException e)
+            {
+                throw new MojoExecutionException("Failed to write the build profile " + profileFile, e);
+            }
+        }
     }
 
     private CompilerData initCompilerData()
@@ -0,0 +1,483 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.packs;
+
+import com.izforge.izpack.api.data.Pack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The selection state of a list of packs.
+ * <p/>
+ * The dependencies, the dependents and the exclude groups of the packs are resolved to pack
+ * indexes once, so that a selection change only visits the packs it affects. The number of bytes
+ * of the selected packs is kept up to date as the states change. The buffers used to propagate
+ * changes are allocated once as well.
+ * <p/>
+ * The state of a pack is one of {@link #SELECTED}, {@link #DESELECTED}, {@link #REQUIRED},
+ * {@link #DISABLED} or {@link #INSTALLED}. Selected and required packs are installed.
+ */
+public class PackSelection
+{
+    /**
+     * The pack is selected.
+     */
+    public static final int SELECTED = 1;
+
+    /**
+     * The pack is not selected.
+     */
+    public static final int DESELECTED = 0;
+
+    /**
+     * The pack is selected and can't be deselected.
+     */
+    public static final int REQUIRED = -1;
+
+    /**
+     * The pack is not selected and can't be selected.
+     */
+    public static final int DISABLED = -2;
+
+    /**
+     * The pack is already installed.
+     */
+    public static final int INSTALLED = -3;
+
+    private static final int[] NONE = new int[0];
+
+    private final List<Pack> packs;
+
+    private final Map<String, Integer> indexes;
+
+    /**
+     * The packs each pack depends on.
+     */
+    private final int[][] dependencies;
+
+    /**
+     * The packs depending on each pack.
+     */
+    private final int[][] dependents;
+
+    /**
+     * The packs of the exclude group of each pack, including the pack itself.
+     */
+    private final int[][] excludeGroups;
+
+    private final int[] states;
+
+    /**
+     * Whether a pack depends, directly or not, on a pack which isn't selected.
+     */
+    private final boolean[] blocked;
+
+    /**
+     * The packs which got selected or deselected since the dependencies were last updated.
+     */
+    private final int[] changed;
+
+    private final boolean[] isChanged;
+
+    private int changedCount;
+
+    /**
+     * The packs whose state or blocking changed since their states were last reconciled with
+     * their dependencies.
+     */
+    private final int[] dirty;
+
+    private final boolean[] isDirty;
+
+    private int dirtyCount;
+
+    /**
+     * The stack of packs to visit, and whether each pack is on it.
+     */
+    private final int[] stack;
+
+    private final boolean[] stacked;
+
+    private long bytes;
+
+    /**
+     * Constructs a selection with all packs deselected.
+     *
+     * @param packs the packs
+     */
+    public PackSelection(List<Pack> packs)
+    {
+        this.packs = packs;
+        int count = packs.size();
+        indexes = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++)
+        {
+            indexes.put(packs.get(i).name, i);
+        }
+
+        dependencies = new int[count][];
+        int[] dependentCounts = new int[count];
+        Map<String, List<Integer>> groups = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < count; i++)
+        {
+            Pack pack = packs.get(i);
+            List<Integer> targets = new ArrayList<Integer>();
+            if (pack.dependencies != null)
+            {
+                for (String name : pack.dependencies)
+                {
+                    Integer target = indexes.get(name);
+                    if (target != null)
+                    {
+                        targets.add(target);
+                        dependentCounts[target]++;
+                    }
+                }
+            }
+            dependencies[i] = toArray(targets);
+            if (pack.excludeGroup != null)
+            {
+                List<Integer> group = groups.get(pack.excludeGroup);
+                if (group == null)
+                {
+                    group = new ArrayList<Integer>();
+                    groups.put(pack.excludeGroup, group);
+                }
+                group.add(i);
+            }
+        }
+
+        dependents = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            dependents[i] = (dependentCounts[i] == 0) ? NONE : new int[dependentCounts[i]];
+            dependentCounts[i] = 0;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            for (int target : dependencies[i])
+            {
+                dependents[target][dependentCounts[target]++] = i;
+            }
+        }
+
+        excludeGroups = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            String group = packs.get(i).excludeGroup;
+            excludeGroups[i] = (group == null) ? NONE : toArray(groups.get(group));
+        }
+
+        states = new int[count];
+        blocked = new boolean[count];
+        changed = new int[count];
+        isChanged = new boolean[count];
+        dirty = new int[count];
+        isDirty = new boolean[count];
+        stack = new int[count];
+        stacked = new boolean[count];
+        for (int i = 0; i < count; i++)
+        {
+            // all packs are deselected, so each dependency blocks
+            if (dependencies[i].length > 0)
+            {
+                blocked[i] = true;
+                markDirty(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of packs.
+     *
+     * @return the number of packs
+     */
+    public int size()
+    {
+        return states.length;
+    }
+
+    /**
+     * Returns a pack.
+     *
+     * @param index the pack index
+     * @return the pack
+     */
+    public Pack getPack(int index)
+    {
+        return packs.get(index);
+    }
+
+    /**
+     * Returns the index of a pack.
+     *
+     * @param name the pack name
+     * @return the index of the pack, or <tt>-1</tt> if there is no such pack
+     */
+    public int indexOf(String name)
+    {
+        Integer index = indexes.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the state of a pack.
+     *
+     * @param index the pack index
+     * @return the state of the pack
+     */
+    public int getState(int index)
+    {
+        return states[index];
+    }
+
+    /**
+     * Sets the state of a pack.
+     *
+     * @param index the pack index
+     * @param state the new state
+     */
+    public void setState(int index, int state)
+    {
+        if (states[index] == state)
+        {
+            return;
+        }
+        markDirty(index);
+        boolean wasSelected = isSelected(index);
+        states[index] = state;
+        boolean selected = isSelected(index);
+        if (wasSelected != selected)
+        {
+            bytes += selected ? packs.get(index).nbytes : -packs.get(index).nbytes;
+            if (!isChanged[index])
+            {
+                isChanged[index] = true;
+                changed[changedCount++] = index;
+            }
+        }
+    }
+
+    /**
+     * Determines if a pack is selected or required.
+     *
+     * @param index the pack index
+     * @return <tt>true</tt> if the pack will be installed
+     */
+    public boolean isSelected(int index)
+    {
+        return states[index] == SELECTED || states[index] == REQUIRED;
+    }
+
+    /**
+     * Returns the number of bytes of the selected and required packs.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Returns the packs sharing the exclude group of a pack.
+     *
+     * @param index the pack index
+     * @return the indexes of the other packs of the exclude group
+     */
+    public List<Integer> getExcludedPacks(int index)
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int other : excludeGroups[index])
+        {
+            if (other != index)
+            {
+                result.add(other);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deselects the other selected packs of the exclude group of a pack, if the pack is selected.
+     *
+     * @param index the pack index
+     */
+    public void updateExcludes(int index)
+    {
+        if (states[index] > 0)
+        {
+            for (int other : excludeGroups[index])
+            {
+                if (other != index && states[other] == SELECTED)
+                {
+                    setState(other, DESELECTED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Disables the packs depending on a pack which isn't selected, and enables the packs whose
+     * dependencies are all selected again.
+     * <p/>
+     * Only the dependents of the packs selected or deselected since the last update are
+     * visited, and only the packs whose state or blocking changed are enabled or disabled.
+     */
+    public void updateDependencies()
+    {
+        int top = 0;
+        for (int i = 0; i < changedCount; i++)
+        {
+            isChanged[changed[i]] = false;
+            top = push(dependents[changed[i]], top);
+        }
+        changedCount = 0;
+
+        while (top > 0)
+        {
+            int pack = stack[--top];
+            stacked[pack] = false;
+            boolean block = false;
+            for (int dependency : dependencies[pack])
+            {
+                if (!isSelected(dependency) || blocked[dependency])
+                {
+                    block = true;
+                    break;
+                }
+            }
+            if (block != blocked[pack])
+            {
+                blocked[pack] = block;
+                markDirty(pack);
+                top = push(dependents[pack], top);
+            }
+        }
+
+        // the states set here mark the packs dirty again, so that an enabled pack which is
+        // still not selectable, like an installed one, is reconciled once more next time
+        int count = dirtyCount;
+        dirtyCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int pack = dirty[i];
+            isDirty[pack] = false;
+            if (!blocked[pack] && states[pack] < 0)
+            {
+                setState(pack, states[pack] + 2);
+            }
+            else if (blocked[pack] && states[pack] >= 0)
+            {
+                setState(pack, DISABLED);
+            }
+        }
+        // the packs disabled above are blocked by their dependencies as well as their dependents
+        for (int i = 0; i < changedCount; i++)
+        {
+            isChanged[changed[i]] = false;
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Marks packs and all the packs they depend on as required.
+     *
+     * @param required the indexes of the required packs
+     */
+    public void require(List<Integer> required)
+    {
+        int top = 0;
+        int visitedCount = 0;
+        for (int index : required)
+        {
+            if (!stacked[index])
+            {
+                stacked[index] = true;
+                stack[top++] = index;
+            }
+        }
+        // the stack is used as a queue here, so that the visited packs stay below the packs to
+        // visit and can be unmarked at the end
+        while (visitedCount < top)
+        {
+            int pack = stack[visitedCount++];
+            setState(pack, REQUIRED);
+            for (int dependency : dependencies[pack])
+            {
+                if (!stacked[dependency])
+                {
+                    stacked[dependency] = true;
+                    stack[top++] = dependency;
+                }
+            }
+        }
+        for (int i = 0; i < visitedCount; i++)
+        {
+            stacked[stack[i]] = false;
+        }
+    }
+
+    /**
+     * Pushes the packs which aren't on the stack yet.
+     *
+     * @param packs the packs to push
+     * @param top   the top of the stack
+     * @return the new top of the stack
+     */
+    private int push(int[] packs, int top)
+    {
+        for (int pack : packs)
+        {
+            if (!stacked[pack])
+            {
+                stacked[pack] = true;
+                stack[top++] = pack;
+            }
+        }
+        return top;
+    }
+
+    private void markDirty(int index)
+    {
+        if (!isDirty[index])
+        {
+            isDirty[index] = true;
+            dirty[dirtyCount++] = index;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list)
+    {
+        if (list.isEmpty())
+        {
+            return NONE;
+        }
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
@@ -24,25 +24,22 @@
 
 package com.izforge.izpack.panels.packs;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.swing.table.AbstractTableModel;
 
-import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.LocaleDatabase;
 import com.izforge.izpack.api.data.Pack;
-import com.izforge.izpack.api.data.PackColor;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.installer.data.GUIInstallData;
+import com.izforge.izpack.installer.data.InstallationInformation;
 import com.izforge.izpack.util.Debug;
 
 /**
@@ -72,13 +69,10 @@ public class PacksModel extends AbstractTableModel
     private LocaleDatabase langpack;
 
     // This is used to represent the status of the checkbox
-    private int[] checkValues;
+    private PackSelection selection;
 
-    // Map to hold the object name relationship
-    Map<String, Pack> namesObj;
-
-    // Map to hold the object name relationship
-    Map<String, Integer> namesPos;
+    // the indexes of the packs marked as required
+    private List<Integer> requiredPacks;
 
     // reference to the RulesEngine for validating conditions
     private RulesEngine rules;
@@ -101,35 +95,47 @@ public class PacksModel extends AbstractTableModel
 
             try
             {
-                FileInputStream fin = new FileInputStream(new File(idata.getInstallPath() + File.separator + AutomatedInstallData.INSTALLATION_INFORMATION));
-                ObjectInputStream oin = new ObjectInputStream(fin);
-                List<Pack> packsinstalled = (List) oin.readObject();
-                for (Pack installedpack : packsinstalled)
+                InstallationInformation information = InstallationInformation.read(idata.getInstallPath());
+                if (information != null)
                 {
-                    if ((installedpack.id != null) && (installedpack.id.length() > 0))
+                    List<Pack> packsinstalled = information.getPacks();
+                    if (information.hasFiles())
                     {
-                        this.installedpacks.put(installedpack.id, installedpack);
+                        // the installation is modified incrementally, installed packs can be
+                        // deselected to remove them. Packs not installed keep their default
+                        // selection
+                        Set<String> keys = new HashSet<String>();
+                        for (Pack installedpack : packsinstalled)
+                        {
+                            keys.add(InstallationInformation.getKey(installedpack));
+                        }
+                        List<Pack> selectedpacks = idata.getSelectedPacks();
+                        for (Pack availablepack : idata.getAvailablePacks())
+                        {
+                            if (keys.contains(InstallationInformation.getKey(availablepack))
+                                    && !selectedpacks.contains(availablepack))
+                            {
+                                selectedpacks.add(availablepack);
+                            }
+                        }
                     }
                     else
                     {
-                        this.installedpacks.put(installedpack.name, installedpack);
+                        for (Pack installedpack : packsinstalled)
+                        {
+                            this.installedpacks.put(InstallationInformation.getKey(installedpack), installedpack);
+                        }
+                        this.removeAlreadyInstalledPacks(idata.getSelectedPacks());
                     }
-                }
-                this.removeAlreadyInstalledPacks(idata.getSelectedPacks());
-                Debug.trace("Found " + packsinstalled.size() + " installed packs");
+                    Debug.trace("Found " + packsinstalled.size() + " installed packs");
 
-                Properties variables = (Properties) oin.readObject();
+                    Properties variables = information.getVariables();
 
-                for (Object key : variables.keySet())
-                {
-                    idata.setVariable((String) key, (String) variables.get(key));
+                    for (Object key : variables.keySet())
+                    {
+                        idata.setVariable((String) key, (String) variables.get(key));
+                    }
                 }
-                fin.close();
-            }
-            catch (FileNotFoundException e)
-            {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
             }
             catch (IOException e)
             {
@@ -164,8 +170,15 @@ public class PacksModel extends AbstractTableModel
         this.variables = idata.getVariables();
         this.variables.setProperty(INITAL_PACKSELECTION, Boolean.toString(true));
         langpack = panel.getLangpack();
-        checkValues = new int[packs.size()];
-        reverseDeps();
+        selection = new PackSelection(packs);
+        requiredPacks = new ArrayList<Integer>();
+        for (int i = 0; i < packs.size(); i++)
+        {
+            if (packs.get(i).required)
+            {
+                requiredPacks.add(i);
+            }
+        }
         initvalues();
         this.updateConditions(true);
         refreshPacksToInstall();
@@ -217,9 +230,9 @@ public class PacksModel extends AbstractTableModel
         {
             changes = false;
             // look for packages,
-            for (Pack pack : packs)
+            for (int pos = 0; pos < packs.size(); pos++)
             {
-                int pos = getPos(pack.name);
+                Pack pack = packs.get(pos);
                 Debug.trace("Conditions fulfilled for: " + pack.name + "?");
                 if (!this.rules.canInstallPack(pack.id, this.variables))
                 {
@@ -230,9 +243,9 @@ public class PacksModel extends AbstractTableModel
                         Debug.trace(pack.id + " can be installed optionally.");
                         if (initial)
                         {
-                            if (checkValues[pos] != 0)
+                            if (selection.getState(pos) != PackSelection.DESELECTED)
                             {
-                                checkValues[pos] = 0;
+                                selection.setState(pos, PackSelection.DESELECTED);
                                 changes = true;
                                 // let the process start from the beginning
                                 break;
@@ -246,9 +259,9 @@ public class PacksModel extends AbstractTableModel
                     else
                     {
                         Debug.trace(pack.id + " can not be installed.");
-                        if (checkValues[pos] != -2)
+                        if (selection.getState(pos) != PackSelection.DISABLED)
                         {
-                            checkValues[pos] = -2;
+                            selection.setState(pos, PackSelection.DISABLED);
                             changes = true;
                             // let the process start from the beginning
                             break;
@@ -260,125 +273,37 @@ public class PacksModel extends AbstractTableModel
         }
     }
 
-    /**
-     * Creates the reverse dependency graph
-     */
-    private void reverseDeps()
-    {
-        // name to pack map
-        namesObj = new HashMap<String, Pack>();
-        for (Pack pack : packs)
-        {
-            namesObj.put(pack.name, pack);
-        }
-        // process each pack
-        for (Pack pack : packs)
-        {
-            List<String> deps = pack.dependencies;
-            for (int j = 0; deps != null && j < deps.size(); j++)
-            {
-                String name = deps.get(j);
-                Pack parent = namesObj.get(name);
-                parent.addRevDep(pack.name);
-            }
-        }
-
-    }
-
     private void initvalues()
     {
-        // name to pack position map
-        namesPos = new HashMap<String, Integer>();
-        for (int i = 0; i < packs.size(); i++)
-        {
-            Pack pack = packs.get(i);
-            namesPos.put(pack.name, i);
-        }
         // Init to the first values
+        Set<Pack> selected = new HashSet<Pack>(packsToInstall);
         for (int i = 0; i < packs.size(); i++)
         {
-            Pack pack = packs.get(i);
-            if (packsToInstall.contains(pack))
+            if (selected.contains(packs.get(i)))
             {
-                checkValues[i] = 1;
+                selection.setState(i, PackSelection.SELECTED);
             }
         }
 
         // Check out and disable the ones that are excluded by non fullfiled
         // deps
+        selection.updateDependencies();
+
+        // for mutual exclusion, uncheck uncompatible packs too
+        // (if available in the current installGroup)
         for (int i = 0; i < packs.size(); i++)
         {
-            Pack pack = packs.get(i);
-            if (checkValues[i] == 0)
-            {
-                List<String> deps = pack.revDependencies;
-                for (int j = 0; deps != null && j < deps.size(); j++)
-                {
-                    String name = deps.get(j);
-                    int pos = getPos(name);
-                    checkValues[pos] = -2;
-                }
-            }
-            // for mutual exclusion, uncheck uncompatible packs too
-            // (if available in the current installGroup)
-
-            if (checkValues[i] > 0 && pack.excludeGroup != null)
-            {
-                for (int q = 0; q < packs.size(); q++)
-                {
-                    if (q != i)
-                    {
-                        Pack otherpack = packs.get(q);
-                        if (pack.excludeGroup.equals(otherpack.excludeGroup))
-                        {
-                            if (checkValues[q] == 1)
-                            {
-                                checkValues[q] = 0;
-                            }
-                        }
-                    }
-                }
-            }
+            selection.updateExcludes(i);
         }
+
         // The required ones must propagate their required status to all the
         // ones
         // that they depend on
-        for (Pack pack : packs)
-        {
-            if (pack.required)
-            {
-                propRequirement(pack.name);
-            }
-        }
+        selection.require(requiredPacks);
 
         refreshPacksToInstall();
     }
 
-    private void propRequirement(String name)
-    {
-
-        final int pos = getPos(name);
-        checkValues[pos] = -1;
-        List<String> deps = packs.get(pos).dependencies;
-        for (int i = 0; deps != null && i < deps.size(); i++)
-        {
-            String s = deps.get(i);
-            propRequirement(s);
-        }
-
-    }
-
-    /**
-     * Given a map of names and Integer for position and a name it return the position of this name
-     * as an int
-     *
-     * @return position of the name
-     */
-    private int getPos(String name)
-    {
-        return namesPos.get(name);
-    }
-
     /*
      * @see TableModel#getRowCount()
      */
@@ -430,7 +355,7 @@ public class PacksModel extends AbstractTableModel
 
     public boolean isCellEditable(int rowIndex, int columnIndex)
     {
-        if (checkValues[rowIndex] < 0)
+        if (selection.getState(rowIndex) < 0)
         {
             return false;
         }
@@ -451,7 +376,7 @@ public class PacksModel extends AbstractTableModel
         {
             case 0:
 
-                return checkValues[rowIndex];
+                return selection.getState(rowIndex);
 
             case 1:
 
@@ -496,11 +421,11 @@ public class PacksModel extends AbstractTableModel
                         {
                             if (pack.required)
                             {
-                                checkValues[rowIndex] = -1;
+                                selection.setState(rowIndex, PackSelection.REQUIRED);
                             }
                             else
                             {
-                                checkValues[rowIndex] = 1;
+                                selection.setState(rowIndex, PackSelection.SELECTED);
                             }
                         }
                     }
@@ -508,20 +433,20 @@ public class PacksModel extends AbstractTableModel
                     {
                         if (pack.required)
                         {
-                            checkValues[rowIndex] = -1;
+                            selection.setState(rowIndex, PackSelection.REQUIRED);
                         }
                         else
                         {
-                            checkValues[rowIndex] = 1;
+                            selection.setState(rowIndex, PackSelection.SELECTED);
                         }
                     }
                 }
                 else
                 {
                     packadded = false;
-                    checkValues[rowIndex] = 0;
+                    selection.setState(rowIndex, PackSelection.DESELECTED);
                 }
-                updateExcludes(rowIndex);
+                selection.updateExcludes(rowIndex);
                 updateDeps();
 
                 if (packadded)
@@ -577,7 +502,7 @@ public class PacksModel extends AbstractTableModel
             {
                 key = pack.name;
             }
-            if ((Math.abs(checkValues[i]) == 1) && (!installedpacks.containsKey(key)))
+            if (selection.isSelected(i) && (!installedpacks.containsKey(key)))
             {
                 packsToInstall.add(pack);
             }
@@ -599,7 +524,7 @@ public class PacksModel extends AbstractTableModel
             }
             if (installedpacks.containsKey(key))
             {
-                checkValues[i] = -3;
+                selection.setState(i, PackSelection.INSTALLED);
             }
         }
         // add hidden packs
@@ -616,93 +541,43 @@ public class PacksModel extends AbstractTableModel
     /**
      * This function updates the checkboxes after a change by disabling packs that cannot be
      * installed anymore and enabling those that can after the change. This is accomplished by
-     * running a search that pinpoints the packs that must be disabled by a non-fullfiled
-     * dependency.
+     * propagating the change to the packs depending on the changed packs only.
      */
     private void updateDeps()
     {
-        int[] statusArray = new int[packs.size()];
-        for (int i = 0; i < statusArray.length; i++)
-        {
-            statusArray[i] = 0;
-        }
-        dfs(statusArray);
-        for (int i = 0; i < statusArray.length; i++)
-        {
-            if (statusArray[i] == 0 && checkValues[i] < 0)
-            {
-                checkValues[i] += 2;
-            }
-            if (statusArray[i] == 1 && checkValues[i] >= 0)
-            {
-                checkValues[i] = -2;
-            }
-
-        }
+        selection.updateDependencies();
         // The required ones must propagate their required status to all the
         // ones
         // that they depend on
-        for (Pack pack : packs)
+        List<Integer> required = new ArrayList<Integer>(requiredPacks.size());
+        for (int index : requiredPacks)
         {
-            if (pack.required)
+            if (isRequired(packs.get(index), rules, variables))
             {
-                String packid = pack.id;
-                if (packid != null)
-                {
-                    if (!(!this.rules.canInstallPack(packid, this.variables) && this.rules.canInstallPackOptional(packid, this.variables)))
-                    {
-                        propRequirement(pack.name);
-                    }
-                }
-                else
-                {
-                    propRequirement(pack.name);
-                }
+                required.add(index);
             }
         }
-
+        selection.require(required);
     }
 
-    /*
-     * Sees which packs (if any) should be unchecked and updates checkValues
+    /**
+     * Determines if a pack is required under the current conditions. A required pack which may
+     * only be installed optionally is not.
+     *
+     * @param pack      the pack
+     * @param rules     the rules to check the pack conditions with
+     * @param variables the current variables
+     * @return <tt>true</tt> if the pack and its dependencies must be installed
      */
-
-    private void updateExcludes(int rowindex)
+    static boolean isRequired(Pack pack, RulesEngine rules, Properties variables)
     {
-        int value = checkValues[rowindex];
-        Pack pack = packs.get(rowindex);
-        if (value > 0 && pack.excludeGroup != null)
-        {
-            for (int q = 0; q < packs.size(); q++)
-            {
-                if (rowindex != q)
-                {
-                    Pack otherpack = packs.get(q);
-                    String name1 = otherpack.excludeGroup;
-                    String name2 = pack.excludeGroup;
-                    if (name2.equals(name1))
-                    {
-                        if (checkValues[q] == 1)
-                        {
-                            checkValues[q] = 0;
-                        }
-                    }
-                }
-            }
-        }
+        return pack.required && (pack.id == null || rules.canInstallPack(pack.id, variables)
+                || !rules.canInstallPackOptional(pack.id, variables));
     }
 
     private void updateBytes()
     {
-        long bytes = 0;
-        for (int q = 0; q < packs.size(); q++)
-        {
-            if (Math.abs(checkValues[q]) == 1)
-            {
-                Pack pack = packs.get(q);
-                bytes += pack.nbytes;
-            }
-        }
+        long bytes = selection.getBytes();
 
         // add selected hidden bytes
         for (Pack hidden : this.hiddenPacks)
@@ -715,66 +590,6 @@ public class PacksModel extends AbstractTableModel
         panel.setBytes(bytes);
     }
 
-    /**
-     * We use a modified dfs graph search algorithm as described in: Thomas H. Cormen, Charles
-     * Leiserson, Ronald Rivest and Clifford Stein. Introduction to algorithms 2nd Edition
-     * 540-549,MIT Press, 2001
-     */
-    private int dfs(int[] status)
-    {
-        for (int i = 0; i < packs.size(); i++)
-        {
-            for (Pack pack : packs)
-            {
-                pack.color = PackColor.WHITE;
-            }
-            Pack pack = packs.get(i);
-            boolean wipe = false;
-
-            if (dfsVisit(pack, status, wipe) != 0)
-            {
-                return -1;
-            }
-
-        }
-        return 0;
-    }
-
-    private int dfsVisit(Pack u, int[] status, boolean wipe)
-    {
-        u.color = PackColor.GREY;
-        int check = checkValues[getPos(u.name)];
-
-        if (Math.abs(check) != 1)
-        {
-            wipe = true;
-        }
-        List<String> deps = u.revDependencies;
-        if (deps != null)
-        {
-            for (String name : deps)
-            {
-                Pack v = namesObj.get(name);
-                if (wipe)
-                {
-                    status[getPos(v.name)] = 1;
-                }
-                if (v.color == PackColor.WHITE)
-                {
-
-                    final int result = dfsVisit(v, status, wipe);
-                    if (result != 0)
-                    {
-                        return result;
-                    }
-                }
-            }
-        }
-        u.color = PackColor.BLACK;
-        return 0;
-    }
-
-
     /**
      * @return the installedpacks
      */
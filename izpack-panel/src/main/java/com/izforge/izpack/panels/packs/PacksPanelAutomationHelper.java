@@ -30,7 +30,9 @@ import com.izforge.izpack.installer.automation.PanelAutomation;
 import com.izforge.izpack.util.Debug;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Functions to support automated usage of the PacksPanel
@@ -197,6 +199,8 @@ public class PacksPanelAutomationHelper implements PanelAutomation
                 }
             }
         }
+        updateDependencies(idata);
+
         // Update panelRoot to reflect the changes made by the automation helper, panel validate or panel action
         for (int counter = panelRoot.getChildrenCount(); counter > 0; counter--)
         {
@@ -204,4 +208,48 @@ public class PacksPanelAutomationHelper implements PanelAutomation
         }
         makeXMLData(idata, panelRoot);
     }
+
+    /**
+     * Applies the dependencies of the packs to the selection like the packs panels do: packs
+     * depending on a pack which isn't selected are removed, and the packs required packs depend
+     * on are added.
+     *
+     * @param idata the installation data
+     */
+    private void updateDependencies(AutomatedInstallData idata)
+    {
+        List<Pack> available = idata.getAvailablePacks();
+        List<Pack> selectedPacks = idata.getSelectedPacks();
+        PackSelection selection = new PackSelection(available);
+        Set<Pack> selected = new HashSet<Pack>(selectedPacks);
+        List<Integer> required = new ArrayList<Integer>();
+        for (int i = 0; i < available.size(); i++)
+        {
+            Pack pack = available.get(i);
+            if (selected.contains(pack))
+            {
+                selection.setState(i, PackSelection.SELECTED);
+            }
+            if (PacksModel.isRequired(pack, idata.getRules(), idata.getVariables()))
+            {
+                required.add(i);
+            }
+        }
+        selection.updateDependencies();
+        selection.require(required);
+
+        selectedPacks.clear();
+        for (int i = 0; i < available.size(); i++)
+        {
+            Pack pack = available.get(i);
+            if (selection.isSelected(i))
+            {
+                selectedPacks.add(pack);
+            }
+            else if (selected.contains(pack))
+            {
+                Debug.log("Pack [" + pack.name + "] removed from selection, as a pack it depends on is not selected.");
+            }
+        }
+    }
 }
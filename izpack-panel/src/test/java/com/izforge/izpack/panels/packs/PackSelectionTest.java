@@ -0,0 +1,143 @@
+package com.izforge.izpack.panels.packs;
+
+import com.izforge.izpack.api.data.Pack;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the pack selection
+ */
+public class PackSelectionTest
+{
+    @Test
+    public void shouldDisableDependentsOfDeselectedPacks()
+    {
+        PackSelection selection = new PackSelection(Arrays.asList(
+                pack("base", 100), pack("lib", 20, "base"), pack("app", 3, "lib")));
+        for (int i = 0; i < 3; i++)
+        {
+            selection.setState(i, PackSelection.SELECTED);
+        }
+        selection.updateDependencies();
+        assertThat(selection.getBytes(), Is.is(123L));
+
+        selection.setState(0, PackSelection.DESELECTED);
+        selection.updateDependencies();
+        assertThat(selection.getState(1), Is.is(PackSelection.DISABLED));
+        assertThat(selection.getState(2), Is.is(PackSelection.DISABLED));
+        assertThat(selection.getBytes(), Is.is(0L));
+
+        selection.setState(0, PackSelection.SELECTED);
+        selection.updateDependencies();
+        assertThat(selection.getState(1), Is.is(PackSelection.DESELECTED));
+        assertThat(selection.getState(2), Is.is(PackSelection.DISABLED));
+        assertThat(selection.getBytes(), Is.is(100L));
+
+        selection.setState(1, PackSelection.SELECTED);
+        selection.updateDependencies();
+        assertThat(selection.getState(2), Is.is(PackSelection.DESELECTED));
+        assertThat(selection.getBytes(), Is.is(120L));
+    }
+
+    @Test
+    public void shouldDeselectOtherPacksOfExcludeGroup()
+    {
+        Pack first = pack("first", 1);
+        Pack second = pack("second", 2);
+        Pack third = pack("third", 4);
+        first.excludeGroup = second.excludeGroup = "group";
+        PackSelection selection = new PackSelection(Arrays.asList(first, second, third));
+        selection.setState(0, PackSelection.SELECTED);
+        selection.setState(2, PackSelection.SELECTED);
+        selection.setState(1, PackSelection.SELECTED);
+        selection.updateExcludes(1);
+
+        assertThat(selection.getState(0), Is.is(PackSelection.DESELECTED));
+        assertThat(selection.getState(2), Is.is(PackSelection.SELECTED));
+        assertThat(selection.getExcludedPacks(0), Is.is(Collections.singletonList(1)));
+        assertThat(selection.getBytes(), Is.is(6L));
+    }
+
+    @Test
+    public void shouldRequireDependenciesOfRequiredPacks()
+    {
+        PackSelection selection = new PackSelection(Arrays.asList(
+                pack("base", 1), pack("lib", 2, "base"), pack("app", 4, "lib"), pack("doc", 8)));
+        selection.require(Collections.singletonList(2));
+
+        assertThat(selection.getState(0), Is.is(PackSelection.REQUIRED));
+        assertThat(selection.getState(1), Is.is(PackSelection.REQUIRED));
+        assertThat(selection.getState(2), Is.is(PackSelection.REQUIRED));
+        assertThat(selection.getState(3), Is.is(PackSelection.DESELECTED));
+        assertThat(selection.getBytes(), Is.is(7L));
+    }
+
+    @Test
+    public void shouldReconcilePacksChangedSinceLastUpdate()
+    {
+        PackSelection selection = new PackSelection(Arrays.asList(
+                pack("base", 1), pack("lib", 2, "base"), pack("doc", 4)));
+        selection.require(Collections.singletonList(1));
+        selection.updateDependencies();
+        selection.require(Collections.singletonList(1));
+        assertThat(selection.getState(0), Is.is(PackSelection.REQUIRED));
+        assertThat(selection.getState(1), Is.is(PackSelection.REQUIRED));
+
+        // a pack disabled from outside is enabled again by the next update
+        selection.setState(2, PackSelection.DISABLED);
+        selection.updateDependencies();
+        assertThat(selection.getState(2), Is.is(PackSelection.DESELECTED));
+        selection.require(Collections.singletonList(1));
+        assertThat(selection.getState(1), Is.is(PackSelection.REQUIRED));
+        assertThat(selection.getBytes(), Is.is(3L));
+    }
+
+    /**
+     * Toggles the packs of a long dependency chain, which used to take quadratic time per change.
+     */
+    @Test(timeout = 10000)
+    public void shouldPropagateChangesThroughLargeSelections()
+    {
+        int count = 1500;
+        List<Pack> packs = new ArrayList<Pack>(count);
+        packs.add(pack("pack0", 1));
+        for (int i = 1; i < count; i++)
+        {
+            packs.add(pack("pack" + i, 1, "pack" + (i - 1)));
+        }
+        PackSelection selection = new PackSelection(packs);
+        for (int i = 0; i < count; i++)
+        {
+            selection.setState(i, PackSelection.SELECTED);
+            selection.updateDependencies();
+        }
+        assertThat(selection.getBytes(), Is.is((long) count));
+
+        for (int i = count - 1; i >= 0; i--)
+        {
+            selection.setState(i, PackSelection.DESELECTED);
+            selection.updateDependencies();
+            assertThat(selection.getBytes(), Is.is((long) i));
+            assertThat(selection.getState(count - 1), Is.is(
+                    (i == count - 1) ? PackSelection.DESELECTED : PackSelection.DISABLED));
+            selection.setState(i, PackSelection.SELECTED);
+            selection.updateDependencies();
+            assertThat(selection.getBytes(), Is.is((long) i + 1));
+        }
+    }
+
+    private static Pack pack(String name, long bytes, String... dependencies)
+    {
+        Pack pack = new Pack(name, name, "", null, dependencies.length == 0 ? null : Arrays.asList(dependencies),
+                false, false, false, null, true);
+        pack.nbytes = bytes;
+        return pack;
+    }
+}
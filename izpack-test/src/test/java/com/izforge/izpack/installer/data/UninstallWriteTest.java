@@ -1,6 +1,7 @@
 package com.izforge.izpack.installer.data;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.CompiledLangpack;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.compiler.container.TestInstallationContainer;
 import com.izforge.izpack.matcher.ZipMatcher;
@@ -12,6 +13,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
 
 import static org.hamcrest.core.Is.is;
 
@@ -51,10 +56,47 @@ public class UninstallWriteTest
             uninstallJar, 
             ZipMatcher.isZipContainingFiles(
                 "com/izforge/izpack/uninstaller/Destroyer.class",
-                "langpack.xml", 
+                "langpack" + CompiledLangpack.EXTENSION,
                 "META-INF/MANIFEST.MF", 
                 "com/izforge/izpack/gui/IconsDatabase.class",
+                "com/izforge/izpack/util/InstallManifest.class",
+                "install.manifest",
                 "/img/trash.png"));
 
     }
+
+    @Test
+    @InstallFile("samples/basicInstall/basicInstall.xml")
+    public void testUninstallerReadsManifest() throws Exception
+    {
+        uninstallDataWriter.write();
+
+        String dest = IoHelper.translatePath(idata.getInfo().getUninstallerPath(), variableSubstitutor);
+        File uninstallJar = new File(dest + File.separator + idata.getInfo().getUninstallerName());
+
+        // the classes of the uninstaller jar only, as when the uninstaller is run
+        URLClassLoader loader = new URLClassLoader(new URL[]{uninstallJar.toURI().toURL()}, null);
+        Class<?> manifest = loader.loadClass("com.izforge.izpack.util.InstallManifest");
+        InputStream in = loader.getResourceAsStream((String) manifest.getField("RESOURCE").get(null));
+        try
+        {
+            Object reader = manifest.getMethod("read", InputStream.class).invoke(null, in);
+            assertThat((String) manifest.getMethod("getInstallPath").invoke(reader), is(idata.getInstallPath()));
+            List<?> block = (List<?>) manifest.getMethod("nextBlock").invoke(reader);
+            Object jarEntry = null;
+            for (Object entry : block)
+            {
+                if (entry.toString().equals(uninstallJar.getPath()))
+                {
+                    jarEntry = entry;
+                }
+            }
+            // the jar is recorded while it is written, so it has no fingerprint
+            assertThat(jarEntry.getClass().getMethod("isChecked").invoke(jarEntry), is((Object) false));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
 }
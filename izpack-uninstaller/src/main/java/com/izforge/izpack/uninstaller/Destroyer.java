@@ -25,14 +25,27 @@ import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.InstallManifest;
+import com.izforge.izpack.util.InstallMetrics;
 import com.izforge.izpack.util.OsVersion;
+import com.izforge.izpack.util.ThrottledProgressHandler;
 import com.izforge.izpack.util.unix.ShellScript;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
@@ -43,6 +56,21 @@ import java.util.TreeSet;
 public class Destroyer extends Thread
 {
 
+    /**
+     * The number of threads deleting files.
+     */
+    private static final int DELETE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The maximum number of files of a directory deleted by a single task.
+     */
+    private static final int DELETE_BATCH_SIZE = 256;
+
+    /**
+     * The maximum number of modified files listed when reporting them.
+     */
+    private static final int MAX_REPORTED_FILES = 20;
+
     /**
      * True if the destroyer must force the recursive deletion.
      */
@@ -58,6 +86,11 @@ public class Destroyer extends Thread
      */
     private AbstractUIProgressHandler handler;
 
+    /**
+     * The destroyer listener, updated at a fixed rate for the progress of each file.
+     */
+    private ThrottledProgressHandler progress;
+
     /**
      * The constructor.
      *
@@ -72,6 +105,7 @@ public class Destroyer extends Thread
         this.installPath = installPath;
         this.forceDestroy = forceDestroy;
         this.handler = handler;
+        this.progress = new ThrottledProgressHandler(handler);
     }
 
     /**
@@ -79,6 +113,7 @@ public class Destroyer extends Thread
      */
     public void run()
     {
+        InstallMetrics.begin("uninstall");
         try
         {
             // We get the list of uninstaller listeners
@@ -89,27 +124,43 @@ public class Destroyer extends Thread
             FileExecutor executor = new FileExecutor(executables);
             executor.executeFiles(ExecutableFile.UNINSTALL, this.handler);
 
-            ArrayList<File> files = getFilesList();
+            // files changed since the installation are kept
+            List<File> modified = new ArrayList<File>();
+            ArrayList<File> files = readManifest(forceDestroy ? null : modified);
             int size = files.size();
+            InstallMetrics.count("uninstall.files", size);
+            InstallMetrics.count("uninstall.modified", modified.size());
+            long start = InstallMetrics.start();
 
             // Custem action listener stuff --- beforeDeletion ----
             informListeners(listeners[0], UninstallerListener.BEFORE_DELETION, files, handler);
 
-            handler.startAction("destroy", size);
+            progress.startAction("destroy", size);
 
             // We destroy the files
-            for (int i = 0; i < size; i++)
+            if (listeners[1].isEmpty())
+            {
+                deleteFiles(files);
+            }
+            else
             {
-                File file = files.get(i);
-                // Custem action listener stuff --- beforeDelete ----
-                informListeners(listeners[1], UninstallerListener.BEFORE_DELETE, file, handler);
+                // file listeners are informed of each file, in order
+                for (int i = 0; i < size; i++)
+                {
+                    File file = files.get(i);
+                    // Custem action listener stuff --- beforeDelete ----
+                    informListeners(listeners[1], UninstallerListener.BEFORE_DELETE, file, handler);
 
-                file.delete();
+                    file.delete();
 
-                // Custem action listener stuff --- afterDelete ----
-                informListeners(listeners[1], UninstallerListener.AFTER_DELETE, file, handler);
+                    // Custem action listener stuff --- afterDelete ----
+                    informListeners(listeners[1], UninstallerListener.AFTER_DELETE, file, handler);
 
-                handler.progress(i, file.getAbsolutePath());
+                    if (progress.isDue())
+                    {
+                        progress.progress(i, file.getAbsolutePath());
+                    }
+                }
             }
 
             // Custem action listener stuff --- afterDeletion ----
@@ -127,8 +178,13 @@ public class Destroyer extends Thread
             // We make a complementary cleanup
             handler.progress(size, "[ cleanups ]");
             cleanup(new File(installPath));
+            InstallMetrics.stop("uninstall", start);
 
             handler.stopAction();
+            if (!modified.isEmpty())
+            {
+                reportModifiedFiles(modified);
+            }
         }
         catch (Throwable err)
         {
@@ -171,11 +227,200 @@ public class Destroyer extends Thread
      */
     public ArrayList<File> getFilesList() throws Exception
     {
-        // Initialisations
-        InputStream in = getClass().getClassLoader().getResourceAsStream("install.log");
-        InputStreamReader inReader = new InputStreamReader(in);
-        BufferedReader reader = new BufferedReader(inReader);
-        return readBufferForFileList(reader);
+        return readManifest(null);
+    }
+
+    /**
+     * Reads the files to uninstall from the installation manifest of the uninstaller jar.
+     *
+     * @param modified the list receiving the files modified since the installation, which are
+     *                 left out, or <tt>null</tt> to uninstall all files
+     * @return the files, in reverse order
+     * @throws Exception if the manifest can't be read or the comparison fails
+     */
+    private ArrayList<File> readManifest(List<File> modified) throws Exception
+    {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(InstallManifest.RESOURCE);
+        try
+        {
+            return readManifestForFileList(InstallManifest.read(new BufferedInputStream(in)), modified);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the files of the manifest which must be uninstalled. The manifest is read block by
+     * block.
+     * <p/>
+     * If the modified files are requested, the files to uninstall are compared in parallel while
+     * the manifest is read. The size and the modification time of the files are compared first,
+     * files are only read if their size is unchanged but their modification time changed. Files
+     * which can't be read are considered modified.
+     *
+     * @param manifest the installation manifest
+     * @param modified the list receiving the files modified since the installation, which are
+     *                 left out, or <tt>null</tt> to return all files
+     * @return the files, in reverse order
+     * @throws Exception if the manifest can't be read or the comparison fails
+     */
+    public ArrayList<File> readManifestForFileList(InstallManifest manifest, List<File> modified) throws Exception
+    {
+        ArrayList<File> files = new ArrayList<File>();
+        ExecutorService executor = null;
+        if (modified != null)
+        {
+            executor = Executors.newFixedThreadPool(DELETE_THREADS, new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "IzPack - Destroyer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        try
+        {
+            LinkedList<Future<List<File>>> results = new LinkedList<Future<List<File>>>();
+            List<InstallManifest.Entry> batch = new ArrayList<InstallManifest.Entry>(DELETE_BATCH_SIZE);
+            List<InstallManifest.Entry> block;
+            while ((block = manifest.nextBlock()) != null)
+            {
+                for (InstallManifest.Entry entry : block)
+                {
+                    if (!entry.isUninstall())
+                    {
+                        continue;
+                    }
+                    files.add(new File(entry.getPath()));
+                    if (executor != null)
+                    {
+                        batch.add(entry);
+                        if (batch.size() == DELETE_BATCH_SIZE)
+                        {
+                            results.add(executor.submit(new Comparison(batch)));
+                            batch = new ArrayList<InstallManifest.Entry>(DELETE_BATCH_SIZE);
+                            // don't read further ahead than the comparisons
+                            while (results.size() > DELETE_THREADS * 2)
+                            {
+                                modified.addAll(getResult(results.removeFirst()));
+                            }
+                        }
+                    }
+                }
+            }
+            if (executor != null)
+            {
+                if (!batch.isEmpty())
+                {
+                    results.add(executor.submit(new Comparison(batch)));
+                }
+                for (Future<List<File>> result : results)
+                {
+                    modified.addAll(getResult(result));
+                }
+            }
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.shutdownNow();
+            }
+        }
+        if (modified != null && !modified.isEmpty())
+        {
+            files.removeAll(new HashSet<File>(modified));
+        }
+        Collections.reverse(files);
+        return files;
+    }
+
+    /**
+     * Returns the files to uninstall whose content changed since the installation.
+     *
+     * @param manifest the installation manifest
+     * @return the modified files
+     * @throws Exception if the comparison fails
+     */
+    List<File> getModifiedFiles(InstallManifest manifest) throws Exception
+    {
+        List<File> modified = new ArrayList<File>();
+        readManifestForFileList(manifest, modified);
+        return modified;
+    }
+
+    private static List<File> getResult(Future<List<File>> result) throws Exception
+    {
+        try
+        {
+            return result.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Compares a batch of installed files with their manifest entries.
+     */
+    private static class Comparison implements Callable<List<File>>
+    {
+        private final List<InstallManifest.Entry> entries;
+
+        Comparison(List<InstallManifest.Entry> entries)
+        {
+            this.entries = entries;
+        }
+
+        public List<File> call()
+        {
+            List<File> changed = new ArrayList<File>();
+            for (InstallManifest.Entry entry : entries)
+            {
+                try
+                {
+                    if (entry.isContentModified())
+                    {
+                        changed.add(new File(entry.getPath()));
+                    }
+                }
+                catch (IOException e)
+                {
+                    Debug.log("Cannot compare " + entry.getPath() + ": " + e.getMessage());
+                    changed.add(new File(entry.getPath()));
+                }
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Reports the modified files which were left in place.
+     *
+     * @param modified the modified files
+     */
+    private void reportModifiedFiles(List<File> modified)
+    {
+        StringBuilder message = new StringBuilder("The following files were modified after the installation and were not removed:");
+        for (int i = 0; i < modified.size(); i++)
+        {
+            Debug.log("Modified file not removed: " + modified.get(i));
+            if (i < MAX_REPORTED_FILES)
+            {
+                message.append('\n').append(modified.get(i).getAbsolutePath());
+            }
+        }
+        if (modified.size() > MAX_REPORTED_FILES)
+        {
+            message.append("\n... and ").append(modified.size() - MAX_REPORTED_FILES).append(" more");
+        }
+        handler.emitNotification(message.toString());
     }
 
     public ArrayList<File> readBufferForFileList(BufferedReader reader)
@@ -197,6 +442,99 @@ public class Destroyer extends Thread
         return new ArrayList<File>(files);
     }
 
+    /**
+     * Deletes files in parallel.
+     * <p/>
+     * The files of each directory are deleted by tasks of their own. Files which can't be deleted
+     * then, mostly directories whose content was not deleted yet, are deleted afterwards, the
+     * content of directories first. Progress is reported once per task.
+     *
+     * @param files the files to delete, in reverse order
+     * @throws Exception if the deletion fails
+     */
+    void deleteFiles(List<File> files) throws Exception
+    {
+        // one batch per directory, directories with lots of files are split
+        List<List<File>> batches = new ArrayList<List<File>>();
+        Map<File, List<File>> directoryBatches = new LinkedHashMap<File, List<File>>();
+        for (File file : files)
+        {
+            File directory = file.getParentFile();
+            List<File> batch = directoryBatches.get(directory);
+            if (batch == null || batch.size() == DELETE_BATCH_SIZE)
+            {
+                batch = new ArrayList<File>();
+                directoryBatches.put(directory, batch);
+                batches.add(batch);
+            }
+            batch.add(file);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(DELETE_THREADS, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack - Destroyer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        List<File> remaining = new ArrayList<File>();
+        try
+        {
+            List<Future<List<File>>> results = new ArrayList<Future<List<File>>>(batches.size());
+            for (final List<File> batch : batches)
+            {
+                results.add(executor.submit(new Callable<List<File>>()
+                {
+                    public List<File> call()
+                    {
+                        List<File> failed = new ArrayList<File>();
+                        for (File file : batch)
+                        {
+                            if (!file.delete())
+                            {
+                                failed.add(file);
+                            }
+                        }
+                        return failed;
+                    }
+                }));
+            }
+
+            int deleted = 0;
+            for (int i = 0; i < batches.size(); i++)
+            {
+                try
+                {
+                    remaining.addAll(results.get(i).get());
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    throw (cause instanceof Exception) ? (Exception) cause : e;
+                }
+                List<File> batch = batches.get(i);
+                deleted += batch.size();
+                if (progress.isDue())
+                {
+                    progress.progress(deleted, batch.get(batch.size() - 1).getAbsolutePath());
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // remove the emptied directories bottom-up
+        Collections.sort(remaining, Collections.reverseOrder());
+        for (File file : remaining)
+        {
+            file.delete();
+        }
+    }
+
     /**
      * Gets the List of all Executables
      *
@@ -24,10 +24,9 @@ package com.izforge.izpack.uninstaller;
 import com.izforge.izpack.api.data.LocaleDatabase;
 import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.util.InstallManifest;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 public class UninstallerConsole
 {
@@ -45,7 +44,7 @@ public class UninstallerConsole
     public UninstallerConsole() throws Exception
     {
         // Initializations
-        langpack = new LocaleDatabase(UninstallerFrame.class.getResourceAsStream("/langpack.xml"));
+        langpack = UninstallerFrame.loadLangpack();
         getInstallPath();
     }
 
@@ -56,11 +55,15 @@ public class UninstallerConsole
      */
     private void getInstallPath() throws Exception
     {
-        InputStream in = UninstallerFrame.class.getResourceAsStream("/install.log");
-        InputStreamReader inReader = new InputStreamReader(in);
-        BufferedReader reader = new BufferedReader(inReader);
-        installPath = reader.readLine();
-        reader.close();
+        InputStream in = UninstallerFrame.class.getResourceAsStream("/" + InstallManifest.RESOURCE);
+        try
+        {
+            installPath = InstallManifest.readInstallPath(in);
+        }
+        finally
+        {
+            in.close();
+        }
     }
 
     /**
@@ -246,13 +249,12 @@ public class UninstallerConsole
 
         /**
          * Output a notification.
-         * <p/>
-         * Does nothing here.
          *
          * @param text
          */
         public void emitNotification(String text)
         {
+            out(text);
         }
 
         /**
@@ -19,19 +19,19 @@
 
 package com.izforge.izpack.uninstaller;
 
+import com.izforge.izpack.api.data.CompiledLangpack;
 import com.izforge.izpack.api.data.LocaleDatabase;
 import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
 import com.izforge.izpack.gui.ButtonFactory;
 import com.izforge.izpack.gui.IconsDatabase;
 import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.InstallManifest;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
 
 /**
@@ -100,7 +100,7 @@ public class UninstallerFrame extends JFrame
         super("IzPack - Uninstaller");
 
         // Initializations
-        langpack = new LocaleDatabase(UninstallerFrame.class.getResourceAsStream("/langpack.xml"));
+        langpack = loadLangpack();
         getInstallPath();
         icons = new IconsDatabase();
         loadIcons();
@@ -236,6 +236,29 @@ public class UninstallerFrame extends JFrame
         gbc.weighty = wy;
     }
 
+    /**
+     * Loads the langpack of the uninstaller, which is compiled if the installer had it so.
+     *
+     * @return the langpack
+     * @throws Exception if the langpack can't be read
+     */
+    static LocaleDatabase loadLangpack() throws Exception
+    {
+        InputStream in = UninstallerFrame.class.getResourceAsStream("/langpack" + CompiledLangpack.EXTENSION);
+        if (in == null)
+        {
+            in = UninstallerFrame.class.getResourceAsStream("/langpack.xml");
+        }
+        try
+        {
+            return new LocaleDatabase(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
     /**
      * Gets the installation path from the log file.
      *
@@ -243,11 +266,15 @@ public class UninstallerFrame extends JFrame
      */
     private void getInstallPath() throws Exception
     {
-        InputStream in = UninstallerFrame.class.getResourceAsStream("/install.log");
-        InputStreamReader inReader = new InputStreamReader(in);
-        BufferedReader reader = new BufferedReader(inReader);
-        installPath = reader.readLine();
-        reader.close();
+        InputStream in = UninstallerFrame.class.getResourceAsStream("/" + InstallManifest.RESOURCE);
+        try
+        {
+            installPath = InstallManifest.readInstallPath(in);
+        }
+        finally
+        {
+            in.close();
+        }
     }
 
     /**
@@ -404,13 +431,12 @@ public class UninstallerFrame extends JFrame
 
         /**
          * Output a notification.
-         * <p/>
-         * Does nothing here.
          *
          * @param text
          */
         public void emitNotification(String text)
         {
+            JOptionPane.showMessageDialog(UninstallerFrame.this, text, getTitle(), JOptionPane.INFORMATION_MESSAGE);
         }
 
         /**
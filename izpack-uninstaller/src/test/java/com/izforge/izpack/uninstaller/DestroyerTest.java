@@ -1,7 +1,9 @@
 package com.izforge.izpack.uninstaller;
 
 import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.util.InstallManifest;
 import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.internal.matchers.IsCollectionContaining;
@@ -10,6 +12,7 @@ import org.mockito.Mockito;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -38,6 +41,106 @@ public class DestroyerTest
                 files.get(1), files.get(2)));
     }
 
+    @Test
+    public void testDeleteFiles() throws Exception
+    {
+        File root = temporaryFolder.newFolder("installation");
+        ArrayList<String> paths = new ArrayList<String>();
+        paths.add(root.getAbsolutePath());
+        for (int i = 0; i < 3; i++)
+        {
+            File directory = new File(root, "dir" + i);
+            File subDirectory = new File(directory, "sub");
+            subDirectory.mkdirs();
+            paths.add(directory.getAbsolutePath());
+            paths.add(subDirectory.getAbsolutePath());
+            for (int j = 0; j < 300; j++)
+            {
+                File file = new File(j % 2 == 0 ? directory : subDirectory, "file" + j);
+                file.createNewFile();
+                paths.add(file.getAbsolutePath());
+            }
+        }
+        File log = temporaryFolder.newFile("delete.log");
+        paths.add(0, "installation path");
+        FileUtils.writeLines(log, paths);
+
+        AbstractUIProgressHandler handler = Mockito.mock(AbstractUIProgressHandler.class);
+        Destroyer destroyer = new Destroyer(root.getAbsolutePath(), false, handler);
+        ArrayList<File> files = destroyer.readBufferForFileList(
+                new BufferedReader(new InputStreamReader(new FileInputStream(log))));
+        destroyer.deleteFiles(files);
+
+        assertThat(root.exists(), Is.is(false));
+        Mockito.verify(handler).progress(Mockito.eq(files.size()), Mockito.anyString());
+    }
+
+    @Test
+    public void testGetModifiedFiles() throws Exception
+    {
+        File root = temporaryFolder.newFolder("modified");
+        File unchanged = createFile(root, "unchanged", "content");
+        File touched = createFile(root, "touched", "content");
+        File edited = createFile(root, "edited", "content");
+        File resized = createFile(root, "resized", "content");
+        File kept = createFile(root, "kept", "content");
+        File deleted = createFile(root, "deleted", "content");
+        List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>();
+        for (File file : new File[]{unchanged, touched, edited, resized, deleted})
+        {
+            entries.add(new InstallManifest.Entry(file.getAbsolutePath(), true, file.length(), file.lastModified(),
+                    InstallManifest.checksum(file)));
+        }
+        entries.add(new InstallManifest.Entry(kept.getAbsolutePath(), false, kept.length(), kept.lastModified(),
+                null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstallManifest.write(root.getAbsolutePath(), entries, out);
+
+        touched.setLastModified(touched.lastModified() - 10000);
+        FileUtils.writeStringToFile(edited, "CONTENT");
+        edited.setLastModified(edited.lastModified() - 10000);
+        FileUtils.writeStringToFile(resized, "more content");
+        FileUtils.writeStringToFile(kept, "more content");
+        deleted.delete();
+
+        Destroyer destroyer = new Destroyer(root.getAbsolutePath(), false,
+                Mockito.mock(AbstractUIProgressHandler.class));
+        List<File> modified = destroyer.getModifiedFiles(
+                InstallManifest.read(new ByteArrayInputStream(out.toByteArray())));
+
+        assertThat(modified.size(), Is.is(2));
+        assertThat(modified, IsCollectionContaining.<File>hasItems(edited, resized));
+    }
+
+    @Test
+    public void testUncheckedFilesAreNotModified() throws Exception
+    {
+        // the uninstaller jar is recorded while it is written
+        File root = temporaryFolder.newFolder("unchecked");
+        File jar = createFile(root, "uninstaller.jar", "partial");
+        List<InstallManifest.Entry> entries = new ArrayList<InstallManifest.Entry>();
+        entries.add(new InstallManifest.Entry(jar.getAbsolutePath(), true));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstallManifest.write(root.getAbsolutePath(), entries, out);
+        FileUtils.writeStringToFile(jar, "complete content");
+
+        Destroyer destroyer = new Destroyer(root.getAbsolutePath(), false,
+                Mockito.mock(AbstractUIProgressHandler.class));
+        List<File> modified = new ArrayList<File>();
+        List<File> files = destroyer.readManifestForFileList(
+                InstallManifest.read(new ByteArrayInputStream(out.toByteArray())), modified);
+
+        assertThat(modified.isEmpty(), Is.is(true));
+        assertThat(files, IsCollectionContaining.<File>hasItems(jar));
+    }
+
+    private File createFile(File directory, String name, String content) throws IOException
+    {
+        File file = new File(directory, name);
+        FileUtils.writeStringToFile(file, content);
+        return file.getAbsoluteFile();
+    }
+
     private ArrayList<File> createTestFiles() throws IOException
     {
         File temporaryFolder = this.temporaryFolder.newFolder("tempTestFolder");
@@ -0,0 +1,270 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes log events to a sink from a background thread.
+ * <p/>
+ * Events are queued in a bounded ring buffer, so logging threads only block when the writer
+ * falls behind by a whole buffer. The writer drains all the queued events at once and flushes the
+ * sink once per batch rather than once per event. The events still queued are written when the
+ * JVM exits, or when the appender is closed.
+ */
+public class AsyncLogAppender
+{
+    /**
+     * The default number of events queued.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The time waited for the events to be written when the JVM exits, in milliseconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 2000;
+
+    private final LogSink sink;
+
+    private final BlockingQueue<LogEvent> queue;
+
+    private final Thread writer;
+
+    private final Thread shutdownHook;
+
+    /**
+     * Determines if the appender is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The number of events appended, guarded by this.
+     */
+    private long appended;
+
+    /**
+     * The number of events written, guarded by this.
+     */
+    private long written;
+
+    /**
+     * Constructs an appender with the default capacity.
+     *
+     * @param sink the sink to write to
+     * @param name the name of the writer thread
+     */
+    public AsyncLogAppender(LogSink sink, String name)
+    {
+        this(sink, name, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an appender.
+     *
+     * @param sink     the sink to write to
+     * @param name     the name of the writer thread
+     * @param capacity the number of events queued before logging threads block
+     */
+    public AsyncLogAppender(LogSink sink, String name, int capacity)
+    {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<LogEvent>(capacity);
+
+        writer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                drain();
+            }
+        }, name);
+        writer.setDaemon(true);
+        writer.start();
+
+        shutdownHook = new Thread(name + " shutdown")
+        {
+            @Override
+            public void run()
+            {
+                flush(SHUTDOWN_TIMEOUT);
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues an event, waiting for room if the buffer is full. The event is discarded if the
+     * appender is closed.
+     *
+     * @param event the event
+     */
+    public void append(LogEvent event)
+    {
+        if (closed)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            appended++;
+        }
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                queue.put(event);
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the events appended so far to be written and flushed.
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return <tt>true</tt> if the events were written, <tt>false</tt> if the wait timed out or was
+     *         interrupted
+     */
+    public synchronized boolean flush(long timeout)
+    {
+        long target = appended;
+        long deadline = System.currentTimeMillis() + timeout;
+        try
+        {
+            while (written < target)
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the queued events, then stops the writer thread and closes the sink.
+     *
+     * @param timeout the maximum time to wait for the events to be written, in milliseconds
+     */
+    public void close(long timeout)
+    {
+        closed = true;
+        writer.interrupt();
+        try
+        {
+            writer.join(timeout);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+        catch (IllegalStateException e)
+        {
+            // the JVM is exiting, the hook is already running
+        }
+    }
+
+    /**
+     * Writes the queued events until the JVM exits or the appender is closed.
+     */
+    private void drain()
+    {
+        List<LogEvent> batch = new ArrayList<LogEvent>();
+        boolean failed = false;
+        while (!closed || !queue.isEmpty())
+        {
+            try
+            {
+                batch.add(queue.take());
+            }
+            catch (InterruptedException e)
+            {
+                continue;
+            }
+            queue.drainTo(batch);
+            try
+            {
+                for (LogEvent event : batch)
+                {
+                    sink.write(event);
+                }
+                sink.flush();
+            }
+            catch (IOException e)
+            {
+                // report once, the sink can't be relied on any more
+                if (!failed)
+                {
+                    failed = true;
+                    System.err.println("Cannot write log: " + e.getMessage());
+                }
+            }
+            catch (RuntimeException e)
+            {
+                if (!failed)
+                {
+                    failed = true;
+                    e.printStackTrace();
+                }
+            }
+            synchronized (this)
+            {
+                written += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+        try
+        {
+            sink.close();
+        }
+        catch (IOException e)
+        {
+            if (!failed)
+            {
+                System.err.println("Cannot close log: " + e.getMessage());
+            }
+        }
+    }
+}
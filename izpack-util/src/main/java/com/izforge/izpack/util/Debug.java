@@ -22,7 +22,6 @@
 package com.izforge.izpack.util;
 
 import java.io.*;
-import java.util.Date;
 import java.util.Enumeration;
 import java.util.Properties;
 
@@ -43,7 +42,12 @@ import java.util.Properties;
  * <dt> Additionally: </dt>
  * <dd> if -DLOG is given the output will be written in the File see #LOGFILENAME in the users Home
  * directory. </dd>
+ * <dt> Debug.event( LogEvent.Type.FILE, path, detail ) </dt>
+ * <dd> - to record a structured event, without building a message if nothing is logged </dd>
  * </dl>
+ * The output is written by background threads, see {@link AsyncLogAppender}, so that logging
+ * doesn't slow down the installation. If -Dizpack.log.format=json is given the log file is written
+ * as JSON lines.
  *
  * @author Julien Ponge, Klaus Bartz, Marc Eppelmann
  * @version $Revision$ ($Id$)
@@ -76,6 +80,12 @@ public class Debug
      */
     public static final String IZPACK_LOGFILE = "izpack.logfile";
 
+    /**
+     * System.Property Key: IZPACK_LOG_FORMAT = "izpack.log.format", "json" to write the log file
+     * as JSON lines
+     */
+    public static final String IZPACK_LOG_FORMAT = "izpack.log.format";
+
     /**
      * LOG_WITHOUT_DATE = 0
      */
@@ -129,6 +139,26 @@ public class Debug
 
     public static boolean LOG_TRACE_STATEMENTS = false;
 
+    /**
+     * The time waited for the entries of a replaced log to be written, in milliseconds.
+     */
+    private static final long FLUSH_TIMEOUT = 2000;
+
+    /**
+     * The appender writing traces to the console, created on first use.
+     */
+    private static AsyncLogAppender console;
+
+    /**
+     * The appender writing to the log file, created on first use.
+     */
+    private static AsyncLogAppender log;
+
+    /**
+     * The log file written by {@link #log}, to detect a change of log file.
+     */
+    private static PrintWriter logWriter;
+
     /**
      * The log initializion bloc.
      */
@@ -227,23 +257,13 @@ public class Debug
     {
         if (TRACE)
         {
-            // console.println(s.toString());
             if (LOG_TRACE_STATEMENTS)
             {
                 log(s);
             }
-            System.out.println(s);
-
-            if (STACKTRACE && (s instanceof Throwable))
-            {
-                // StringWriter sw = new StringWriter();
-                // PrintWriter pw = new PrintWriter(sw);
-                // ((Throwable)s).printStackTrace(pw);
-                // console.println(sw.toString());
-                ((Throwable) s).printStackTrace();
-            }
-
-            System.out.flush();
+            // the console sink prints the stack trace of exceptions
+            Object detail = (STACKTRACE && (s instanceof Throwable)) ? s : String.valueOf(s);
+            getConsole().append(new LogEvent(LogEvent.Type.MESSAGE, null, detail, false));
         }
     }
 
@@ -283,52 +303,136 @@ public class Debug
         // if LOG was given
         if (LOG)
         {
-            PrintWriter logfile;
-            if ((logfile = getLogFile()) == null)
+            AsyncLogAppender appender = getLog();
+            if (appender != null)
             {
-                logfile = createLogFile();
+                boolean dated = logWithTimeStamp(withWhatFormat) || logWithDate(withWhatFormat);
+                appender.append(new LogEvent(LogEvent.Type.MESSAGE, null, o, dated));
             }
-
-            if (logfile != null)
+            else
             {
-                if (o == null)
-                {
-                    o = "null";
-                }
+                System.err.println("Cannot write into logfile: <- '" + o + "'");
+            }
+        }
+    }
 
-                StringBuffer entry = new StringBuffer();
-                if (logWithTimeStamp(withWhatFormat))
-                {
-                    entry.append(System.currentTimeMillis());
-                    entry.append(';');
-                    entry.append(' ');
-                }
-                if (logWithDate(withWhatFormat))
+    /**
+     * Records a structured event, on the console if tracing and in the log file if logging.
+     * <p/>
+     * Nothing is created if neither is enabled, so the detail should be passed as is rather than
+     * formatted by the caller.
+     *
+     * @param type    the kind of the event
+     * @param subject the name of the pack, file, condition or variable the event is about
+     * @param detail  what happened, may be an exception
+     */
+    public static void event(LogEvent.Type type, String subject, Object detail)
+    {
+        if (TRACE || LOG)
+        {
+            LogEvent event = new LogEvent(type, subject, detail, true);
+            if (TRACE)
+            {
+                getConsole().append(event);
+            }
+            if (LOG)
+            {
+                AsyncLogAppender appender = getLog();
+                if (appender != null)
                 {
-                    entry.append(new Date());
-                    entry.append(';');
-                    entry.append(' ');
+                    appender.append(event);
                 }
+            }
+        }
+    }
 
-                entry.append(o);
-
-                logfile.println(entry.toString());
+    /**
+     * Waits for the traces and log entries recorded so far to be written.
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     */
+    public static void flush(long timeout)
+    {
+        AsyncLogAppender appender;
+        synchronized (Debug.class)
+        {
+            appender = console;
+        }
+        if (appender != null)
+        {
+            appender.flush(timeout);
+        }
+        synchronized (Debug.class)
+        {
+            appender = log;
+        }
+        if (appender != null)
+        {
+            appender.flush(timeout);
+        }
+    }
 
-                if (o instanceof Throwable)
-                {
-                    ((Throwable) o).printStackTrace(logfile);
-                }
+    /**
+     * Writes the log entries to the given sink instead of the log file, from now on. The entries
+     * logged so far are written to the previous sink, which is then closed.
+     *
+     * @param sink the sink to write to
+     */
+    public static synchronized void setLogSink(LogSink sink)
+    {
+        if (log != null)
+        {
+            log.close(FLUSH_TIMEOUT);
+        }
+        log = new AsyncLogAppender(sink, "IzPack - Log");
+        logWriter = getLogFile();
+    }
 
-                logfile.flush();
+    /**
+     * Returns the appender writing traces to the console, creating it if needed.
+     *
+     * @return the console appender
+     */
+    private static synchronized AsyncLogAppender getConsole()
+    {
+        if (console == null)
+        {
+            console = new AsyncLogAppender(new TextLogSink(new PrintWriter(System.out), true),
+                                           "IzPack - Trace");
+        }
+        return console;
+    }
 
-                // logfile.close();
-                // logFile = null;
+    /**
+     * Returns the appender writing to the log file, creating the log file if needed.
+     *
+     * @return the log file appender, or <tt>null</tt> if there is no log file
+     */
+    private static synchronized AsyncLogAppender getLog()
+    {
+        PrintWriter logfile = getLogFile();
+        if (log != null && logfile == logWriter)
+        {
+            return log;
+        }
+        if (logfile == null)
+        {
+            logfile = createLogFile();
+        }
+        if (logfile != null && logfile != logWriter)
+        {
+            LogSink sink;
+            if ("json".equalsIgnoreCase(System.getProperty(IZPACK_LOG_FORMAT)))
+            {
+                sink = new JsonLogSink(logfile);
             }
             else
             {
-                System.err.println("Cannot write into logfile: (" + logfile + ") <- '" + o + "'");
+                sink = new TextLogSink(logfile, true);
             }
+            setLogSink(sink);
         }
+        return log;
     }
 
     /**
@@ -183,6 +183,22 @@ public class FileExecutor
      * @return exit status of process
      */
     public int executeCommand(String[] params, String[] output, String dir)
+    {
+        return executeCommand(params, output, dir, 0);
+    }
+
+    /**
+     * Executed a system command and waits for completion, but not longer than the given timeout.
+     * If the command does not complete in time, the process is destroyed and -1 is returned.
+     *
+     * @param params  system command as string array
+     * @param output  contains output of the command index 0 = standard output index 1 = standard
+     *                error
+     * @param dir     the working directory for the execution
+     * @param timeout the maximum time in milliseconds to wait for the command, 0 to wait forever
+     * @return exit status of process
+     */
+    public int executeCommand(String[] params, String[] output, String dir, long timeout)
     {
         StringBuffer retval = new StringBuffer();
         retval.append("executeCommand\n");
@@ -227,8 +243,6 @@ public class FileExecutor
                 process = Runtime.getRuntime().exec(params);
             }
 
-            process = Runtime.getRuntime().exec(params);
-
             boolean isConsole = false;// TODO: impl from xml <execute
             // in_console=true ...>, but works already
             // if this flag is true
@@ -257,7 +271,19 @@ public class FileExecutor
                 errMonitorThread.start();
 
                 // wait for command to complete
-                exitStatus = process.waitFor();
+                if (timeout > 0)
+                {
+                    exitStatus = waitFor(process, timeout);
+                    if (exitStatus == -1)
+                    {
+                        Debug.trace("command timed out after " + timeout + " ms");
+                        process.destroy();
+                    }
+                }
+                else
+                {
+                    exitStatus = process.waitFor();
+                }
                 outMonitorThread.join();
                 errMonitorThread.join();
 
@@ -304,6 +330,38 @@ public class FileExecutor
         return exitStatus;
     }
 
+    /**
+     * Waits for the given process to terminate, but not longer than the given timeout.
+     *
+     * @param process the process to wait for
+     * @param timeout the maximum time in milliseconds to wait
+     * @return the exit status of the process, or -1 if it has not terminated in time
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    private int waitFor(Process process, long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        long delay = 1;
+        while (true)
+        {
+            try
+            {
+                return process.exitValue();
+            }
+            catch (IllegalThreadStateException e)
+            {
+                // still running
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            Thread.sleep(Math.min(delay, remaining));
+            delay = Math.min(delay * 2, 50);
+        }
+    }
+
     /**
      * Executes files specified at construction time.
      *
@@ -313,6 +371,7 @@ public class FileExecutor
      */
     public int executeFiles(int currentStage, AbstractUIHandler handler)
     {
+        long start = InstallMetrics.start();
         int exitStatus = 0;
         String[] output = new String[2];
         // String permissions = (System.getProperty("user.name").equals("root"))
@@ -392,6 +451,7 @@ public class FileExecutor
                 }
 
                 exitStatus = executeCommand(params, output);
+                InstallMetrics.count("executables.files", 1);
 
                 // bring a dialog depending on return code and failure handling
                 if (exitStatus != 0)
@@ -440,6 +500,7 @@ public class FileExecutor
             }
 
         }
+        InstallMetrics.stop("executables", start);
         return exitStatus;
     }
 
@@ -0,0 +1,707 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The manifest of the installed files, written into the uninstaller.
+ * <p/>
+ * The manifest records the path, the size, the modification time and optionally a checksum of
+ * each installed file, sorted by path. The paths are prefix-compressed: each path only stores the
+ * bytes following the prefix it shares with the previous path. The entries are grouped in blocks
+ * whose first path is stored in full, so that a block can be skipped without decoding its
+ * entries.
+ * <p/>
+ * The manifest is written and read as a stream, one block at a time: the format is a magic
+ * number, the installation path, then each block as its entry count, its length and its data,
+ * and finally an entry count of 0. A manifest being read is read forward only: each of
+ * {@link #nextBlock()}, {@link #find(String)} and {@link #getModifiedFiles(String)} continues
+ * from the block the previous call stopped at, so paths must be searched in ascending order.
+ */
+public class InstallManifest
+{
+    /**
+     * The name of the manifest in the uninstaller jar.
+     */
+    public static final String RESOURCE = "install.manifest";
+
+    /**
+     * The magic number starting a manifest.
+     */
+    static final int MAGIC = 0x495a4d32;
+
+    /**
+     * The number of entries per block.
+     */
+    static final int BLOCK_SIZE = 64;
+
+    private static final int UNINSTALL = 1;
+
+    private static final int CHECKSUM = 2;
+
+    private static final int UNCHECKED = 4;
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final byte[] NO_PATH = new byte[0];
+
+    private static final Comparator<Entry> PATH_ORDER = new Comparator<Entry>()
+    {
+        public int compare(Entry first, Entry second)
+        {
+            return first.path.compareTo(second.path);
+        }
+    };
+
+    /**
+     * An installed file.
+     */
+    public static class Entry
+    {
+        private final String path;
+
+        private final boolean uninstall;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final Long checksum;
+
+        private final boolean checked;
+
+        /**
+         * Constructs an entry without fingerprint, for a file which is uninstalled whatever its
+         * content, like a file still being written when the manifest is.
+         *
+         * @param path      the path of the file
+         * @param uninstall whether the file must be uninstalled
+         */
+        public Entry(String path, boolean uninstall)
+        {
+            this.path = path;
+            this.uninstall = uninstall;
+            this.size = -1;
+            this.lastModified = -1;
+            this.checksum = null;
+            this.checked = false;
+        }
+
+        /**
+         * Constructs an entry.
+         *
+         * @param path         the path of the file
+         * @param uninstall    whether the file must be uninstalled
+         * @param size         the size of the file
+         * @param lastModified the modification time of the file
+         * @param checksum     the checksum of the content of the file, or <tt>null</tt> if unknown
+         */
+        public Entry(String path, boolean uninstall, long size, long lastModified, Long checksum)
+        {
+            this.path = path;
+            this.uninstall = uninstall;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.checked = true;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public boolean isUninstall()
+        {
+            return uninstall;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+
+        /**
+         * Returns the checksum of the content of the file.
+         *
+         * @return the checksum, or <tt>null</tt> if it wasn't recorded
+         */
+        public Long getChecksum()
+        {
+            return checksum;
+        }
+
+        /**
+         * Determines if the size and the modification time of the file were recorded.
+         *
+         * @return <tt>false</tt> if the file is never considered modified
+         */
+        public boolean isChecked()
+        {
+            return checked;
+        }
+
+        /**
+         * Determines if the size or the modification time of the file changed since it was
+         * recorded.
+         *
+         * @return <tt>true</tt> if the file was modified or deleted, <tt>false</tt> if it is
+         *         unchanged or not checked
+         */
+        public boolean isModified()
+        {
+            if (!checked)
+            {
+                return false;
+            }
+            File file = new File(path);
+            return file.lastModified() != lastModified || file.length() != size;
+        }
+
+        /**
+         * Determines if the content of the file changed since it was recorded. The file is only
+         * read if its size is unchanged but its modification time changed, and its checksum was
+         * recorded.
+         *
+         * @return <tt>true</tt> if the content of the file changed, <tt>false</tt> if it is
+         *         unchanged, not checked or the file was deleted
+         * @throws IOException if the file can't be read
+         */
+        public boolean isContentModified() throws IOException
+        {
+            File file = new File(path);
+            if (!checked || !file.isFile())
+            {
+                return false;
+            }
+            if (file.length() != size)
+            {
+                return true;
+            }
+            if (file.lastModified() == lastModified)
+            {
+                return false;
+            }
+            return checksum == null || checksum != checksum(file);
+        }
+
+        @Override
+        public String toString()
+        {
+            return path;
+        }
+    }
+
+    /**
+     * Writes a manifest block by block. The entries must be added sorted by path.
+     */
+    public static class Writer
+    {
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+
+        private int blockEntries;
+
+        private int count;
+
+        private String last;
+
+        private byte[] previous = NO_PATH;
+
+        /**
+         * Constructs a writer, writing the header of the manifest.
+         *
+         * @param installPath the installation path
+         * @param out         the stream to write to, which is not closed by the writer
+         * @throws IOException if the stream can't be written
+         */
+        public Writer(String installPath, OutputStream out) throws IOException
+        {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeUTF(installPath);
+        }
+
+        /**
+         * Adds an entry. The entry is written once its block is complete.
+         *
+         * @param entry the entry, whose path must be greater than the path of the previous entry
+         * @throws IOException if the stream can't be written
+         */
+        public void add(Entry entry) throws IOException
+        {
+            if (last != null && entry.path.compareTo(last) <= 0)
+            {
+                throw new IllegalArgumentException("Manifest entries not sorted: " + entry.path + " after " + last);
+            }
+            byte[] path = entry.path.getBytes(ENCODING);
+            writePath(blockOut, path, previous);
+            blockOut.writeByte((entry.uninstall ? UNINSTALL : 0) | (entry.checksum != null ? CHECKSUM : 0)
+                    | (entry.checked ? 0 : UNCHECKED));
+            if (entry.checked)
+            {
+                writeVarLong(blockOut, entry.size);
+                writeVarLong(blockOut, entry.lastModified);
+            }
+            if (entry.checksum != null)
+            {
+                blockOut.writeLong(entry.checksum);
+            }
+            previous = path;
+            last = entry.path;
+            count++;
+            if (++blockEntries == BLOCK_SIZE)
+            {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Returns the number of entries added.
+         *
+         * @return the number of entries
+         */
+        public int size()
+        {
+            return count;
+        }
+
+        /**
+         * Writes the last block and the end of the manifest, and flushes the stream.
+         *
+         * @throws IOException if the stream can't be written
+         */
+        public void finish() throws IOException
+        {
+            writeBlock();
+            out.writeInt(0);
+            out.flush();
+        }
+
+        private void writeBlock() throws IOException
+        {
+            if (blockEntries == 0)
+            {
+                return;
+            }
+            blockOut.flush();
+            out.writeInt(blockEntries);
+            out.writeInt(block.size());
+            block.writeTo(out);
+            block.reset();
+            blockEntries = 0;
+            previous = NO_PATH;
+        }
+    }
+
+    private final DataInputStream in;
+
+    private final String installPath;
+
+    /**
+     * The block read ahead to find the end of the block searched last.
+     */
+    private Block pending;
+
+    /**
+     * The block searched last, which may hold the paths searched next.
+     */
+    private Block current;
+
+    private boolean ended;
+
+    private InstallManifest(DataInputStream in, String installPath)
+    {
+        this.in = in;
+        this.installPath = installPath;
+    }
+
+    /**
+     * Writes a manifest.
+     *
+     * @param installPath the installation path
+     * @param entries     the installed files, in any order
+     * @param out         the stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    public static void write(String installPath, Collection<Entry> entries, OutputStream out) throws IOException
+    {
+        List<Entry> sorted = new ArrayList<Entry>(entries);
+        Collections.sort(sorted, PATH_ORDER);
+        Writer writer = new Writer(installPath, out);
+        for (Entry entry : sorted)
+        {
+            writer.add(entry);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Starts reading a manifest. Only the header is read, the blocks are read as requested.
+     *
+     * @param in the stream to read from, which must stay open while the manifest is read
+     * @return the manifest
+     * @throws IOException if the stream can't be read or holds no manifest
+     */
+    public static InstallManifest read(InputStream in) throws IOException
+    {
+        DataInputStream dataIn = new DataInputStream(in);
+        return new InstallManifest(dataIn, readHeader(dataIn));
+    }
+
+    /**
+     * Reads the installation path of a manifest, without reading the entries.
+     *
+     * @param in the stream to read from
+     * @return the installation path
+     * @throws IOException if the stream can't be read or holds no manifest
+     */
+    public static String readInstallPath(InputStream in) throws IOException
+    {
+        return readHeader(new DataInputStream(in));
+    }
+
+    private static String readHeader(DataInputStream dataIn) throws IOException
+    {
+        if (dataIn.readInt() != MAGIC)
+        {
+            throw new IOException("Not an installation manifest");
+        }
+        return dataIn.readUTF();
+    }
+
+    /**
+     * Computes the checksum of the content of a file, as recorded in the manifest.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException if the file can't be read
+     */
+    public static long checksum(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the installation path.
+     *
+     * @return the installation path
+     */
+    public String getInstallPath()
+    {
+        return installPath;
+    }
+
+    /**
+     * Reads the entries of the next block.
+     *
+     * @return the entries, sorted by path, or <tt>null</tt> at the end of the manifest
+     * @throws IOException if the manifest can't be read
+     */
+    public List<Entry> nextBlock() throws IOException
+    {
+        current = null;
+        Block block = takeBlock();
+        return (block != null) ? block.getEntries() : null;
+    }
+
+    /**
+     * Reads forward to an installed file. Only the block which may hold the file is decoded.
+     *
+     * @param path the path of the file
+     * @return the file, or <tt>null</tt> if it wasn't installed
+     * @throws IOException if the manifest can't be read
+     */
+    public Entry find(String path) throws IOException
+    {
+        Block block = seek(path);
+        if (block != null)
+        {
+            for (Entry entry : block.getEntries())
+            {
+                if (entry.path.equals(path))
+                {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads forward to the installed files of a directory and its subdirectories, and returns
+     * those which were modified or deleted since they were recorded. Only the blocks holding the
+     * directory are decoded.
+     *
+     * @param directory the directory
+     * @return the modified files, sorted by path
+     * @throws IOException if the manifest can't be read
+     */
+    public List<Entry> getModifiedFiles(String directory) throws IOException
+    {
+        String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+        List<Entry> result = new ArrayList<Entry>();
+        Block block = seek(prefix);
+        if (block == null)
+        {
+            // the directory precedes the blocks left
+            block = takeBlock();
+        }
+        for (; block != null; block = takeBlock())
+        {
+            current = block;
+            for (Entry entry : block.getEntries())
+            {
+                if (entry.path.compareTo(prefix) < 0)
+                {
+                    continue;
+                }
+                if (!entry.path.startsWith(prefix))
+                {
+                    return result;
+                }
+                if (entry.isModified())
+                {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Skips the blocks preceding the one which holds the path if it was installed, i.e. the last
+     * block starting with a path not greater than the path, and returns that block.
+     *
+     * @return the block, or <tt>null</tt> if the path precedes the blocks left
+     */
+    private Block seek(String path) throws IOException
+    {
+        Block candidate = current;
+        if (candidate == null)
+        {
+            candidate = takeBlock();
+            if (candidate == null || candidate.getFirstPath().compareTo(path) > 0)
+            {
+                pending = candidate;
+                return null;
+            }
+        }
+        else if (candidate.getFirstPath().compareTo(path) > 0)
+        {
+            return null;
+        }
+        Block next;
+        while ((next = takeBlock()) != null && next.getFirstPath().compareTo(path) <= 0)
+        {
+            candidate = next;
+        }
+        pending = next;
+        current = candidate;
+        return candidate;
+    }
+
+    private Block takeBlock() throws IOException
+    {
+        if (pending != null)
+        {
+            Block block = pending;
+            pending = null;
+            return block;
+        }
+        return readBlock();
+    }
+
+    private Block readBlock() throws IOException
+    {
+        if (ended)
+        {
+            return null;
+        }
+        int entries = in.readInt();
+        if (entries == 0)
+        {
+            ended = true;
+            return null;
+        }
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new Block(entries, data);
+    }
+
+    /**
+     * The undecoded entries of a block.
+     */
+    private static class Block
+    {
+        private final int entries;
+
+        private final byte[] data;
+
+        private String firstPath;
+
+        Block(int entries, byte[] data)
+        {
+            this.entries = entries;
+            this.data = data;
+        }
+
+        String getFirstPath() throws IOException
+        {
+            if (firstPath == null)
+            {
+                firstPath = new String(readPath(open(), NO_PATH), ENCODING);
+            }
+            return firstPath;
+        }
+
+        List<Entry> getEntries() throws IOException
+        {
+            List<Entry> result = new ArrayList<Entry>(entries);
+            DataInputStream in = open();
+            byte[] path = NO_PATH;
+            for (int i = 0; i < entries; i++)
+            {
+                path = readPath(in, path);
+                int flags = in.readUnsignedByte();
+                String name = new String(path, ENCODING);
+                boolean uninstall = (flags & UNINSTALL) != 0;
+                if ((flags & UNCHECKED) != 0)
+                {
+                    result.add(new Entry(name, uninstall));
+                    continue;
+                }
+                long size = readVarLong(in);
+                long lastModified = readVarLong(in);
+                Long checksum = ((flags & CHECKSUM) != 0) ? in.readLong() : null;
+                result.add(new Entry(name, uninstall, size, lastModified, checksum));
+            }
+            return result;
+        }
+
+        private DataInputStream open()
+        {
+            return new DataInputStream(new ByteArrayInputStream(data));
+        }
+    }
+
+    /**
+     * Writes a path as the length of the prefix it shares with the previous path, followed by the
+     * remaining bytes.
+     *
+     * @param out      the stream to write to
+     * @param path     the path
+     * @param previous the previous path
+     * @throws IOException if the stream can't be written
+     */
+    public static void writePath(DataOutputStream out, byte[] path, byte[] previous) throws IOException
+    {
+        int shared = 0;
+        int max = Math.min(path.length, previous.length);
+        while (shared < max && path[shared] == previous[shared])
+        {
+            shared++;
+        }
+        writeVarLong(out, shared);
+        writeVarLong(out, path.length - shared);
+        out.write(path, shared, path.length - shared);
+    }
+
+    /**
+     * Reads a path written by {@link #writePath(DataOutputStream, byte[], byte[])}.
+     *
+     * @param in       the stream to read from
+     * @param previous the previous path
+     * @return the path
+     * @throws IOException if the stream can't be read
+     */
+    public static byte[] readPath(DataInputStream in, byte[] previous) throws IOException
+    {
+        int shared = (int) readVarLong(in);
+        int length = (int) readVarLong(in);
+        byte[] path = new byte[shared + length];
+        System.arraycopy(previous, 0, path, 0, shared);
+        in.readFully(path, shared, length);
+        return path;
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects timings and counters of an installation or an uninstallation, and reports them as JSON
+ * when the JVM exits.
+ * <p/>
+ * Timers keep the number of measures, their total, minimum and maximum, and a histogram where
+ * bucket <tt>i</tt> counts the measures below 2<sup>i</sup> microseconds. A counter named
+ * <tt>x.y</tt> is also reported as a rate per second of the timer <tt>x</tt>, like
+ * <tt>unpack.bytes/s</tt>.
+ * <p/>
+ * The report is written to the file given with -Dizpack.metrics=<i>file</i>, or to the log file
+ * if -DLOG is given. Without either, {@link #begin} leaves the metrics disabled and nothing is
+ * collected.
+ * <br>
+ * How to use it:
+ * <pre>
+ * long start = InstallMetrics.start();
+ * ...
+ * InstallMetrics.stop("parsables", start);
+ * InstallMetrics.count("parsables.files", n);
+ * </pre>
+ */
+public final class InstallMetrics
+{
+    /**
+     * System.Property Key: IZPACK_METRICS = "izpack.metrics", the file to write the report into
+     */
+    public static final String IZPACK_METRICS = "izpack.metrics";
+
+    /**
+     * The number of histogram buckets, the last one counting the measures over half an hour.
+     */
+    private static final int BUCKETS = 32;
+
+    private static final Map<String, Timer> timers = new TreeMap<String, Timer>();
+
+    private static final Map<String, long[]> counters = new TreeMap<String, long[]>();
+
+    /**
+     * What is measured, "install" or "uninstall".
+     */
+    private static String phase;
+
+    /**
+     * The time of {@link #begin}, in milliseconds since the epoch.
+     */
+    private static long began;
+
+    private static boolean reporting;
+
+    /**
+     * Whether metrics are collected, as decided by {@link #begin}.
+     */
+    private static volatile boolean enabled;
+
+    private InstallMetrics()
+    {
+    }
+
+    /**
+     * Starts collecting metrics, discarding those collected so far, and reports them when the JVM
+     * exits. Metrics are only collected if a report is requested.
+     *
+     * @param name what is measured, like "install" or "uninstall"
+     */
+    public static synchronized void begin(String name)
+    {
+        timers.clear();
+        counters.clear();
+        enabled = isRequested();
+        if (!enabled)
+        {
+            phase = null;
+            return;
+        }
+        phase = name;
+        began = System.currentTimeMillis();
+        if (!reporting)
+        {
+            reporting = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("IzPack - Metrics")
+            {
+                @Override
+                public void run()
+                {
+                    writeReport();
+                }
+            });
+        }
+    }
+
+    /**
+     * Determines if a report is requested, with -Dizpack.metrics=<i>file</i> or -DLOG.
+     *
+     * @return <tt>true</tt> if a report is requested
+     */
+    public static boolean isRequested()
+    {
+        String path = System.getProperty(IZPACK_METRICS);
+        return (path != null && path.length() > 0) || Debug.isLOG();
+    }
+
+    /**
+     * Determines if metrics are collected. Callers may skip measuring when they are not.
+     *
+     * @return <tt>true</tt> if metrics are collected
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time of a measure.
+     *
+     * @return the start time, to pass to {@link #stop}
+     */
+    public static long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a measure.
+     *
+     * @param name  the name of the timer
+     * @param start the start time of the measure
+     */
+    public static void stop(String name, long start)
+    {
+        record(name, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds a measure to a timer.
+     *
+     * @param name  the name of the timer
+     * @param nanos the measure, in nanoseconds
+     */
+    public static void record(String name, long nanos)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        synchronized (InstallMetrics.class)
+        {
+            Timer timer = timers.get(name);
+            if (timer == null)
+            {
+                timer = new Timer();
+                timers.put(name, timer);
+            }
+            timer.add(nanos);
+        }
+    }
+
+    /**
+     * Increments a counter.
+     *
+     * @param name   the name of the counter
+     * @param amount the amount to add
+     */
+    public static void count(String name, long amount)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        synchronized (InstallMetrics.class)
+        {
+            long[] counter = counters.get(name);
+            if (counter == null)
+            {
+                counter = new long[1];
+                counters.put(name, counter);
+            }
+            counter[0] += amount;
+        }
+    }
+
+    /**
+     * Returns the total of a timer.
+     *
+     * @param name the name of the timer
+     * @return the total of the measures, in nanoseconds, 0 if there is no such timer
+     */
+    public static synchronized long getTotal(String name)
+    {
+        Timer timer = timers.get(name);
+        return (timer != null) ? timer.total : 0;
+    }
+
+    /**
+     * Returns the value of a counter.
+     *
+     * @param name the name of the counter
+     * @return the value of the counter, 0 if there is no such counter
+     */
+    public static synchronized long getCount(String name)
+    {
+        long[] counter = counters.get(name);
+        return (counter != null) ? counter[0] : 0;
+    }
+
+    /**
+     * Returns the metrics collected so far as a JSON object.
+     *
+     * @return the report
+     */
+    public static synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder(1024);
+        report.append("{\"phase\":");
+        quote(report, phase);
+        report.append(",\"start\":").append(began);
+        report.append(",\"elapsedMillis\":").append(System.currentTimeMillis() - began);
+
+        report.append(",\"timers\":{");
+        String separator = "";
+        for (Map.Entry<String, Timer> entry : timers.entrySet())
+        {
+            report.append(separator);
+            quote(report, entry.getKey());
+            report.append(':');
+            entry.getValue().append(report);
+            separator = ",";
+        }
+
+        report.append("},\"counters\":{");
+        separator = "";
+        for (Map.Entry<String, long[]> entry : counters.entrySet())
+        {
+            report.append(separator);
+            quote(report, entry.getKey());
+            report.append(':');
+            report.append(entry.getValue()[0]);
+            separator = ",";
+        }
+
+        report.append("},\"rates\":{");
+        separator = "";
+        for (Map.Entry<String, long[]> entry : counters.entrySet())
+        {
+            String name = entry.getKey();
+            int dot = name.lastIndexOf('.');
+            Timer timer = (dot > 0) ? timers.get(name.substring(0, dot)) : null;
+            if (timer != null && timer.total > 0)
+            {
+                long rate = (long) (entry.getValue()[0] * 1e9 / timer.total);
+                report.append(separator);
+                quote(report, name + "/s");
+                report.append(':').append(rate);
+                separator = ",";
+            }
+        }
+        report.append("}}");
+        return report.toString();
+    }
+
+    /**
+     * Writes the report where requested, if anything was measured.
+     */
+    public static void writeReport()
+    {
+        String report;
+        synchronized (InstallMetrics.class)
+        {
+            if (phase == null)
+            {
+                return;
+            }
+            report = getReport();
+        }
+        String path = System.getProperty(IZPACK_METRICS);
+        if (path != null && path.length() > 0)
+        {
+            Writer writer = null;
+            try
+            {
+                writer = new OutputStreamWriter(new FileOutputStream(new File(path)), "UTF-8");
+                writer.write(report);
+                writer.write('\n');
+            }
+            catch (IOException e)
+            {
+                System.err.println("Cannot write metrics into: '" + path + "': " + e.getMessage());
+            }
+            finally
+            {
+                if (writer != null)
+                {
+                    try
+                    {
+                        writer.close();
+                    }
+                    catch (IOException e)
+                    {
+                        // ignore
+                    }
+                }
+            }
+        }
+        else if (Debug.isLOG())
+        {
+            Debug.log(report);
+            Debug.flush(1000);
+        }
+    }
+
+    /**
+     * Appends a string as a JSON string.
+     */
+    private static void quote(StringBuilder report, String value)
+    {
+        report.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                report.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                report.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                report.append(c);
+            }
+        }
+        report.append('"');
+    }
+
+    /**
+     * The measures of a timer.
+     */
+    private static class Timer
+    {
+        private long count;
+
+        private long total;
+
+        private long min = Long.MAX_VALUE;
+
+        private long max;
+
+        private final long[] histogram = new long[BUCKETS];
+
+        void add(long nanos)
+        {
+            count++;
+            total += nanos;
+            min = Math.min(min, nanos);
+            max = Math.max(max, nanos);
+            int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+            histogram[Math.min(bucket, BUCKETS - 1)]++;
+        }
+
+        void append(StringBuilder report)
+        {
+            report.append("{\"count\":").append(count);
+            report.append(",\"totalMillis\":").append(total / 1000000);
+            report.append(",\"minMicros\":").append(min / 1000);
+            report.append(",\"maxMicros\":").append(max / 1000);
+            report.append(",\"histogram\":[");
+            int last = BUCKETS - 1;
+            while (last > 0 && histogram[last] == 0)
+            {
+                last--;
+            }
+            for (int i = 0; i <= last; i++)
+            {
+                if (i > 0)
+                {
+                    report.append(',');
+                }
+                report.append(histogram[i]);
+            }
+            report.append("]}");
+        }
+    }
+}
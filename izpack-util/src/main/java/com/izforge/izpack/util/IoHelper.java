@@ -582,7 +582,9 @@ public class IoHelper
     }
 
     /**
-     * Translates a relative path to a local system path.
+     * Translates a relative path to a local system path. The path is compiled into a substitution
+     * template by the substitutor, which caches it, so that paths translated repeatedly are not
+     * parsed for variables again.
      *
      * @param destination The path to translate.
      * @return The translated path.
@@ -592,13 +594,24 @@ public class IoHelper
         // Parse for variables
         try
         {
-            destination = vs.substitute(destination);
+            destination = vs.compile(destination, SubstitutionType.TYPE_PLAIN).substitute();
         }
         catch (Exception e)
         {
             // ignore
         }
+        return translateSeparators(destination);
+    }
 
+    /**
+     * Converts the slashes of a path with already substituted variables into the file separator
+     * characters of the current system. Slashes masked with a backslash are kept.
+     *
+     * @param destination path to be translated
+     * @return translated path
+     */
+    public static String translateSeparators(String destination)
+    {
         // Convert the file separator characters
 
         // destination = destination.replace('/', File.separatorChar);
@@ -0,0 +1,116 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Writes log events as JSON lines, one object per event with the fields <tt>time</tt>,
+ * <tt>type</tt>, <tt>subject</tt> and <tt>detail</tt>, and <tt>stackTrace</tt> for exceptions.
+ */
+public class JsonLogSink implements LogSink
+{
+    private final Writer writer;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Constructs a JSON lines sink.
+     *
+     * @param writer the writer to write to
+     */
+    public JsonLogSink(Writer writer)
+    {
+        this.writer = writer;
+    }
+
+    public void write(LogEvent event) throws IOException
+    {
+        line.setLength(0);
+        line.append("{\"time\":").append(event.getTime());
+        line.append(",\"type\":\"").append(event.getType().name().toLowerCase()).append('"');
+        if (event.getSubject() != null)
+        {
+            line.append(",\"subject\":");
+            quote(event.getSubject());
+        }
+        line.append(",\"detail\":");
+        quote(event.getDetail().toString());
+        if (event.getDetail() instanceof Throwable)
+        {
+            StringWriter trace = new StringWriter();
+            ((Throwable) event.getDetail()).printStackTrace(new PrintWriter(trace));
+            line.append(",\"stackTrace\":");
+            quote(trace.toString());
+        }
+        line.append('}').append('\n');
+        writer.write(line.toString());
+    }
+
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    private void quote(String value)
+    {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        line.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
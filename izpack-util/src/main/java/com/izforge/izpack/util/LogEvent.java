@@ -0,0 +1,149 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+/**
+ * A log record.
+ * <p/>
+ * Events are created only if logging is enabled, so callers pass the subject and the detail of
+ * an event separately instead of building a message. The detail is converted to a string when
+ * the event is created, unless it is an exception, so that the event doesn't refer to objects
+ * which may change before it is written.
+ */
+public final class LogEvent
+{
+    /**
+     * The kind of an event.
+     */
+    public enum Type
+    {
+        /**
+         * A plain message, without subject.
+         */
+        MESSAGE,
+
+        /**
+         * An event about a pack, the subject being the pack name.
+         */
+        PACK,
+
+        /**
+         * An event about a file, the subject being the file path.
+         */
+        FILE,
+
+        /**
+         * An event about a condition, the subject being the condition id.
+         */
+        CONDITION,
+
+        /**
+         * An event about a variable, the subject being the variable name.
+         */
+        VARIABLE
+    }
+
+    private final long time;
+
+    private final Type type;
+
+    private final String subject;
+
+    private final Object detail;
+
+    private final boolean dated;
+
+    /**
+     * Constructs an event.
+     *
+     * @param type    the kind of the event
+     * @param subject the subject of the event, or <tt>null</tt> for messages
+     * @param detail  the detail of the event, may be an exception
+     * @param dated   whether the time of the event is written
+     */
+    public LogEvent(Type type, String subject, Object detail, boolean dated)
+    {
+        this.time = System.currentTimeMillis();
+        this.type = type;
+        this.subject = subject;
+        this.detail = (detail instanceof Throwable) ? detail : String.valueOf(detail);
+        this.dated = dated;
+    }
+
+    /**
+     * Returns the time of the event.
+     *
+     * @return the time, in milliseconds since the epoch
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Returns the kind of the event.
+     *
+     * @return the kind of the event
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the subject of the event.
+     *
+     * @return the subject, or <tt>null</tt> for messages
+     */
+    public String getSubject()
+    {
+        return subject;
+    }
+
+    /**
+     * Returns the detail of the event.
+     *
+     * @return the detail, a string or an exception
+     */
+    public Object getDetail()
+    {
+        return detail;
+    }
+
+    /**
+     * Determines if the time of the event is written.
+     *
+     * @return <tt>true</tt> if the time is written
+     */
+    public boolean isDated()
+    {
+        return dated;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (type == Type.MESSAGE)
+        {
+            return String.valueOf(detail);
+        }
+        return type.name().toLowerCase() + ' ' + subject + ": " + detail;
+    }
+}
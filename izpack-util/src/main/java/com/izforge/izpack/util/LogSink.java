@@ -0,0 +1,53 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.IOException;
+
+/**
+ * The destination of log events, like the console, a log file or a JSON lines file.
+ * <p/>
+ * Sinks are called by a single thread of an {@link AsyncLogAppender}, so they don't have to be
+ * thread safe.
+ */
+public interface LogSink
+{
+    /**
+     * Writes an event.
+     *
+     * @param event the event
+     * @throws IOException if the event can't be written
+     */
+    void write(LogEvent event) throws IOException;
+
+    /**
+     * Flushes the events written so far.
+     *
+     * @throws IOException if the events can't be flushed
+     */
+    void flush() throws IOException;
+
+    /**
+     * Closes the sink, once the events written so far are flushed.
+     *
+     * @throws IOException if the sink can't be closed
+     */
+    void close() throws IOException;
+}
@@ -26,6 +26,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.text.CharacterIterator;
 import java.text.SimpleDateFormat;
 import java.text.StringCharacterIterator;
@@ -35,7 +36,6 @@ import java.util.Enumeration;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
 
 /**
  * Allows an application to modify the jar file from which it came, including outright deletion. The
@@ -44,7 +44,7 @@ import java.util.zip.ZipEntry;
  * <p/>
  * Create a SelfModifier with a target method, then invoke the SelfModifier with arguments to be
  * passed to the target method. The jar file containing the target method's class (obtained by
- * reflection) will be extracted to a temporary directory, and a new java process will be spawned to
+ * reflection) will be copied to a temporary directory, and a new java process will be spawned to
  * invoke the target method. The original jar file may now be modified.
  * <p/>
  * <p/>
@@ -65,9 +65,10 @@ import java.util.zip.ZipEntry;
  * <ol>
  * <li>Program is launched, SelfModifier is created, invoke(String[]) is called
  * <li>A temporary directory (or "sandbox") is created in the default temp directory, and the jar
- * file contents ar extracted into it
- * <li>Phase 2 is spawned using the sandbox as it's classpath, SelfModifier as the main class, the
- * arguments to "invoke(String[])" as the main arguments, and the <a
+ * file is copied into it
+ * <li>The classes of the SelfModifier are extracted from the jar file into the sandbox
+ * <li>Phase 2 is spawned using the extracted classes as it's classpath, SelfModifier as the main
+ * class, the arguments to "invoke(String[])" as the main arguments, and the <a
  * href="#selfmodsysprops">SelfModifier system properties</a> set.
  * <li>Immidiately exit so the system unlocks the jar file
  * </ol>
@@ -75,10 +76,15 @@ import java.util.zip.ZipEntry;
  * <b>Phase 2:</b>
  * <ol>
  * <li>Initializes from system properties.
- * <li>Spawn phase 3 exactly as phase 2 except the self.modifier.phase system properties set to 3.
+ * <li>Spawn phase 3 exactly as phase 2 except the self.modifier.phase system properties set to 3,
+ * and the copied jar as it's classpath.
  * <li>Wait for phase 3 to die
  * <li>Delete the temporary sandbox
  * </ol>
+ * Phase 2 never opens the copied jar: some systems (e.g. Windows) keep the jar files on the
+ * classpath of a running jvm locked, so phase 2 would not be able to delete the copy it runs from,
+ * leaving it in the temp directory after each run. Class files loaded from a directory are not
+ * kept open.
  * <p/>
  * <b>Phase 3:</b>
  * <ol>
@@ -115,6 +121,10 @@ import java.util.zip.ZipEntry;
  * <td><a href="#PHASE_KEY">PHASE_KEY</a>
  * <td>self.mod.base
  * <td>phase of operation to run</tr>
+ * <tr>
+ * <td><a href="#JAVA_KEY">JAVA_KEY</a>
+ * <td>self.mod.java
+ * <td>java executable running phase 3</tr>
  * </table>
  *
  * @author Chadwick McHenry
@@ -148,8 +158,23 @@ public class SelfModifier
      */
     public static final String PHASE_KEY = "self.mod.phase";
 
+    /**
+     * System property name of the java executable, so that phase 2 needs no other class.
+     */
+    public static final String JAVA_KEY = "self.mod.java";
+
     public static final String MEMORY_KEY = "self.memory";
 
+    /**
+     * Number of times phase 2 retries to delete the sandbox.
+     */
+    private static final int DELETE_RETRIES = 5;
+
+    /**
+     * Delay between two attempts to delete the sandbox, in milliseconds.
+     */
+    private static final long DELETE_RETRY_DELAY = 500;
+
     /**
      * Base prefix name for sandbox and log, used only in phase 1.
      */
@@ -160,16 +185,42 @@ public class SelfModifier
      */
     private Method method = null;
 
+    /**
+     * Name of the class declaring the target method.
+     */
+    private String className = null;
+
+    /**
+     * Name of the target method.
+     */
+    private String methodName = null;
+
     /**
      * Log for phase 2 and 3, because we can't capture the stdio from them.
      */
     private File logFile = null;
 
     /**
-     * Directory which we extract too, invoke from, and finally delete.
+     * Directory which we copy the jar file to, invoke from, and finally delete.
      */
     private File sandbox = null;
 
+    /**
+     * Copy of the jar file in the sandbox, used as classpath of phase 3.
+     */
+    private File sandboxJarFile = null;
+
+    /**
+     * Directory in the sandbox the SelfModifier classes are extracted to, used as classpath of
+     * phase 2.
+     */
+    private File sandboxClasses = null;
+
+    /**
+     * The java executable to run phases 2 and 3 with.
+     */
+    private String javaCommand = null;
+
     /**
      * Original jar file program was launched from.
      */
@@ -188,7 +239,6 @@ public class SelfModifier
     private Date date = new Date();
 
     private long maxmemory = 64;
-    private long maxpermgensize = 16;
     private boolean useMemorySettings = false;
 
     public static void test(String[] args)
@@ -256,31 +306,36 @@ public class SelfModifier
     {
         phase = Integer.parseInt(System.getProperty(PHASE_KEY));
 
-        String cName = System.getProperty(CLASS_KEY);
-        String tName = System.getProperty(METHOD_KEY);
+        className = System.getProperty(CLASS_KEY);
+        methodName = System.getProperty(METHOD_KEY);
+        javaCommand = System.getProperty(JAVA_KEY);
 
         jarFile = new File(System.getProperty(JAR_KEY));
         logFile = new File(System.getProperty(BASE_KEY) + ".log");
         sandbox = new File(System.getProperty(BASE_KEY) + ".d");
+        sandboxJarFile = new File(sandbox, jarFile.getName());
+        sandboxClasses = new File(sandbox, "classes");
 
         this.maxmemory = Long.parseLong(System.getProperty(MEMORY_KEY, "64"));
-        this.maxpermgensize = this.maxmemory / 4;
 
-        // retrieve refrence to target method
-        try
+        // retrieve refrence to target method. Only phase 3 has the jar on its classpath
+        if (phase == 3)
         {
-            Class clazz = Class.forName(cName);
-            Method method = clazz.getMethod(tName, new Class[]{String[].class});
+            try
+            {
+                Class clazz = Class.forName(className);
+                Method method = clazz.getMethod(methodName, new Class[]{String[].class});
 
-            initMethod(method);
-        }
-        catch (ClassNotFoundException x1)
-        {
-            log("No class found for " + cName);
-        }
-        catch (NoSuchMethodException x2)
-        {
-            log("No method " + tName + " found in " + cName);
+                initMethod(method);
+            }
+            catch (ClassNotFoundException x1)
+            {
+                log("No class found for " + className);
+            }
+            catch (NoSuchMethodException x2)
+            {
+                log("No method " + methodName + " found in " + className);
+            }
         }
     }
 
@@ -305,18 +360,36 @@ public class SelfModifier
     public SelfModifier(Method method) throws IOException
     {
         phase = 1;
+        javaCommand = javaCommand();
         initJavaExec();
         initMethod(method);
     }
 
-    public SelfModifier(Method method, long maxmemory, long maxpermgensize) throws IOException
+    /**
+     * Creates a SelfModifier which will invoke the target method in a separate process with the
+     * given maximum heap size.
+     *
+     * @param method    a public, static method that accepts a String array as it's only parameter
+     * @param maxmemory the maximum heap size of the separate process, in megabytes
+     * @throws IOException if java is unable to be executed as a separte process
+     * @see #SelfModifier(Method)
+     */
+    public SelfModifier(Method method, long maxmemory) throws IOException
     {
         this(method);
         this.maxmemory = maxmemory;
-        this.maxpermgensize = maxpermgensize;
         this.useMemorySettings = true;
     }
 
+    /**
+     * @deprecated the permanent generation size is ignored, use {@link #SelfModifier(Method, long)}
+     */
+    @Deprecated
+    public SelfModifier(Method method, long maxmemory, long maxpermgensize) throws IOException
+    {
+        this(method, maxmemory);
+    }
+
     /**
      * Check the method for the required properties (public, static, params:(String[])).
      *
@@ -348,6 +421,8 @@ public class SelfModifier
         }
 
         this.method = method;
+        this.className = clazz.getName();
+        this.methodName = method.getName();
     }
 
     /**
@@ -361,7 +436,7 @@ public class SelfModifier
     {
         try
         {
-            Process process = Runtime.getRuntime().exec(javaCommand());
+            Process process = Runtime.getRuntime().exec(javaCommand);
 
             new StreamProxy(process.getErrorStream(), "err").start();
             new StreamProxy(process.getInputStream(), "out").start();
@@ -388,8 +463,7 @@ public class SelfModifier
      * calling {@link System#exit(int)}.
      * <p/>
      * <p/>
-     * The contents of the current jar file are extracted copied to a 'sandbox' directory from which
-     * the method is invoked. The path to the original jar file is placed in the system property
+     * The current jar file is copied to a 'sandbox' directory from which the method is invoked. The path to the original jar file is placed in the system property
      * {@link #JAR_KEY}.
      * <p/>
      *
@@ -431,7 +505,10 @@ public class SelfModifier
         }
         log("JarFile: " + jarFile);
 
-        extractJarFile();
+        sandboxJarFile = new File(sandbox, jarFile.getName());
+        copyJarFile();
+        sandboxClasses = new File(sandbox, "classes");
+        extractClasses();
 
         if (args == null)
         {
@@ -456,24 +533,29 @@ public class SelfModifier
 
         // invoke from tmpdir, passing target method arguments as args, and
         // SelfModifier parameters as sustem properties
-        String javaCommand = javaCommand();
-
         List<String> command = new ArrayList<String>();
         command.add(javaCommand);
         command.add("-Xmx" + this.maxmemory + "m");
-        command.add("-XX:MaxPermSize=" + maxpermgensize + "m");
+        // the secondary processes are short-lived, favour startup time and a small footprint.
+        // Options unknown to the running VM are skipped instead of failing the spawn
+        command.add("-XX:+IgnoreUnrecognizedVMOptions");
+        command.add("-XX:+UseSerialGC");
+        command.add("-XX:TieredStopAtLevel=1");
 // activate for debugging purposes.        
 //        command.add("-Xdebug");        
 //        int debugPort = 8000 + nextPhase;        
 //        command.add("-Xrunjdwp:transport=dt_socket,address=" + debugPort + ",server=y,suspend=y");
         command.add("-classpath");
-        command.add(sandbox.getAbsolutePath());
+        // phase 2 runs from the extracted classes, so that it can delete the jar phase 3 runs from
+        File classpath = (nextPhase == 2) ? sandboxClasses : sandboxJarFile;
+        command.add(classpath.getAbsolutePath());
         command.add("-D" + BASE_KEY + "=" + base);
         command.add("-D" + JAR_KEY + "=" + jarFile.getPath() + "");
-        command.add("-D" + CLASS_KEY + "=" + method.getDeclaringClass().getName());
-        command.add("-D" + METHOD_KEY + "=" + method.getName());
+        command.add("-D" + CLASS_KEY + "=" + className);
+        command.add("-D" + METHOD_KEY + "=" + methodName);
         command.add("-D" + PHASE_KEY + "=" + nextPhase);
         command.add("-D" + MEMORY_KEY + "=" + this.maxmemory);
+        command.add("-D" + JAVA_KEY + "=" + javaCommand);
         command.add(getClass().getName());
 
         for (String arg : args)
@@ -526,90 +608,90 @@ public class SelfModifier
     }
 
     /**
-     * @throws IOException
+     * Copies the jar file into the sandbox, in a single sequential write.
+     *
+     * @throws IOException if the jar file can't be copied
      */
-    private void extractJarFile() throws IOException
+    private void copyJarFile() throws IOException
     {
-        byte[] buf = new byte[5120];
-        int extracted = 0;
-        InputStream in = null;
-        OutputStream out = null;
-        String MANIFEST = "META-INF/MANIFEST.MF";
-
-        JarFile jar = new JarFile(jarFile, true);
-
+        FileInputStream in = new FileInputStream(jarFile);
         try
         {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements())
+            FileOutputStream out = new FileOutputStream(sandboxJarFile);
+            try
             {
-                ZipEntry entry = entries.nextElement();
-                if (entry.isDirectory())
+                FileChannel source = in.getChannel();
+                FileChannel target = out.getChannel();
+                long size = source.size();
+                long position = 0;
+                while (position < size)
                 {
-                    continue;
+                    position += source.transferTo(position, size - position, target);
                 }
-
-                String pathname = entry.getName();
-                if (MANIFEST.equals(pathname.toUpperCase()))
-                {
-                    continue;
-                }
-
-                in = jar.getInputStream(entry);
-
-                File outFile = new File(sandbox, pathname);
-                File parent = outFile.getParentFile();
-                if (parent != null && !parent.exists())
-                {
-                    parent.mkdirs();
-                }
-
-                out = new BufferedOutputStream(new FileOutputStream(outFile));
-
-                int n;
-                while ((n = in.read(buf, 0, buf.length)) > 0)
-                {
-                    out.write(buf, 0, n);
-                }
-
+            }
+            finally
+            {
                 out.close();
-                extracted++;
             }
-            jar.close();
-
-            log("Extracted " + extracted + " file" + (extracted > 1 ? "s" : "") + " into "
-                    + sandbox.getPath());
         }
         finally
         {
-            try
-            {
-                jar.close();
-            }
-            catch (IOException ioe)
-            {
-            }
-            if (out != null)
-            {
-                try
-                {
-                    out.close();
-                }
-                catch (IOException ioe)
-                {
-                }
-            }
-            if (in != null)
+            in.close();
+        }
+        log("Copied " + jarFile.getName() + " into " + sandbox.getPath());
+    }
+
+    /**
+     * Extracts the SelfModifier class and its inner classes from the jar file into the sandbox.
+     * Phase 2 only needs these to spawn phase 3 and clean up.
+     *
+     * @throws IOException if the classes can't be extracted
+     */
+    private void extractClasses() throws IOException
+    {
+        String classes = SelfModifier.class.getName().replace('.', '/');
+        JarFile jar = new JarFile(jarFile);
+        try
+        {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements())
             {
-                try
-                {
-                    in.close();
-                }
-                catch (IOException ioe)
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith(classes) && name.endsWith(".class"))
                 {
+                    File file = new File(sandboxClasses, name);
+                    file.getParentFile().mkdirs();
+                    InputStream in = jar.getInputStream(entry);
+                    try
+                    {
+                        OutputStream out = new FileOutputStream(file);
+                        try
+                        {
+                            byte[] buffer = new byte[8192];
+                            int read;
+                            while ((read = in.read(buffer)) != -1)
+                            {
+                                out.write(buffer, 0, read);
+                            }
+                        }
+                        finally
+                        {
+                            out.close();
+                        }
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
                 }
             }
         }
+        finally
+        {
+            jar.close();
+        }
+        log("Extracted " + classes + " classes into " + sandboxClasses.getPath());
     }
 
     /***********************************************************************************************
@@ -661,9 +743,24 @@ public class SelfModifier
                 log(e);
             }
 
-            // clean up and go
+            // clean up and go. The jar is released when phase 3 exits, but the system may take
+            // a moment to let go of it
             log("deleteing sandbox");
-            deleteTree(sandbox);
+            for (int i = 0; !deleteTree(sandbox) && i < DELETE_RETRIES; ++i)
+            {
+                try
+                {
+                    Thread.sleep(DELETE_RETRY_DELAY);
+                }
+                catch (InterruptedException e)
+                {
+                    break;
+                }
+            }
+            if (sandbox.exists())
+            {
+                log("Failed to delete sandbox " + sandbox);
+            }
         }
         catch (Exception e)
         {
@@ -0,0 +1,80 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Date;
+
+/**
+ * Writes log events as lines of text, for the console or a log file.
+ * <p/>
+ * Dated events start with their time stamp and date, as {@link Debug#log(Object)} always wrote
+ * them.
+ */
+public class TextLogSink implements LogSink
+{
+    private final PrintWriter writer;
+
+    private final boolean stackTraces;
+
+    /**
+     * Constructs a text sink.
+     *
+     * @param writer      the writer to write to
+     * @param stackTraces whether the stack traces of exceptions are written
+     */
+    public TextLogSink(Writer writer, boolean stackTraces)
+    {
+        this.writer = (writer instanceof PrintWriter) ? (PrintWriter) writer : new PrintWriter(writer);
+        this.stackTraces = stackTraces;
+    }
+
+    public void write(LogEvent event) throws IOException
+    {
+        if (event.isDated())
+        {
+            writer.print(event.getTime());
+            writer.print("; ");
+            writer.print(new Date(event.getTime()));
+            writer.print("; ");
+        }
+        writer.println(event);
+        if (stackTraces && event.getDetail() instanceof Throwable)
+        {
+            ((Throwable) event.getDetail()).printStackTrace(writer);
+        }
+        if (writer.checkError())
+        {
+            throw new IOException("Cannot write log event");
+        }
+    }
+
+    public void flush()
+    {
+        writer.flush();
+    }
+
+    public void close()
+    {
+        writer.close();
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+
+/**
+ * A progress handler which forwards sub-step progress to another handler at a fixed rate.
+ * <p/>
+ * Progress notified more often than the interval is held back, since the next one supersedes it,
+ * so that user interfaces are not updated for each of thousands of files. The last progress held
+ * back is forwarded before the next step or the end of the action, so that the final state is
+ * always shown. Actions, steps and messages are always forwarded.
+ * <p/>
+ * The handler also counts the bytes processed, to estimate the rate and the remaining time of
+ * the action. It is meant to be called by a single thread.
+ */
+public class ThrottledProgressHandler implements AbstractUIProgressHandler
+{
+    /**
+     * The default interval between two progress updates, in milliseconds: 20 updates per second.
+     */
+    public static final long DEFAULT_INTERVAL = 50;
+
+    private final AbstractUIProgressHandler handler;
+
+    /**
+     * The interval between two progress updates, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * The time of the last progress update, in nanoseconds.
+     */
+    private long lastUpdate;
+
+    /**
+     * The time the action started, in nanoseconds.
+     */
+    private long started = System.nanoTime();
+
+    private long bytes;
+
+    private long totalBytes = -1;
+
+    /**
+     * Whether a progress was held back since the last progress update.
+     */
+    private boolean pending;
+
+    private int pendingStep;
+
+    private String pendingMessage;
+
+    /**
+     * Constructs a handler updating progress at the default rate.
+     *
+     * @param handler the handler to forward to
+     */
+    public ThrottledProgressHandler(AbstractUIProgressHandler handler)
+    {
+        this(handler, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructs a handler.
+     *
+     * @param handler  the handler to forward to
+     * @param interval the minimal interval between two progress updates, in milliseconds
+     */
+    public ThrottledProgressHandler(AbstractUIProgressHandler handler, long interval)
+    {
+        this.handler = handler;
+        this.interval = interval * 1000000;
+        this.lastUpdate = System.nanoTime() - this.interval;
+    }
+
+    /**
+     * Returns the handler progress is forwarded to.
+     *
+     * @return the handler
+     */
+    public AbstractUIProgressHandler getHandler()
+    {
+        return handler;
+    }
+
+    /**
+     * Determines if the next progress will be forwarded at once.
+     *
+     * @return <tt>true</tt> if the interval since the last progress update has elapsed
+     */
+    public boolean isDue()
+    {
+        return System.nanoTime() - lastUpdate >= interval;
+    }
+
+    public void progress(int substep_no, String message)
+    {
+        long now = System.nanoTime();
+        if (now - lastUpdate >= interval)
+        {
+            lastUpdate = now;
+            pending = false;
+            pendingMessage = null;
+            handler.progress(substep_no, message);
+        }
+        else
+        {
+            pending = true;
+            pendingStep = substep_no;
+            pendingMessage = message;
+        }
+    }
+
+    /**
+     * Forwards the last progress held back, if any.
+     */
+    public void flush()
+    {
+        if (pending)
+        {
+            lastUpdate = System.nanoTime();
+            pending = false;
+            String message = pendingMessage;
+            pendingMessage = null;
+            handler.progress(pendingStep, message);
+        }
+    }
+
+    /**
+     * Sets the number of bytes the action will process.
+     *
+     * @param totalBytes the number of bytes, or <tt>-1</tt> if unknown
+     */
+    public void setTotalBytes(long totalBytes)
+    {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Adds processed bytes.
+     *
+     * @param count the number of bytes processed
+     */
+    public void addBytes(long count)
+    {
+        bytes += count;
+    }
+
+    /**
+     * Returns the bytes processed since the action started.
+     *
+     * @return the number of bytes processed
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Returns the rate the bytes are processed at since the action started.
+     *
+     * @return the number of bytes processed per second
+     */
+    public long getBytesPerSecond()
+    {
+        long elapsed = System.nanoTime() - started;
+        return (elapsed > 0) ? (long) (bytes * 1e9 / elapsed) : 0;
+    }
+
+    /**
+     * Estimates the time left to process the remaining bytes at the current rate.
+     *
+     * @return the estimated time left, in milliseconds, or <tt>-1</tt> if unknown
+     */
+    public long getRemainingMillis()
+    {
+        long rate = getBytesPerSecond();
+        if (totalBytes < 0 || rate <= 0)
+        {
+            return -1;
+        }
+        return Math.max(0, totalBytes - bytes) * 1000 / rate;
+    }
+
+    public void startAction(String name, int no_of_steps)
+    {
+        started = System.nanoTime();
+        bytes = 0;
+        pending = false;
+        pendingMessage = null;
+        handler.startAction(name, no_of_steps);
+    }
+
+    public void stopAction()
+    {
+        flush();
+        handler.stopAction();
+    }
+
+    public void nextStep(String step_name, int step_no, int no_of_substeps)
+    {
+        flush();
+        handler.nextStep(step_name, step_no, no_of_substeps);
+    }
+
+    public void setSubStepNo(int no_of_substeps)
+    {
+        handler.setSubStepNo(no_of_substeps);
+    }
+
+    public void emitNotification(String message)
+    {
+        handler.emitNotification(message);
+    }
+
+    public boolean emitWarning(String title, String message)
+    {
+        return handler.emitWarning(title, message);
+    }
+
+    public void emitError(String title, String message)
+    {
+        handler.emitError(title, message);
+    }
+
+    public void emitErrorAndBlockNext(String title, String message)
+    {
+        handler.emitErrorAndBlockNext(title, message);
+    }
+
+    public int askQuestion(String title, String question, int choices)
+    {
+        return handler.askQuestion(title, question, choices);
+    }
+
+    public int askQuestion(String title, String question, int choices, int default_choice)
+    {
+        return handler.askQuestion(title, question, choices, default_choice);
+    }
+}
@@ -847,6 +847,112 @@ public class DirectoryScanner
         }
     }
 
+    /**
+     * Receives the files and directories found by a streaming scan.
+     */
+    public interface ScanListener
+    {
+        /**
+         * Handles an included file or directory.
+         *
+         * @param name      path of the file relative to the base directory
+         * @param file      the file
+         * @param directory whether the file is a directory
+         * @throws Exception if the file can't be handled
+         */
+        void included(String name, File file, boolean directory) throws Exception;
+    }
+
+    /**
+     * Scan the base directory like {@link #scan()}, but pass the included
+     * files and directories to a listener as they are found instead of
+     * collecting the results. Directories which can't hold included files
+     * are not visited, and nothing is retained, so the memory used doesn't
+     * grow with the number of files. A directory is passed before its
+     * content.
+     *
+     * @param listener the listener of the included files and directories
+     * @throws Exception if the base directory was set incorrectly or the
+     *                   listener fails
+     */
+    public synchronized void scan(ScanListener listener) throws Exception
+    {
+        boolean nullIncludes = (includes == null);
+        includes = nullIncludes ? new String[]{"**"} : includes;
+        boolean nullExcludes = (excludes == null);
+        excludes = nullExcludes ? new String[0] : excludes;
+        try
+        {
+            if (basedir == null)
+            {
+                throw new Exception("No basedir set");
+            }
+            if (!basedir.exists())
+            {
+                throw new Exception("basedir " + basedir + " does not exist");
+            }
+            if (!basedir.isDirectory())
+            {
+                throw new Exception("basedir " + basedir + " is not a directory");
+            }
+            if (isIncluded("") && !isExcluded("") && isSelected("", basedir))
+            {
+                listener.included("", basedir, true);
+            }
+
+            LinkedList<File> dirs = new LinkedList<File>();
+            LinkedList<String> vpaths = new LinkedList<String>();
+            dirs.add(basedir);
+            vpaths.add("");
+            while (!dirs.isEmpty())
+            {
+                File dir = dirs.removeLast();
+                String vpath = vpaths.removeLast();
+                String[] newfiles = dir.list();
+                if (newfiles == null)
+                {
+                    throw new Exception("IO error scanning directory "
+                            + dir.getAbsolutePath());
+                }
+                for (String newfile : newfiles)
+                {
+                    if (!followSymlinks && FILE_UTILS.isSymbolicLink(dir, newfile))
+                    {
+                        continue;
+                    }
+                    String name = vpath + newfile;
+                    File file = new File(dir, newfile);
+                    if (file.isDirectory())
+                    {
+                        boolean included = isIncluded(name);
+                        if (included && !isExcluded(name) && isSelected(name, file))
+                        {
+                            listener.included(name, file, true);
+                        }
+                        if (couldHoldIncluded(name) && !(included && contentsExcluded(name)))
+                        {
+                            dirs.add(file);
+                            vpaths.add(name + File.separator);
+                        }
+                    }
+                    else if (file.isFile())
+                    {
+                        if (isIncluded(name) && !isExcluded(name) && isSelected(name, file))
+                        {
+                            listener.included(name, file, false);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            clearCaches();
+            includes = nullIncludes ? null : includes;
+            excludes = nullExcludes ? null : excludes;
+        }
+    }
+
     /**
      * This routine is actually checking all the include patterns in
      * order to avoid scanning everything under base dir.